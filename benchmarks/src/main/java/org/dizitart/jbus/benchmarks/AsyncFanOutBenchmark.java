@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus.benchmarks;
+
+import org.dizitart.jbus.JBus;
+import org.dizitart.jbus.JBusConfig;
+import org.dizitart.jbus.WaitStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round trip of an event posted to {@code @Subscribe(async = true)}
+ * subscribers, from the post until every subscriber has run, either on the
+ * default executor or on the ring buffer.
+ *
+ * @author Anindya Chatterjee.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncFanOutBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int subscribers;
+
+    @Param({"executor", "ringBuffer"})
+    public String engine;
+
+    private JBus jBus;
+
+    @Setup
+    public void setUp() {
+        JBusConfig config = new JBusConfig();
+        if ("ringBuffer".equals(engine)) {
+            config.setRingBufferSize(4096);
+            config.setWaitStrategy(WaitStrategy.YIELD);
+        }
+        jBus = new JBus(config);
+        for (int i = 0; i < subscribers; i++) {
+            jBus.register(new Listeners.AsyncListener());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jBus.close();
+    }
+
+    @Benchmark
+    public void fanOut() throws InterruptedException {
+        Listeners.AsyncEvent event = new Listeners.AsyncEvent(subscribers);
+        jBus.post(event);
+        event.await();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus.benchmarks;
+
+import org.dizitart.jbus.JBus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures posting a {@link org.dizitart.jbus.HandlerChainAware} event
+ * whose handler chain is interrupted by one of the subscribers. An
+ * {@code interruptAt} of 0 never interrupts.
+ *
+ * @author Anindya Chatterjee.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerChainBenchmark {
+
+    @Param({"100"})
+    public int subscribers;
+
+    @Param({"0", "1", "50"})
+    public int interruptAt;
+
+    private JBus jBus;
+
+    @Setup
+    public void setUp() {
+        jBus = new JBus();
+        for (int i = 0; i < subscribers; i++) {
+            jBus.register(new Listeners.ChainListener());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jBus.close();
+    }
+
+    @Benchmark
+    public int post() {
+        Listeners.ChainEvent event = new Listeners.ChainEvent();
+        event.interruptAt = interruptAt;
+        jBus.post(event);
+        return event.invocationCount;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus.benchmarks;
+
+import org.dizitart.jbus.HandlerChainAware;
+import org.dizitart.jbus.HandlerChain;
+import org.dizitart.jbus.Subscribe;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Events and listeners shared by the benchmarks.
+ *
+ * @author Anindya Chatterjee.
+ */
+public final class Listeners {
+    private Listeners() {}
+
+    public static class TrivialEvent {
+        public int value;
+    }
+
+    public static class SyncListener {
+        private final Blackhole blackhole;
+
+        public SyncListener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Subscribe
+        public void listen(TrivialEvent event) {
+            blackhole.consume(event.value);
+        }
+    }
+
+    public static class AsyncEvent {
+        final CountDownLatch latch;
+
+        public AsyncEvent(int subscribers) {
+            this.latch = new CountDownLatch(subscribers);
+        }
+
+        public void await() throws InterruptedException {
+            latch.await();
+        }
+    }
+
+    public static class AsyncListener {
+        @Subscribe(async = true)
+        public void listen(AsyncEvent event) {
+            event.latch.countDown();
+        }
+    }
+
+    public static class ChainEvent implements HandlerChainAware {
+        private HandlerChain handlerChain;
+        public int interruptAt;
+        public int invocationCount;
+
+        @Override
+        public void setHandlerChain(HandlerChain handlerChain) {
+            this.handlerChain = handlerChain;
+        }
+
+        @Override
+        public HandlerChain getHandlerChain() {
+            return handlerChain;
+        }
+    }
+
+    public static class ChainListener {
+        @Subscribe
+        public void listen(ChainEvent event) {
+            if (++event.invocationCount == event.interruptAt) {
+                event.getHandlerChain().interrupt();
+            }
+        }
+    }
+
+    public static class ChurnListener {
+        @Subscribe
+        public void listen(TrivialEvent event) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus.benchmarks;
+
+import org.dizitart.jbus.JBus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures register/deregister of short lived listeners while other
+ * threads keep posting to a set of long lived subscribers. The
+ * {@code uncontended} group gives the baseline without any posting.
+ *
+ * @author Anindya Chatterjee.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationChurnBenchmark {
+
+    @Param({"10", "1000"})
+    public int residents;
+
+    private JBus jBus;
+    private Listeners.TrivialEvent event;
+    private Object[] listeners;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        jBus = new JBus();
+        event = new Listeners.TrivialEvent();
+        listeners = new Object[residents];
+        for (int i = 0; i < residents; i++) {
+            listeners[i] = new Listeners.SyncListener(blackhole);
+            jBus.register(listeners[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jBus.close();
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(2)
+    public void registerDeregister() {
+        Listeners.ChurnListener listener = new Listeners.ChurnListener();
+        jBus.register(listener);
+        jBus.deregister(listener);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(2)
+    public void post() {
+        jBus.post(event);
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public void registerDeregisterAlone() {
+        Listeners.ChurnListener listener = new Listeners.ChurnListener();
+        jBus.register(listener);
+        jBus.deregister(listener);
+    }
+}
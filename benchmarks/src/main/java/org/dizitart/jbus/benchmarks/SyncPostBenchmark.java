@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus.benchmarks;
+
+import org.dizitart.jbus.JBus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JBus#post(Object)} of an event to synchronous subscribers,
+ * held by strong or weak references.
+ *
+ * @author Anindya Chatterjee.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncPostBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int subscribers;
+
+    @Param({"strong", "weak"})
+    public String reference;
+
+    private JBus jBus;
+    private Listeners.TrivialEvent event;
+    // keeps weakly registered listeners reachable
+    private Object[] listeners;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        jBus = new JBus();
+        event = new Listeners.TrivialEvent();
+        listeners = new Object[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            listeners[i] = new Listeners.SyncListener(blackhole);
+            if ("weak".equals(reference)) {
+                jBus.registerWeak(listeners[i]);
+            } else {
+                jBus.register(listeners[i]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jBus.close();
+    }
+
+    @Benchmark
+    public void post() {
+        jBus.post(event);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus.processor;
+
+import org.dizitart.jbus.Subscribe;
+import org.dizitart.jbus.SubscriberRules;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor which generates a subscriber index for each class
+ * declaring methods marked with {@code @Subscribe}. The runtime loads the index
+ * of a listener class instead of scanning it via reflection, and invokes its
+ * subscriber methods via the generated code.
+ *
+ * <p>The subscriber methods are validated at compile time with the same rules as
+ * the runtime. A class whose subscriber methods can not be invoked from its
+ * package, i.e. a private method, or a private or local class as the listener,
+ * the parameter or the event type, is not indexed and is scanned at runtime
+ * as usual.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+@SupportedAnnotationTypes(SubscriberIndexProcessor.SUBSCRIBE)
+public class SubscriberIndexProcessor extends AbstractProcessor {
+    static final String SUBSCRIBE = "org.dizitart.jbus.Subscribe";
+    static final String INDEX_SUFFIX = "$$JBusIndex";
+
+    private static final String SUBSCRIBER_INDEX = "org.dizitart.jbus.SubscriberIndex";
+    private static final String INDEXED_SUBSCRIBER = "org.dizitart.jbus.IndexedSubscriber";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement subscribe = processingEnv.getElementUtils().getTypeElement(SUBSCRIBE);
+        if (subscribe == null) {
+            return false;
+        }
+
+        // subscriber methods of each class, in the order of declaration
+        Map<TypeElement, List<ExecutableElement>> subscribers =
+                new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(subscribe)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element.getEnclosingElement();
+            List<ExecutableElement> methods = subscribers.get(type);
+            if (methods == null) {
+                methods = new ArrayList<ExecutableElement>();
+                subscribers.put(type, methods);
+            }
+            methods.add((ExecutableElement) element);
+        }
+
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : subscribers.entrySet()) {
+            List<Subscriber> indexed = new ArrayList<Subscriber>();
+            boolean valid = true;
+            for (ExecutableElement method : entry.getValue()) {
+                Subscriber subscriber = validate(method);
+                if (subscriber == null) {
+                    valid = false;
+                } else {
+                    indexed.add(subscriber);
+                }
+            }
+
+            if (valid && isIndexable(entry.getKey(), indexed)) {
+                writeIndex(entry.getKey(), indexed);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Validates a subscriber method with the {@link SubscriberRules} of
+     * the runtime and reports an error if it is invalid.
+     * */
+    private Subscriber validate(ExecutableElement method) {
+        Messager messager = processingEnv.getMessager();
+        Types types = processingEnv.getTypeUtils();
+
+        // all annotation values are primitives, strings or enums, so
+        // they can be read through the annotation type itself
+        Subscribe subscribe = method.getAnnotation(Subscribe.class);
+        int parameterCount = method.getParameters().size();
+        TypeMirror parameterType = parameterCount == 1 ? method.getParameters().get(0).asType() : null;
+        String error = SubscriberRules.check(subscribe, parameterCount,
+                parameterType != null && (parameterType.getKind() == TypeKind.ARRAY || method.isVarArgs()));
+        if (error != null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, method.getSimpleName()
+                    + " has @Subscribe annotation, but " + error, method);
+            return null;
+        }
+
+        TypeMirror erasedParameterType = types.erasure(parameterType);
+        TypeMirror eventType = erasedParameterType;
+        if (subscribe.batch()) {
+            eventType = findBatchEventType(parameterType);
+            if (eventType == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR, method.getSimpleName()
+                        + " has @Subscribe(batch = true) annotation, but its parameter should be"
+                        + " a List of the event type.", method);
+                return null;
+            }
+        }
+        return new Subscriber(method, erasedParameterType, eventType);
+    }
+
+    /**
+     * Finds the event type of a batch subscriber from the type
+     * argument of its {@code List} parameter.
+     * */
+    private TypeMirror findBatchEventType(TypeMirror parameterType) {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+
+        TypeElement list = elements.getTypeElement(List.class.getName());
+        if (parameterType.getKind() != TypeKind.DECLARED
+                || !types.isSameType(types.erasure(parameterType), types.erasure(list.asType()))) {
+            return null;
+        }
+
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) parameterType).getTypeArguments();
+        if (typeArguments.size() != 1) {
+            return null;
+        }
+        TypeMirror typeArgument = typeArguments.get(0);
+        if (typeArgument.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) typeArgument).getExtendsBound();
+            typeArgument = bound != null ? bound : elements.getTypeElement(Object.class.getName()).asType();
+        }
+        return typeArgument.getKind() == TypeKind.DECLARED ? types.erasure(typeArgument) : null;
+    }
+
+    /**
+     * Checks if all subscriber methods of the class, and all types they refer to,
+     * can be accessed from its package.
+     * */
+    private boolean isIndexable(TypeElement type, List<Subscriber> subscribers) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.method.getModifiers().contains(Modifier.PRIVATE)) {
+                note(type, "private subscriber method " + subscriber.method.getSimpleName());
+                return false;
+            }
+        }
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String reason = findInaccessible(type, packageElement);
+        for (int i = 0; reason == null && i < subscribers.size(); i++) {
+            // the erased parameter type and event type are both referred to by the generated code
+            reason = findInaccessible(subscribers.get(i).parameterType, packageElement);
+            if (reason == null) {
+                reason = findInaccessible(subscribers.get(i).eventType, packageElement);
+            }
+        }
+        if (reason != null) {
+            note(type, reason);
+            return false;
+        }
+        return true;
+    }
+
+    private String findInaccessible(TypeMirror typeMirror, PackageElement packageElement) {
+        if (typeMirror.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return findInaccessible((TypeElement) ((DeclaredType) typeMirror).asElement(), packageElement);
+    }
+
+    /**
+     * Finds why a type can not be accessed from the package, if it can not.
+     * */
+    private String findInaccessible(TypeElement type, PackageElement packageElement) {
+        Elements elements = processingEnv.getElementUtils();
+        Element element = type;
+        while (element instanceof TypeElement) {
+            TypeElement enclosing = (TypeElement) element;
+            if (enclosing.getNestingKind() != NestingKind.TOP_LEVEL
+                    && enclosing.getNestingKind() != NestingKind.MEMBER) {
+                return "local or anonymous class " + type.getQualifiedName();
+            }
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                return "private class " + type.getQualifiedName();
+            }
+            if (!enclosing.getModifiers().contains(Modifier.PUBLIC)
+                    && !elements.getPackageOf(enclosing).equals(packageElement)) {
+                return "inaccessible class " + type.getQualifiedName();
+            }
+            element = enclosing.getEnclosingElement();
+        }
+        return null;
+    }
+
+    private void note(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Subscriber index is not generated for "
+                + type.getQualifiedName() + " because of " + reason + ", it will be scanned at runtime.", type);
+    }
+
+    /**
+     * Writes the index class of the listener class into its package.
+     * */
+    private void writeIndex(TypeElement type, List<Subscriber> subscribers) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+
+        PackageElement packageElement = elements.getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String indexName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                + INDEX_SUFFIX;
+        String typeName = types.erasure(type.asType()).toString();
+
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(processingEnv.getFiler()
+                    .createSourceFile(binaryName + INDEX_SUFFIX, type).openWriter());
+            if (!packageName.isEmpty()) {
+                writer.println("package " + packageName + ";");
+                writer.println();
+            }
+            writer.println("/**");
+            writer.println(" * Subscriber index of {@link " + typeName + "}, generated by jbus-processor.");
+            writer.println(" */");
+            writer.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            writer.println("public final class " + indexName + " implements " + SUBSCRIBER_INDEX + " {");
+            writer.println("    @Override");
+            writer.println("    public " + INDEXED_SUBSCRIBER + "[] getSubscribers() {");
+            writer.println("        return new " + INDEXED_SUBSCRIBER + "[] {");
+            for (Subscriber subscriber : subscribers) {
+                String parameterType = subscriber.parameterType.toString();
+                String receiver = subscriber.method.getModifiers().contains(Modifier.STATIC)
+                        ? typeName : "((" + typeName + ") target)";
+
+                writer.println("                new " + INDEXED_SUBSCRIBER + "(\""
+                        + subscriber.method.getSimpleName() + "\", "
+                        + parameterType + ".class, " + subscriber.eventType + ".class) {");
+                writer.println("                    @Override");
+                writer.println("                    public void invoke(Object target, Object event) throws Throwable {");
+                writer.println("                        " + receiver + "." + subscriber.method.getSimpleName()
+                        + "((" + parameterType + ") event);");
+                writer.println("                    }");
+                writer.println("                },");
+            }
+            writer.println("        };");
+            writer.println("    }");
+            writer.println("}");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write the subscriber index of " + type.getQualifiedName() + ": " + e, type);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * A validated subscriber method along with its erased types.
+     * */
+    private static class Subscriber {
+        final ExecutableElement method;
+        final TypeMirror parameterType;
+        final TypeMirror eventType;
+
+        Subscriber(ExecutableElement method, TypeMirror parameterType, TypeMirror eventType) {
+            this.method = method;
+            this.parameterType = parameterType;
+            this.eventType = eventType;
+        }
+    }
+}
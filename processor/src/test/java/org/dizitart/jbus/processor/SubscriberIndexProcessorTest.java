@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus.processor;
+
+import org.dizitart.jbus.JBus;
+import org.dizitart.jbus.SubscriberIndex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class SubscriberIndexProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources;
+    private File classes;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        sources = folder.newFolder("sources");
+        classes = folder.newFolder("classes");
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+    }
+
+    @Test
+    public void testIndexGenerated() throws Exception {
+        write("sample/Listener.java",
+                "package sample;",
+                "import org.dizitart.jbus.Subscribe;",
+                "import java.util.List;",
+                "public class Listener {",
+                "    public String caller;",
+                "    public int batches;",
+                "    @Subscribe",
+                "    void listen(String event) {",
+                "        caller = new Throwable().getStackTrace()[1].getClassName();",
+                "    }",
+                "    @Subscribe(batch = true)",
+                "    protected void listenAll(List<? extends Integer> events) {",
+                "        batches += events.size();",
+                "    }",
+                "    public static class Nested {",
+                "        @Subscribe",
+                "        public void listen(Integer event) {",
+                "        }",
+                "    }",
+                "}");
+        assertTrue(diagnostics.getDiagnostics().toString(), compile("sample/Listener.java"));
+
+        assertTrue(new File(classes, "sample/Listener" + SubscriberIndex.INDEX_SUFFIX + ".class").exists());
+        assertTrue(new File(classes, "sample/Listener$Nested" + SubscriberIndex.INDEX_SUFFIX + ".class").exists());
+
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> listenerClass = classLoader.loadClass("sample.Listener");
+        Object listener = listenerClass.newInstance();
+
+        JBus jBus = new JBus();
+        jBus.register(listener);
+        jBus.post("event");
+        jBus.postAll(1, 2, 3);
+
+        Field caller = listenerClass.getField("caller");
+        assertTrue(((String) caller.get(listener)).startsWith("sample.Listener" + SubscriberIndex.INDEX_SUFFIX));
+        assertEquals(listenerClass.getField("batches").getInt(listener), 3);
+    }
+
+    @Test
+    public void testPrivateSubscriberNotIndexed() throws Exception {
+        write("sample/PrivateListener.java",
+                "package sample;",
+                "import org.dizitart.jbus.Subscribe;",
+                "public class PrivateListener {",
+                "    @Subscribe",
+                "    private void listen(String event) {",
+                "    }",
+                "}");
+        assertTrue(diagnostics.getDiagnostics().toString(), compile("sample/PrivateListener.java"));
+        assertFalse(new File(classes, "sample/PrivateListener" + SubscriberIndex.INDEX_SUFFIX + ".class").exists());
+    }
+
+    @Test
+    public void testPrivateEventTypeNotIndexed() throws Exception {
+        write("sample/Outer.java",
+                "package sample;",
+                "import org.dizitart.jbus.Subscribe;",
+                "import java.util.List;",
+                "public class Outer {",
+                "    private static class Evt {",
+                "    }",
+                "    public static class L {",
+                "        @Subscribe",
+                "        public void listen(Evt event) {",
+                "        }",
+                "    }",
+                "    public static class BatchL {",
+                "        @Subscribe(batch = true)",
+                "        public void listenAll(List<Evt> events) {",
+                "        }",
+                "    }",
+                "}");
+        assertTrue(diagnostics.getDiagnostics().toString(), compile("sample/Outer.java"));
+        assertFalse(new File(classes, "sample/Outer$L" + SubscriberIndex.INDEX_SUFFIX + ".class").exists());
+        assertFalse(new File(classes, "sample/Outer$BatchL" + SubscriberIndex.INDEX_SUFFIX + ".class").exists());
+    }
+
+    @Test
+    public void testInvalidSubscriberRejected() throws Exception {
+        write("sample/InvalidListener.java",
+                "package sample;",
+                "import org.dizitart.jbus.Subscribe;",
+                "public class InvalidListener {",
+                "    @Subscribe",
+                "    void listen(String first, String second) {",
+                "    }",
+                "    @Subscribe(batch = true)",
+                "    void listenAll(String event) {",
+                "    }",
+                "    @Subscribe(async = true, serial = true, queueCapacity = 1,",
+                "            overflowPolicy = org.dizitart.jbus.OverflowPolicy.CALLER_RUNS)",
+                "    void listenSerial(String event) {",
+                "    }",
+                "}");
+        assertFalse(compile("sample/InvalidListener.java"));
+
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            }
+        }
+        assertEquals(errors, 3);
+    }
+
+    private void write(String path, String... lines) throws IOException {
+        File file = new File(sources, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        FileWriter writer = new FileWriter(file);
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private boolean compile(String path) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            String classpath = new File(JBus.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", classpath, "-d", classes.getPath(), "-s", classes.getPath()),
+                    null, fileManager.getJavaFileObjects(new File(sources, path)));
+            task.setProcessors(Collections.singletonList(new SubscriberIndexProcessor()));
+            return task.call();
+        } finally {
+            fileManager.close();
+        }
+    }
+}
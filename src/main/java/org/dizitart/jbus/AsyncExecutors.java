@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory of preset {@link ExecutorService}s for asynchronous subscribers.
+ * The executor is set via {@link JBusConfig#setExecutorService(ExecutorService)}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig
+ */
+public final class AsyncExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncExecutors.class);
+
+    private AsyncExecutors() {}
+
+    /**
+     * Creates an unbounded cached thread pool. This is the executor an event
+     * bus uses if none is configured.
+     *
+     * @return the executor service.
+     * */
+    public static ExecutorService cachedThreadPool() {
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Creates a thread pool of {@code threads} threads with a queue of
+     * {@code queueCapacity} pending events. If the queue is full, the event
+     * is delivered in the thread posting the event, which slows down the
+     * publishers instead of spawning more threads. Once the pool is shut
+     * down, an event is rejected with a {@link RejectedExecutionException}.
+     *
+     * @param threads the number of threads in the pool.
+     * @param queueCapacity the capacity of the queue of pending events.
+     * @return the executor service.
+     * @exception IllegalArgumentException if any of the values is less than 1.
+     * */
+    public static ExecutorService boundedThreadPool(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new CallerRunsUnlessShutdown());
+    }
+
+    /**
+     * Creates a work-stealing fork join pool with the given parallelism.
+     * It requires java 7 or above.
+     *
+     * @param parallelism the parallelism level.
+     * @return the executor service.
+     * @exception JBusException if fork join pool is not supported by the jvm.
+     * */
+    public static ExecutorService forkJoinPool(int parallelism) {
+        try {
+            Class<?> forkJoinPool = Class.forName("java.util.concurrent.ForkJoinPool");
+            return (ExecutorService) forkJoinPool.getConstructor(int.class).newInstance(parallelism);
+        } catch (ClassNotFoundException e) {
+            throw new JBusException("ForkJoinPool requires java 7 or above.", e);
+        } catch (Exception e) {
+            throw new JBusException("Failed to create ForkJoinPool.", e);
+        }
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each event.
+     * It requires java 21 or above, on an older jvm, or if the jvm refuses
+     * to create it, e.g. java 19 or 20 without preview features enabled, it
+     * falls back to a {@link #cachedThreadPool()} of platform threads.
+     *
+     * @return the executor service.
+     * @see #isVirtualThreadSupported()
+     * */
+    public static ExecutorService virtualThreadPerTask() {
+        ExecutorService executorService = createVirtualThreadExecutor();
+        if (executorService == null) {
+            logger.info("Virtual threads are not supported, falling back to platform threads.");
+            return cachedThreadPool();
+        }
+        return executorService;
+    }
+
+    /**
+     * Checks if the running jvm supports virtual threads, by creating
+     * and shutting down a virtual thread executor.
+     *
+     * @return {@code true} if {@link #virtualThreadPerTask()} runs on virtual threads.
+     * */
+    public static boolean isVirtualThreadSupported() {
+        ExecutorService executorService = createVirtualThreadExecutor();
+        if (executorService == null) {
+            return false;
+        }
+        executorService.shutdown();
+        return true;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            // a preview api throws UnsupportedOperationException if not enabled
+            logger.debug("Failed to create virtual thread executor.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Runs a task in the caller if the pool is saturated. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy},
+     * which silently drops it, it rejects a task once the pool is shut down, so the bus can release the delivery.
+     * */
+    private static class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down.");
+            }
+            task.run();
+        }
+    }
+}
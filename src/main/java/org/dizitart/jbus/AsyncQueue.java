@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A queue of pending asynchronous deliveries in front of an executor. At most
+ * {@code concurrency} drainer tasks are running on the executor at any time,
+ * so the executor's own queue never holds more than that many tasks from it.
+ * If the queue is bounded, the {@link OverflowPolicy} decides the fate of an
+ * event when it is full.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class AsyncQueue implements DeliveryQueue {
+    // number of deliveries a drainer makes before it gives the thread back
+    // to the executor, so that other queues sharing the executor get a chance.
+    private static final int DRAIN_BATCH = 64;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final EventDispatcher eventDispatcher;
+    private final Executor executor;
+    private final BlockingQueue<PendingEvent> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int concurrency;
+    private final AtomicInteger drainers = new AtomicInteger();
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a new queue. A {@code capacity} of 0 or less creates an unbounded queue.
+     * */
+    AsyncQueue(EventDispatcher eventDispatcher, Executor executor, int capacity,
+               OverflowPolicy overflowPolicy, int concurrency) {
+        this.eventDispatcher = eventDispatcher;
+        this.executor = executor;
+        this.queue = capacity > 0
+                ? new ArrayBlockingQueue<PendingEvent>(capacity)
+                : new LinkedBlockingQueue<PendingEvent>();
+        this.overflowPolicy = overflowPolicy;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Enqueues the event for delivery to the subscriber, applying
+     * the overflow policy if the queue is full.
+     * */
+    @Override
+    public void submit(Object event, ListenerMethod listenerMethod) {
+        PendingEvent pendingEvent = new PendingEvent(event, listenerMethod);
+        if (!queue.offer(pendingEvent)) {
+            eventDispatcher.overflowTriggered(overflowPolicy);
+            if (!overflow(pendingEvent)) {
+                return;
+            }
+        }
+        scheduleDrainer();
+    }
+
+    @Override
+    public void shutdown() {
+        // drainers run on the executor, which is shut down by its owner
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Applies the overflow policy. Returns {@code true} if the
+     * event has been enqueued.
+     * */
+    private boolean overflow(PendingEvent pendingEvent) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(pendingEvent);
+                    return true;
+                } catch (InterruptedException e) {
+                    eventDispatcher.pendingDropped(pendingEvent.event.get(), pendingEvent.listenerMethod);
+                    Thread.currentThread().interrupt();
+                    throw new JBusException("Interrupted while waiting for space in the queue of "
+                            + pendingEvent.listenerMethod, e);
+                }
+            case DROP_NEWEST:
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Queue is full, event " + pendingEvent.event.get() + " dropped for "
+                            + pendingEvent.listenerMethod);
+                }
+                eventDispatcher.pendingDropped(pendingEvent.event.get(), pendingEvent.listenerMethod);
+                return false;
+            case COALESCE:
+                Object replaced = coalesce(pendingEvent);
+                if (replaced != null) {
+                    // merged into a pending delivery, whose event is dropped
+                    eventDispatcher.pendingDropped(replaced, pendingEvent.listenerMethod);
+                    return false;
+                }
+                // nothing to coalesce with, make space like drop oldest
+                dropOldestAndOffer(pendingEvent);
+                return true;
+            case DROP_OLDEST:
+                dropOldestAndOffer(pendingEvent);
+                return true;
+            case CALLER_RUNS:
+            default:
+                eventDispatcher.deliverPending(pendingEvent.event.get(), pendingEvent.listenerMethod);
+                return false;
+        }
+    }
+
+    private void dropOldestAndOffer(PendingEvent pendingEvent) {
+        while (!queue.offer(pendingEvent)) {
+            PendingEvent oldest = queue.poll();
+            if (oldest != null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Queue is full, event " + oldest.event.get() + " dropped for "
+                            + oldest.listenerMethod);
+                }
+                eventDispatcher.pendingDropped(oldest.take(), oldest.listenerMethod);
+            }
+        }
+    }
+
+    /**
+     * Replaces the event of the latest pending delivery to the same subscriber.
+     * Returns the replaced event, or {@code null} if there is none.
+     * */
+    private Object coalesce(PendingEvent pendingEvent) {
+        PendingEvent latest = null;
+        Iterator<PendingEvent> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            PendingEvent element = iterator.next();
+            if (element.listenerMethod == pendingEvent.listenerMethod) {
+                latest = element;
+            }
+        }
+        return latest != null ? latest.replace(pendingEvent.event.get()) : null;
+    }
+
+    private void scheduleDrainer() {
+        while (true) {
+            int running = drainers.get();
+            if (running >= concurrency) {
+                // a running drainer will pick the event up
+                return;
+            }
+            if (drainers.compareAndSet(running, running + 1)) {
+                try {
+                    executor.execute(drainer);
+                } catch (RuntimeException e) {
+                    drainers.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                PendingEvent pendingEvent = queue.poll();
+                if (pendingEvent == null) {
+                    break;
+                }
+                Object event = pendingEvent.take();
+                if (event != null) {
+                    eventDispatcher.deliverPending(event, pendingEvent.listenerMethod);
+                }
+            }
+        } finally {
+            drainers.decrementAndGet();
+        }
+
+        // an event might have been enqueued while this drainer was finishing
+        if (!queue.isEmpty()) {
+            scheduleDrainer();
+        }
+    }
+
+    /**
+     * A delivery waiting in the queue. Its event can be replaced
+     * until it is taken for delivery.
+     * */
+    private static class PendingEvent {
+        final AtomicReference<Object> event;
+        final ListenerMethod listenerMethod;
+
+        PendingEvent(Object event, ListenerMethod listenerMethod) {
+            this.event = new AtomicReference<Object>(event);
+            this.listenerMethod = listenerMethod;
+        }
+
+        Object take() {
+            return event.getAndSet(null);
+        }
+
+        Object replace(Object newEvent) {
+            Object current = event.get();
+            return current != null && event.compareAndSet(current, newEvent) ? current : null;
+        }
+    }
+}
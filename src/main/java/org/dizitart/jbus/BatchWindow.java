@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accumulates the events to a batch subscriber and delivers them as one list
+ * once {@link Subscribe#batchSize()} events are accumulated or
+ * {@link Subscribe#maxDelay()} has passed since the first one, whichever
+ * comes first.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class BatchWindow extends SubscriberWindow {
+    // guarded by this
+    private List<Object> events;
+    private TimerWheel.Timeout timeout;
+
+    BatchWindow(EventDispatcher eventDispatcher, TimerWheel timerWheel, ListenerMethod listenerMethod) {
+        super(eventDispatcher, timerWheel, listenerMethod);
+    }
+
+    @Override
+    void offer(Object event) {
+        List<Object> full;
+        synchronized (this) {
+            full = add(event);
+        }
+        if (full != null) {
+            eventDispatcher.deliverWindowed(full, listenerMethod, false);
+        }
+    }
+
+    @Override
+    void offerAll(List<?> events) {
+        List<List<Object>> fullBatches = null;
+        synchronized (this) {
+            for (Object event : events) {
+                List<Object> full = add(event);
+                if (full != null) {
+                    if (fullBatches == null) {
+                        fullBatches = new ArrayList<List<Object>>();
+                    }
+                    fullBatches.add(full);
+                }
+            }
+        }
+        if (fullBatches != null) {
+            for (List<Object> full : fullBatches) {
+                eventDispatcher.deliverWindowed(full, listenerMethod, false);
+            }
+        }
+    }
+
+    @Override
+    void release() {
+        List<Object> full;
+        synchronized (this) {
+            if (events == null) {
+                return;
+            }
+            full = close();
+        }
+        eventDispatcher.deliverWindowed(full, listenerMethod, true);
+    }
+
+    /**
+     * Adds the event to the current window and returns the window if it is full.
+     * */
+    private List<Object> add(Object event) {
+        if (events == null) {
+            events = new ArrayList<Object>();
+            if (listenerMethod.maxDelay > 0) {
+                final List<Object> window = events;
+                timeout = timerWheel.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(window);
+                    }
+                }, listenerMethod.maxDelay);
+            }
+        }
+
+        events.add(event);
+        if (listenerMethod.batchSize > 0 && events.size() >= listenerMethod.batchSize) {
+            return close();
+        }
+        return null;
+    }
+
+    /**
+     * Delivers the window on its max delay, unless it has already been closed.
+     * */
+    private void flush(List<Object> window) {
+        List<Object> full;
+        synchronized (this) {
+            if (events != window) {
+                return;
+            }
+            full = close();
+        }
+        eventDispatcher.deliverWindowed(full, listenerMethod, true);
+    }
+
+    private List<Object> close() {
+        List<Object> full = Collections.unmodifiableList(events);
+        events = null;
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        return full;
+    }
+}
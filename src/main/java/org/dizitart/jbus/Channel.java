@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A named channel of an event bus. A channel has its own partition of listeners,
+ * and an event posted to it only reaches the listeners registered to the channel,
+ * or to a pattern matching its name. All channels share the threads and the queues
+ * of their event bus, so traffic can be segmented without multiplying them.
+ *
+ * <p>A channel name is made of segments separated by dots, e.g. {@code orders.eu}.
+ * A listener can be registered to a pattern, where {@code *} matches exactly one
+ * segment and {@code #} matches zero or more segments, e.g. {@code orders.*} or
+ * {@code #}. No event can be posted to a pattern.</p>
+ *
+ * <pre>
+ *     jBus.channel("orders.*").register(auditListener);
+ *     jBus.channel("orders.eu").post(new OrderPlaced());
+ * </pre>
+ *
+ * <p>Sticky events, durable posts and {@link ExceptionEvent}s belong to the event bus
+ * itself, not to its channels.</p>
+ *
+ * <p>A channel is kept by its event bus until it is {@link #close() closed}, so
+ * channel names should be a bounded set, or the channels closed once unused.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBus#channel(String)
+ */
+public class Channel {
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final JBus jBus;
+    private final String name;
+    private final boolean pattern;
+    private final String[] segments;
+    final ListenersRegistry listenersRegistry;
+    private volatile boolean closed;
+
+    Channel(JBus jBus, String name, ListenersRegistry listenersRegistry) {
+        this.jBus = jBus;
+        this.name = name;
+        this.listenersRegistry = listenersRegistry;
+        this.segments = name.split("\\.", -1);
+        boolean wildcard = false;
+        for (String segment : segments) {
+            if (segment.isEmpty() || (segment.length() > 1
+                    && (segment.indexOf('*') >= 0 || segment.indexOf('#') >= 0))) {
+                logger.error("Invalid channel name " + name);
+                throw new JBusException("Invalid channel name " + name);
+            }
+            wildcard |= segment.equals("*") || segment.equals("#");
+        }
+        this.pattern = wildcard;
+    }
+
+    /**
+     * Gets the name of the channel.
+     *
+     * @return the channel name.
+     * */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks if the channel name is a pattern with wildcards.
+     *
+     * @return {@code true} if it is a pattern.
+     * */
+    public boolean isPattern() {
+        return pattern;
+    }
+
+    /**
+     * Registers a listener to the channel, keeping a strong reference of it.
+     *
+     * @param listener the listener object.
+     *
+     * @exception JBusException if the object is already registered to the channel,
+     * if there is no subscriber method in its class hierarchy or if the channel is closed.
+     * @exception NullPointerException if the object is null.
+     * @see JBus#register(Object)
+     * */
+    public void register(Object listener) {
+        if (listener == null) {
+            logger.error("Null object can not be registered.");
+            throw new NullPointerException("Null object can not be registered.");
+        }
+        checkOpen();
+        logger.info("Registering listener " + listener + " to channel " + name);
+        listenersRegistry.register(listener, false);
+    }
+
+    /**
+     * Registers a listener to the channel, keeping a weak reference of it.
+     *
+     * @param listener the listener object.
+     *
+     * @exception JBusException if the object is already registered to the channel,
+     * if there is no subscriber method in its class hierarchy or if the channel is closed.
+     * @exception NullPointerException if the object is null.
+     * @see JBus#registerWeak(Object)
+     * */
+    public void registerWeak(Object listener) {
+        if (listener == null) {
+            logger.error("Null object can not be registered.");
+            throw new NullPointerException("Null object can not be registered.");
+        }
+        checkOpen();
+        logger.info("Registering listener " + listener + " to channel " + name);
+        listenersRegistry.register(listener, true);
+    }
+
+    /**
+     * De-registers a listener from the channel.
+     *
+     * @param listener the listener object to deregister.
+     *
+     * @exception NullPointerException if the object is null.
+     * */
+    public void deregister(Object listener) {
+        if (listener == null) {
+            logger.error("Null object can not be de-registered.");
+            throw new NullPointerException("Null object can not be de-registered.");
+        }
+        logger.info("Un-Registering listener " + listener + " from channel " + name);
+        listenersRegistry.deregister(listener);
+    }
+
+    /**
+     * Posts an event to the listeners of the channel and of the patterns matching it.
+     *
+     * @param event the event to post.
+     *
+     * @exception NullPointerException if the event is null.
+     * @exception JBusException if the channel is a pattern or is closed, if the invoking
+     * subscriber method throws an exception, or if the event bus has been shut down.
+     * */
+    public void post(Object event) {
+        if (pattern) {
+            logger.error("Event posted to the channel pattern " + name);
+            throw new JBusException("Events can not be posted to the channel pattern " + name);
+        }
+        checkOpen();
+        jBus.post(this, event);
+    }
+
+    /**
+     * Closes the channel, removing it from its event bus and de-registering
+     * all of its listeners. Events already dispatched to them are still
+     * delivered. A later call to {@link JBus#channel(String)} with the same
+     * name creates a new channel.
+     * */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            logger.info("Closing channel " + name);
+            jBus.closeChannel(this);
+        }
+    }
+
+    /**
+     * Checks if the channel has been closed.
+     *
+     * @return {@code true} if it is closed.
+     * */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            logger.error("Channel " + name + " has been closed.");
+            throw new JBusException("Channel " + name + " has been closed.");
+        }
+    }
+
+    /**
+     * Checks if the name of a channel matches this channel, or its pattern.
+     * */
+    boolean matches(String[] channelSegments) {
+        return matches(channelSegments, 0, 0);
+    }
+
+    private boolean matches(String[] channelSegments, int channelIndex, int index) {
+        if (index == segments.length) {
+            return channelIndex == channelSegments.length;
+        }
+        if (segments[index].equals("#")) {
+            // zero or more segments
+            for (int i = channelIndex; i <= channelSegments.length; i++) {
+                if (matches(channelSegments, i, index + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return channelIndex < channelSegments.length
+                && (segments[index].equals("*") || segments[index].equals(channelSegments[channelIndex]))
+                && matches(channelSegments, channelIndex + 1, index + 1);
+    }
+
+    String[] getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
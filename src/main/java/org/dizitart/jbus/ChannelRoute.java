@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The partitions an event posted to a channel is dispatched to, i.e. the partition
+ * of the channel itself and of all patterns matching its name. The subscribers of
+ * each event class are merged from all partitions by priority once, and the merged
+ * snapshot is kept until the subscribers of any of the partitions change, so that
+ * a post neither merges nor allocates.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class ChannelRoute {
+    private final ListenersRegistry[] partitions;
+    private final Map<Class<?>, Snapshot> snapshots = new ConcurrentHashMap<Class<?>, Snapshot>();
+
+    /**
+     * Creates the route over the partitions, the one of the channel first.
+     * The route is told about any change of the partitions until it is detached.
+     * */
+    ChannelRoute(ListenersRegistry[] partitions) {
+        this.partitions = partitions;
+        for (ListenersRegistry partition : partitions) {
+            partition.addRoute(this);
+        }
+    }
+
+    /**
+     * Gets the subscribers of all partitions whose filter matches the event, in
+     * the order of priority, and then of the partitions for the same priority.
+     * The returned array is a snapshot shared with other callers.
+     * */
+    ListenerMethod[] getSubscribers(Object event) {
+        if (partitions.length == 1) {
+            return partitions[0].getSubscribers(event);
+        }
+
+        Class<?> eventType = event.getClass();
+        Snapshot snapshot = snapshots.get(eventType);
+        if (snapshot == null || !snapshot.isCurrent()) {
+            // a change racing with this post is caught by the next one
+            snapshot = new Snapshot(eventType);
+            snapshots.put(eventType, snapshot);
+        }
+        if (snapshot.filterIndex == null) {
+            return snapshot.merged;
+        }
+        return snapshot.filterIndex.select(partitions[0].getFilterKey(event));
+    }
+
+    /**
+     * Removes the snapshots affected by a change in the subscribers of {@code eventType}.
+     * */
+    void invalidate(Class<?> eventType) {
+        if (partitions[0].isEventInheritance()) {
+            for (Class<?> snapshotType : snapshots.keySet()) {
+                if (eventType.isAssignableFrom(snapshotType)) {
+                    snapshots.remove(snapshotType);
+                }
+            }
+        } else {
+            snapshots.remove(eventType);
+        }
+    }
+
+    /**
+     * Stops listening to the changes of the partitions, once the route is not used any more.
+     * */
+    void detach() {
+        for (ListenersRegistry partition : partitions) {
+            partition.removeRoute(this);
+        }
+        snapshots.clear();
+    }
+
+    /**
+     * Checks if the route includes a partition.
+     * */
+    boolean includes(ListenersRegistry partition) {
+        for (ListenersRegistry routed : partitions) {
+            if (routed == partition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges two subscriber arrays sorted by priority, the first
+     * one taking precedence for the same priority.
+     * */
+    private static ListenerMethod[] mergeByPriority(ListenerMethod[] first, ListenerMethod[] second) {
+        ListenerMethod[] merged = new ListenerMethod[first.length + second.length];
+        int i = 0, j = 0, k = 0;
+        while (i < first.length && j < second.length) {
+            merged[k++] = first[i].priority >= second[j].priority ? first[i++] : second[j++];
+        }
+        while (i < first.length) {
+            merged[k++] = first[i++];
+        }
+        while (j < second.length) {
+            merged[k++] = second[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * The merged subscribers of an event class, along with the
+     * subscribers of each partition they have been merged from.
+     * */
+    private class Snapshot {
+        final Class<?> eventType;
+        final ListenerMethod[][] sources;
+        final ListenerMethod[] merged;
+        // null if none of the subscribers has a filter
+        final ListenersRegistry.FilterIndex filterIndex;
+
+        Snapshot(Class<?> eventType) {
+            this.eventType = eventType;
+            sources = new ListenerMethod[partitions.length][];
+            ListenerMethod[] subscribers = null;
+            for (int i = 0; i < partitions.length; i++) {
+                sources[i] = partitions[i].getSubscribers(eventType);
+                if (sources[i] != null && sources[i].length > 0) {
+                    subscribers = subscribers == null ? sources[i] : mergeByPriority(subscribers, sources[i]);
+                }
+            }
+            merged = subscribers;
+            filterIndex = subscribers != null && ListenersRegistry.hasFilter(subscribers)
+                    ? new ListenersRegistry.FilterIndex(subscribers) : null;
+        }
+
+        boolean isCurrent() {
+            // the subscriber arrays are replaced on each change
+            for (int i = 0; i < partitions.length; i++) {
+                if (partitions[i].getSubscribers(eventType) != sources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * An event which supplies its own conflation key. Pending events with the
+ * same key replace each other for a {@link Subscribe#conflate()} subscriber,
+ * so that only the latest one of each key is delivered.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see ConflationKeyExtractor
+ */
+public interface Conflatable {
+    /**
+     * Gets the conflation key of the event, e.g. the instrument of a price
+     * update or the name of a gauge.
+     *
+     * @return the conflation key.
+     * */
+    Object getConflationKey();
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A queue of pending asynchronous deliveries to a single conflating subscriber.
+ * It holds one slot per conflation key, a newer event replaces the pending
+ * event of its key, so that the subscriber always receives the latest value
+ * and the queue never grows beyond the number of distinct keys.
+ *
+ * <p>The keys are delivered in the order they first became pending, by a
+ * single drainer task on the executor at a time.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class ConflatingQueue implements DeliveryQueue {
+    // number of deliveries a drainer makes before it gives the thread back
+    // to the executor, so that other queues sharing the executor get a chance.
+    private static final int DRAIN_BATCH = 64;
+    // key of the events without any conflation key
+    private static final Object NO_KEY = new Object();
+
+    private final EventDispatcher eventDispatcher;
+    private final Executor executor;
+    private final ListenerMethod listenerMethod;
+    private final ConflationKeyExtractor keyExtractor;
+    private final ConcurrentMap<Object, Object> pending = new ConcurrentHashMap<Object, Object>();
+    private final Queue<Object> keys = new ConcurrentLinkedQueue<Object>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    ConflatingQueue(EventDispatcher eventDispatcher, Executor executor,
+                    ListenerMethod listenerMethod, ConflationKeyExtractor keyExtractor) {
+        this.eventDispatcher = eventDispatcher;
+        this.executor = executor;
+        this.listenerMethod = listenerMethod;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Puts the event into the slot of its key, replacing the pending event, if any.
+     * */
+    @Override
+    public void submit(Object event, ListenerMethod listenerMethod) {
+        Object key = getKey(event);
+        Object replaced = pending.put(key, event);
+        if (replaced == null) {
+            // a new slot, otherwise the pending event has been replaced
+            // and the key is already waiting for the drainer.
+            keys.offer(key);
+            scheduleDrainer();
+        } else {
+            eventDispatcher.overflowTriggered(OverflowPolicy.COALESCE);
+            eventDispatcher.pendingDropped(replaced, listenerMethod);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // the drainer runs on the executor, which is shut down by its owner
+    }
+
+    @Override
+    public int size() {
+        return pending.size();
+    }
+
+    private Object getKey(Object event) {
+        Object key = null;
+        if (event instanceof Conflatable) {
+            key = ((Conflatable) event).getConflationKey();
+        } else if (keyExtractor != null) {
+            key = keyExtractor.getConflationKey(event);
+        }
+        return key != null ? key : NO_KEY;
+    }
+
+    private void scheduleDrainer() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainer);
+            } catch (RuntimeException e) {
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Object key = keys.poll();
+                if (key == null) {
+                    break;
+                }
+                // take the latest event of the key, a newer one posted from
+                // now on opens a new slot and queues the key again.
+                Object event = pending.remove(key);
+                if (event != null) {
+                    eventDispatcher.deliverPending(event, listenerMethod);
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // a key might have been queued while this drainer was finishing
+        if (!keys.isEmpty()) {
+            scheduleDrainer();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * Delivers only the latest event to a subscriber, once no further event has
+ * been posted to it for {@link Subscribe#debounce()} milliseconds.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class DebounceWindow extends SubscriberWindow {
+    // guarded by this
+    private Object latest;
+    private long deadline;
+    private boolean scheduled;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    DebounceWindow(EventDispatcher eventDispatcher, TimerWheel timerWheel, ListenerMethod listenerMethod) {
+        super(eventDispatcher, timerWheel, listenerMethod);
+    }
+
+    @Override
+    void offer(Object event) {
+        synchronized (this) {
+            latest = event;
+            deadline = now() + listenerMethod.debounce;
+            // a pending timeout is not moved on every event, it
+            // checks the deadline when it fires and waits again.
+            if (!scheduled) {
+                scheduled = true;
+                timerWheel.schedule(flush, listenerMethod.debounce);
+            }
+        }
+    }
+
+    @Override
+    void release() {
+        Object event;
+        synchronized (this) {
+            // the pending timeout finds nothing to deliver
+            event = latest;
+            latest = null;
+        }
+        if (event != null) {
+            eventDispatcher.deliverWindowed(event, listenerMethod, true);
+        }
+    }
+
+    private void flush() {
+        Object event;
+        synchronized (this) {
+            long remaining = deadline - now();
+            if (remaining > 0) {
+                timerWheel.schedule(flush, remaining);
+                return;
+            }
+            event = latest;
+            latest = null;
+            scheduled = false;
+        }
+        if (event != null) {
+            eventDispatcher.deliverWindowed(event, listenerMethod, true);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+/**
+ * A stage holding asynchronous deliveries until they are
+ * executed off the publishing thread.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see AsyncQueue
+ * @see RingBuffer
+ */
+interface DeliveryQueue {
+    /**
+     * Enqueues the event for asynchronous delivery to the subscriber.
+     * */
+    void submit(Object event, ListenerMethod listenerMethod);
+
+    /**
+     * Stops taking any further delivery out of the queue.
+     * */
+    void shutdown();
+
+    /**
+     * Number of pending deliveries in the queue.
+     * */
+    int size();
+}
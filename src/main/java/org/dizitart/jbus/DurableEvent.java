@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * A durable event along with its position in the journal. It is handed to the
+ * queues in place of the event for the subscribers acknowledging it, and it is
+ * unwrapped before the subscriber is invoked.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see Subscribe#durable()
+ */
+class DurableEvent {
+    final Object event;
+    final long offset;
+    final long nextOffset;
+
+    DurableEvent(Object event, long offset, long nextOffset) {
+        this.event = event;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+    }
+}
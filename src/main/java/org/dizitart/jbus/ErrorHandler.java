@@ -19,8 +19,6 @@ package org.dizitart.jbus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
 /**
  * @author Anindya Chatterjee.
  */
@@ -46,13 +44,12 @@ class ErrorHandler {
 
         // first check if any custom error handler is registered. If found,
         // handle it gracefully, otherwise log it and move on.
-        List<ListenerMethod> errorSubscribers = listenersRegistry.getSubscribers(exceptionEvent);
-        if (errorSubscribers != null && !errorSubscribers.isEmpty()) {
+        ListenerMethod[] errorSubscribers = listenersRegistry.getSubscribers(exceptionEvent);
+        if (errorSubscribers != null && errorSubscribers.length > 0) {
             logger.debug("Total error handler found for error " + error
-                    + " is = " + errorSubscribers.size());
+                    + " is = " + errorSubscribers.length);
             logger.info("Dispatching error event " + exceptionEvent);
-            DefaultHandlerChain errorHandlerChain = new DefaultHandlerChain(errorSubscribers);
-            eventDispatcher.dispatch(exceptionEvent, errorHandlerChain);
+            eventDispatcher.dispatch(exceptionEvent, errorSubscribers);
         } else {
             logger.error("No error handler found for " + error);
         }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the events of a class into the off-heap staging buffer of the
+ * event bus, and decodes them right before the subscriber is invoked.
+ * A codec is called concurrently, so it must be stateless. An error of the
+ * codec is routed to the {@link ExceptionEvent} handlers, and an event which
+ * could not be encoded is delivered through the heap instead.
+ *
+ * @param <T> the event type.
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#registerEventCodec(Class, EventCodec)
+ */
+public interface EventCodec<T> {
+    /**
+     * Gets the number of bytes {@link #encode(Object, ByteBuffer)} writes for an event.
+     *
+     * @param event the event.
+     * @return the encoded size in bytes.
+     * */
+    int size(T event);
+
+    /**
+     * Writes an event at the position of the buffer.
+     *
+     * @param event the event.
+     * @param buffer the buffer, with at least {@link #size(Object)} bytes remaining.
+     * */
+    void encode(T event, ByteBuffer buffer);
+
+    /**
+     * Reads an event written by {@link #encode(Object, ByteBuffer)} from the position of the buffer.
+     *
+     * @param buffer the buffer.
+     * @return the event.
+     * */
+    T decode(ByteBuffer buffer);
+}
@@ -21,8 +21,15 @@ package org.dizitart.jbus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Internal class for dispatching event to its registered subscribers.
@@ -33,14 +40,82 @@ import java.util.concurrent.Executors;
  */
 class EventDispatcher {
     private Logger logger = LoggerFactory.getLogger(getClass());
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final ExecutorService executorService;
+    // only an executor created by the dispatcher is shut down by it
+    private final boolean ownsExecutor;
     private ListenersRegistry listenersRegistry;
-    private boolean isShutdownInitiated = false;
+    // the registry of the event bus and the registries of its channels
+    private final List<ListenersRegistry> partitions = new CopyOnWriteArrayList<ListenersRegistry>();
+    private volatile boolean isShutdownInitiated = false;
     private ErrorHandler errorHandler;
 
-    EventDispatcher(ListenersRegistry listenersRegistry) {
+    // bus wide stage of pending async deliveries, null if directly submitted
+    private final DeliveryQueue asyncQueue;
+    // stages the events having a codec outside the heap, null if disabled
+    private final OffHeapQueue offHeapQueue;
+    private final int asyncConcurrency;
+    private final ConflationKeyExtractor conflationKeyExtractor;
+    private final MetricsCollector metrics;
+    private final AtomicLong[] overflowCounts = new AtomicLong[OverflowPolicy.values().length];
+
+    // asynchronous deliveries accepted but neither made nor dropped yet
+    private final AtomicLong pendingDeliveries = new AtomicLong();
+    // asynchronous deliveries whose subscriber is being invoked, out of the pending ones
+    private final AtomicLong runningDeliveries = new AtomicLong();
+    private final Object drainLock = new Object();
+    // number of threads waiting in drain
+    private final AtomicInteger drainWaiters = new AtomicInteger();
+
+    // shared by all time based subscribers, started on first use
+    private volatile TimerWheel timerWheel;
+    // tracks the in-flight invocations, null if disabled
+    private final SubscriberWatchdog watchdog;
+
+    EventDispatcher(ListenersRegistry listenersRegistry, JBusConfig config) {
         this.listenersRegistry = listenersRegistry;
+        partitions.add(listenersRegistry);
+        if (config.getExecutorService() != null) {
+            executorService = config.getExecutorService();
+            ownsExecutor = false;
+        } else {
+            executorService = AsyncExecutors.cachedThreadPool();
+            ownsExecutor = true;
+        }
         errorHandler = new ErrorHandler(listenersRegistry, this);
+
+        for (int i = 0; i < overflowCounts.length; i++) {
+            overflowCounts[i] = new AtomicLong();
+        }
+        asyncConcurrency = config.getAsyncConcurrency();
+        conflationKeyExtractor = config.getConflationKeyExtractor();
+        metrics = config.getMetricsCollector();
+        if (config.getRingBufferSize() > 0) {
+            asyncQueue = new RingBuffer(this, config.getRingBufferSize(),
+                    config.getWaitStrategy(), config.getRingBufferConsumers());
+        } else if (config.getAsyncQueueCapacity() > 0) {
+            asyncQueue = new AsyncQueue(this, executorService, config.getAsyncQueueCapacity(),
+                    config.getOverflowPolicy(), asyncConcurrency);
+        } else {
+            asyncQueue = null;
+        }
+        // a bus wide queue keeps its own capacity and overflow policy on the heap
+        if (asyncQueue == null && config.getOffHeapBufferCapacity() > 0 && !config.getEventCodecs().isEmpty()) {
+            offHeapQueue = new OffHeapQueue(this, executorService, config.getOffHeapBufferCapacity(),
+                    config.getEventCodecs(), asyncConcurrency);
+        } else {
+            offHeapQueue = null;
+        }
+        if (config.getSlowSubscriberThreshold() > 0) {
+            if (config.getSlowSubscriberStrikes() < 1) {
+                throw new JBusException("Slow subscriber strikes must be at least 1, found "
+                        + config.getSlowSubscriberStrikes());
+            }
+            watchdog = new SubscriberWatchdog(this, getTimerWheel(),
+                    config.getSlowSubscriberThreshold(), config.getSlowSubscriberPolicy(),
+                    config.getSlowSubscriberStrikes());
+        } else {
+            watchdog = null;
+        }
     }
 
     /**
@@ -51,19 +126,39 @@ class EventDispatcher {
      * If signalled then no more invocation will happen for that event.
      *
      * */
-    void dispatch(Object event, DefaultHandlerChain handlerChain) {
-        // iterate over the subscriber list. If shutdown is initiated already,
+    void dispatch(Object event, ListenerMethod[] subscribers) {
+        dispatch(event, subscribers, false);
+    }
+
+    /**
+     * Dispatches the event to a handler chain. If the event is {@code batched},
+     * batch subscribers are skipped, as they receive the whole batch
+     * via {@link #dispatchBatch(List, ListenerMethod[])}.
+     * */
+    void dispatch(Object event, ListenerMethod[] subscribers, boolean batched) {
+        dispatch(event, subscribers, batched, null);
+    }
+
+    /**
+     * Dispatches the event to a handler chain. If the event is {@code durable},
+     * the durable subscribers receive it via their checkpoint.
+     * */
+    void dispatch(Object event, ListenerMethod[] subscribers, boolean batched, DurableEvent durableEvent) {
+        // iterate over the subscriber snapshot. If shutdown is initiated already,
         // do not dispatch anything. Otherwise, check the execution mode
         // of the subscriber. If set to async, dispatch it again to the
         // executor service, otherwise invoke the subscriber synchronously.
 
-        HandlerChainAware handlerChainAware;
+        // only a handler chain aware event can signal an interruption. the chain
+        // escapes to the subscriber code and can be interrupted after the dispatch,
+        // hence it is never reused. all other events are dispatched without one.
+        DefaultHandlerChain handlerChain = null;
         if (event instanceof HandlerChainAware) {
-            handlerChainAware = (HandlerChainAware) event;
-            handlerChainAware.setHandlerChain(handlerChain);
+            handlerChain = new DefaultHandlerChain();
+            ((HandlerChainAware) event).setHandlerChain(handlerChain);
         }
 
-        for (ListenerMethod listenerMethod : handlerChain) {
+        for (int i = 0; i < subscribers.length; i++) {
             if (isShutdownInitiated) {
                 logger.debug("Shutdown initiated. No more dispatching.");
                 return;
@@ -71,57 +166,447 @@ class EventDispatcher {
 
             // check for interruption signal before each invocation. if interrupted,
             // no more invocation will happen from the handler chain.
-            if (!handlerChain.interrupt) {
-                if (listenerMethod.async) {
+            if (handlerChain != null && handlerChain.interrupt) {
+                return;
+            }
+
+            ListenerMethod listenerMethod = subscribers[i];
+            if (listenerMethod.windowed) {
+                if (!listenerMethod.batch || !batched) {
+                    getWindow(listenerMethod).offer(event);
+                }
+            } else if (listenerMethod.batch) {
+                if (!batched) {
+                    dispatchBatch(Collections.singletonList(event), listenerMethod);
+                }
+            } else if (listenerMethod.async) {
+                if (logger.isDebugEnabled()) {
                     logger.debug("Executing listener asynchronously " + listenerMethod);
-                    dispatchSingleAsync(event, listenerMethod);
+                }
+                SubscriberCheckpoints.Checkpoint checkpoint = listenerMethod.checkpoint;
+                if (durableEvent != null && checkpoint != null) {
+                    checkpoint.dispatched(durableEvent.offset);
+                    dispatchSingleAsync(durableEvent, listenerMethod);
                 } else {
+                    dispatchSingleAsync(event, listenerMethod);
+                }
+            } else {
+                if (logger.isDebugEnabled()) {
                     logger.debug("Executing listener " + listenerMethod);
-                    dispatchSingle(event, listenerMethod);
                 }
+                dispatchSingle(event, listenerMethod);
             }
         }
     }
 
+    /**
+     * Dispatches a batch of events of the same class to the batch subscribers
+     * among the {@code subscribers}.
+     * */
+    void dispatchBatch(List<?> events, ListenerMethod[] subscribers) {
+        for (ListenerMethod listenerMethod : subscribers) {
+            if (isShutdownInitiated) {
+                logger.debug("Shutdown initiated. No more dispatching.");
+                return;
+            }
+            if (listenerMethod.batch) {
+                dispatchBatch(events, listenerMethod);
+            }
+        }
+    }
+
+    private void dispatchBatch(List<?> events, ListenerMethod listenerMethod) {
+        if (listenerMethod.windowed) {
+            getWindow(listenerMethod).offerAll(events);
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Executing batch listener " + listenerMethod + " with " + events.size() + " events");
+        }
+        if (listenerMethod.async) {
+            dispatchSingleAsync(events, listenerMethod);
+        } else {
+            dispatchSingle(events, listenerMethod);
+        }
+    }
+
     /**
      * Dispatches the subscriber and the event to the executor service for
      * asynchronous execution.
      * */
     private void dispatchSingleAsync(final Object event, final ListenerMethod listenerMethod) {
+        DeliveryQueue queue = getAsyncQueue(listenerMethod);
+        pendingDeliveries.incrementAndGet();
+        boolean staged = false;
+        try {
+            if (offHeapQueue != null && queue == null) {
+                try {
+                    staged = offHeapQueue.offer(event, listenerMethod);
+                } catch (RuntimeException e) {
+                    // the codec has failed, nothing is staged and the
+                    // event is still delivered through the heap
+                    errorHandler.handle(event, listenerMethod, e);
+                }
+            }
+            if (staged) {
+                offHeapQueue.scheduleDrainer();
+            } else if (queue != null) {
+                queue.submit(event, listenerMethod);
+            } else {
+                executorService.submit(new Runnable() {
+                    public void run() {
+                        deliverPending(event, listenerMethod);
+                    }
+                });
+            }
+        } catch (RejectedExecutionException e) {
+            // a queue keeps the delivery pending, until the executor takes it
+            if (queue == null && !staged) {
+                pendingDropped(event, listenerMethod);
+            }
+            if (metrics != null) {
+                metrics.onRejection(null);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the queue for the subscriber, its own one if it conflates, is serial or has
+     * declared a capacity, otherwise the bus wide queue, if any. The queue of a serial
+     * subscriber is drained by a single task at a time, which keeps the deliveries in order.
+     * */
+    private DeliveryQueue getAsyncQueue(ListenerMethod listenerMethod) {
+        if (!listenerMethod.conflate && !listenerMethod.serial && listenerMethod.queueCapacity <= 0) {
+            return asyncQueue;
+        }
+
+        DeliveryQueue queue = listenerMethod.asyncQueue;
+        if (queue == null) {
+            synchronized (listenerMethod) {
+                queue = listenerMethod.asyncQueue;
+                if (queue == null) {
+                    if (listenerMethod.conflate) {
+                        queue = new ConflatingQueue(this, executorService, listenerMethod,
+                                conflationKeyExtractor);
+                    } else {
+                        queue = new AsyncQueue(this, executorService, listenerMethod.queueCapacity,
+                                listenerMethod.overflowPolicy, listenerMethod.serial ? 1 : asyncConcurrency);
+                    }
+                    listenerMethod.asyncQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Gets the window of a time based subscriber, creating it on first use.
+     * */
+    private SubscriberWindow getWindow(ListenerMethod listenerMethod) {
+        SubscriberWindow window = listenerMethod.window;
+        if (window == null) {
+            synchronized (listenerMethod) {
+                window = listenerMethod.window;
+                if (window == null) {
+                    window = SubscriberWindow.create(this, getTimerWheel(), listenerMethod);
+                    listenerMethod.window = window;
+                }
+            }
+        }
+        return window;
+    }
+
+    private TimerWheel getTimerWheel() {
+        TimerWheel wheel = timerWheel;
+        if (wheel == null) {
+            synchronized (this) {
+                wheel = timerWheel;
+                if (wheel == null) {
+                    wheel = new TimerWheel();
+                    timerWheel = wheel;
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Delivers an event, or a list of events, released by the window of a time
+     * based subscriber. A delivery triggered by the timer is always handed over
+     * to the executor, so that the timer thread never runs subscriber code.
+     * */
+    void deliverWindowed(Object event, ListenerMethod listenerMethod, boolean onTimer) {
+        if (isShutdownInitiated) {
+            logger.debug("Shutdown initiated. No more dispatching.");
+            return;
+        }
+        if (listenerMethod.async || onTimer) {
+            dispatchSingleAsync(event, listenerMethod);
+        } else {
+            dispatchSingle(event, listenerMethod);
+        }
+    }
+
+    /**
+     * Records that a queue has applied its overflow policy.
+     * */
+    void overflowTriggered(OverflowPolicy overflowPolicy) {
+        overflowCounts[overflowPolicy.ordinal()].incrementAndGet();
+        if (metrics != null) {
+            metrics.onRejection(overflowPolicy);
+        }
+    }
+
+    /**
+     * Gets how many times the overflow policy has been applied.
+     * */
+    long getOverflowCount(OverflowPolicy overflowPolicy) {
+        return overflowCounts[overflowPolicy.ordinal()].get();
+    }
+
+    /**
+     * Executes the subscriber synchronously.
+     * */
+    void dispatchSingle(Object event, ListenerMethod listenerMethod) {
+        Object listener;
+        if (listenerMethod.holdWeakReference) {
+            listener = listenerMethod.weakListener.get();
+            if (listener == null) {
+                // if underlying object is no more, remove it from the runtime and
+                // all of its associations.
+                listenerMethod.registry.removeWeakListener(listenerMethod.weakListener);
+                return;
+            }
+        } else {
+            listener = listenerMethod.target;
+        }
+
+        SubscriberWatchdog.InFlight inFlight = watchdog != null
+                ? watchdog.begin(listenerMethod, event) : null;
+        long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            listenerMethod.invoker.invoke(listener, event);
+            if (metrics != null) {
+                metrics.onInvocation(listenerMethod.method, System.nanoTime() - start);
+            }
+        } catch (Throwable e) {
+            if (metrics != null) {
+                metrics.onInvocation(listenerMethod.method, System.nanoTime() - start);
+                metrics.onError(listenerMethod.method, e);
+            }
+            // invokers do not wrap the error thrown from the subscriber code
+            logger.error("Error occurred while invoking " + listenerMethod, e);
+            errorHandler.handle(event, listenerMethod, e);
+        } finally {
+            if (inFlight != null) {
+                inFlight.end();
+            }
+        }
+    }
+
+    /**
+     * Dispatches a diagnostic event raised by the event bus itself in the executor,
+     * so that the thread raising it never runs any subscriber code.
+     * */
+    void dispatchDiagnostic(final Object event) {
+        final ListenerMethod[] subscribers = listenersRegistry.getSubscribers(event);
+        if (isShutdownInitiated || subscribers == null || subscribers.length == 0) {
+            return;
+        }
         executorService.submit(new Runnable() {
             public void run() {
-                dispatchSingle(event, listenerMethod);
+                dispatch(event, subscribers);
             }
         });
     }
 
     /**
-     * Executes the subscriber synchronously.
+     * Makes an asynchronous delivery accepted by {@link #dispatchSingleAsync(Object, ListenerMethod)}.
+     * Once the shutdown is initiated, the pending deliveries are discarded.
      * */
-    private void dispatchSingle(Object event, ListenerMethod listenerMethod) {
+    void deliverPending(Object event, ListenerMethod listenerMethod) {
+        // counted as running before the shutdown flag is read, so that
+        // a shutdown never counts a delivery it lets run as discarded
+        runningDeliveries.incrementAndGet();
+        boolean running = true;
         try {
-            if (listenerMethod.holdWeakReference) {
-                Object listener = listenerMethod.weakListener.get();
-                if (listener == null) {
-                    // if underlying object is no more, remove it from the runtime and
-                    // all of its associations.
-                    listenersRegistry.removeWeakListener(listenerMethod.weakListener);
+            if (isShutdownInitiated) {
+                // discarded by the shutdown, delivered again after a restart
+                runningDeliveries.decrementAndGet();
+                running = false;
+                releaseDurable(event, listenerMethod, true);
+                return;
+            }
+            if (event instanceof DurableEvent) {
+                // acknowledged once finished, even if the subscriber has failed,
+                // unless it might have been interrupted by the shutdown
+                DurableEvent durableEvent = (DurableEvent) event;
+                dispatchSingle(durableEvent.event, listenerMethod);
+                if (!isShutdownInitiated) {
+                    listenerMethod.checkpoint.acknowledge(durableEvent.offset, durableEvent.nextOffset);
                 } else {
-                    // invoke synchronously.
-                    listenerMethod.method.invoke(listener, event);
+                    releaseDurable(event, listenerMethod, true);
                 }
             } else {
-                listenerMethod.method.invoke(listenerMethod.target, event);
+                dispatchSingle(event, listenerMethod);
             }
-        } catch (Exception e) {
-            if (e.getCause() != null) {
-                logger.error("Error occurred while invoking " + listenerMethod, e.getCause());
-                errorHandler.handle(event, listenerMethod, e.getCause());
-            } else {
-                logger.error("Error occurred while invoking " + listenerMethod, e);
-                errorHandler.handle(event, listenerMethod, e);
+        } finally {
+            pendingDone();
+            if (running) {
+                runningDeliveries.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Records that an accepted asynchronous delivery of an event has been dropped,
+     * by the overflow policy of its queue or a rejection.
+     * */
+    void pendingDropped(Object event, ListenerMethod listenerMethod) {
+        // dropped on purpose or reported to the publisher, a
+        // durable event must not hold its subscriber back
+        releaseDurable(event, listenerMethod, false);
+        pendingDone();
+    }
+
+    /**
+     * Records that a staged delivery has been lost, as its event could not be
+     * decoded, and routes the error to the error handlers.
+     * */
+    void undeliverable(ListenerMethod listenerMethod, Throwable error) {
+        try {
+            errorHandler.handle(null, listenerMethod, error);
+        } finally {
+            pendingDropped(null, listenerMethod);
+        }
+    }
+
+    private void releaseDurable(Object event, ListenerMethod listenerMethod, boolean redelivered) {
+        if (event instanceof DurableEvent && listenerMethod.checkpoint != null) {
+            listenerMethod.checkpoint.discard(((DurableEvent) event).offset, redelivered);
+        }
+    }
+
+    private void pendingDone() {
+        if (pendingDeliveries.decrementAndGet() == 0 && drainWaiters.get() > 0) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the events held back by the time based subscribers and waits until
+     * all pending asynchronous deliveries are made, or the timeout elapses.
+     *
+     * @return {@code true} if no delivery is pending.
+     * */
+    boolean drain(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        drainWaiters.incrementAndGet();
+        try {
+            for (ListenerMethod[] subscribers : getAllSubscribers()) {
+                for (ListenerMethod listenerMethod : subscribers) {
+                    SubscriberWindow window = listenerMethod.window;
+                    if (window != null) {
+                        window.release();
+                    }
+                }
+            }
+
+            synchronized (drainLock) {
+                long remaining;
+                while (pendingDeliveries.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(drainLock, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
             }
+            return pendingDeliveries.get() == 0;
+        } finally {
+            drainWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Drains the pending asynchronous deliveries within the timeout, then stops all
+     * threads of the event bus. The deliveries still pending are discarded, while the
+     * ones already invoking their subscriber are left to finish or interrupted.
+     *
+     * @return the number of discarded deliveries.
+     * */
+    long shutdown(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        drain(timeoutNanos);
+        stop();
+        // once stopped, none of the deliveries not running yet is ever made
+        long undelivered = Math.max(pendingDeliveries.get() - runningDeliveries.get(), 0);
+
+        if (ownsExecutor) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (!executorService.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                    // interrupt the subscribers still running
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (undelivered > 0) {
+            logger.warn(undelivered + " asynchronous deliveries have been discarded on shutdown.");
+        }
+        return undelivered;
+    }
+
+    /**
+     * Gets the number of deliveries pending in the bus wide queue
+     * and in the queues of all subscribers.
+     * */
+    int getAsyncQueueDepth() {
+        int depth = asyncQueue != null ? asyncQueue.size() : 0;
+        if (offHeapQueue != null) {
+            depth += offHeapQueue.size();
+        }
+        for (ListenerMethod[] subscribers : getAllSubscribers()) {
+            for (ListenerMethod listenerMethod : subscribers) {
+                DeliveryQueue queue = listenerMethod.asyncQueue;
+                if (queue != null) {
+                    depth += queue.size();
+                }
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Adds the registry of a channel, sharing the executor and the queues of the event bus.
+     * */
+    void addPartition(ListenersRegistry registry) {
+        partitions.add(registry);
+    }
+
+    /**
+     * Removes the registry of a closed channel.
+     * */
+    void removePartition(ListenersRegistry registry) {
+        partitions.remove(registry);
+    }
+
+    /**
+     * Gets the subscribers of all event types in all partitions.
+     * */
+    private List<ListenerMethod[]> getAllSubscribers() {
+        List<ListenerMethod[]> allSubscribers = new ArrayList<ListenerMethod[]>();
+        for (ListenersRegistry partition : partitions) {
+            allSubscribers.addAll(partition.getAllSubscribers());
         }
+        return allSubscribers;
     }
 
     /**
@@ -131,18 +616,42 @@ class EventDispatcher {
         return new Runnable() {
             @Override
             public void run() {
-                // set a flag to indicate the shutdown has been initiated, so that
-                // no more dispatch happens. Then gracefully shutdown the executor.
-                isShutdownInitiated = true;
-                if (!executorService.isShutdown()) {
-                    logger.debug("Shutting down executor, no more event will be dispatched.");
-                    executorService.shutdown();
-                    logger.debug("Executor has been shutdown gracefully.");
-                }
+                stop();
             }
         };
     }
 
+    private void stop() {
+        // set a flag to indicate the shutdown has been initiated, so that
+        // no more dispatch happens. Then gracefully shutdown the executor.
+        isShutdownInitiated = true;
+        if (asyncQueue != null) {
+            asyncQueue.shutdown();
+        }
+        if (offHeapQueue != null) {
+            offHeapQueue.shutdown();
+        }
+        for (ListenerMethod[] subscribers : getAllSubscribers()) {
+            for (ListenerMethod listenerMethod : subscribers) {
+                DeliveryQueue queue = listenerMethod.asyncQueue;
+                if (queue != null) {
+                    queue.shutdown();
+                }
+            }
+        }
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+        if (timerWheel != null) {
+            timerWheel.stop();
+        }
+        if (ownsExecutor && !executorService.isShutdown()) {
+            logger.debug("Shutting down executor, no more event will be dispatched.");
+            executorService.shutdown();
+            logger.debug("Executor has been shutdown gracefully.");
+        }
+    }
+
     /**
      * Registers a shutdown hook to the JVM for graceful shutdown of the event bus.
      * */
@@ -0,0 +1,523 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A segmented, memory-mapped, append only journal of serialized events.
+ *
+ * <p>Each record is its length, the CRC32 of its data and the data. The
+ * offset of a record is its position in the whole journal, a segment is a
+ * file named after the offset of its first record. A new segment is started
+ * once a record does not fit in the current one. The length is written last,
+ * and a segment is zero filled, so a length of 0 marks its end. On opening,
+ * the last segment is scanned up to its first incomplete or corrupted record,
+ * which is where the next record is written.</p>
+ *
+ * <p>An append only writes to the mapped segment, which survives a crash of
+ * the process. The segment is forced to the disk by a background thread every
+ * sync interval, or, if the interval is 0, before an append returns. Concurrent
+ * appends waiting for the disk share a single force.</p>
+ *
+ * <p>Only the segment being written is mapped, and kept open. The older segments
+ * are read through a file opened for the duration of a read. Whole segments are
+ * removed once all durable subscribers have committed past them, or once the
+ * journal exceeds its retention size or a segment its retention time.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class EventJournal {
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_SIZE = 8;
+    private static final int MIN_SEGMENT_SIZE = 1024;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final File directory;
+    private final int segmentSize;
+    private final long syncInterval;
+    private final long retentionSize;
+    private final long retentionTime;
+
+    // guarded by this, the files of all segments by their base offset
+    private final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+    private Segment current;
+
+    // end of the last appended record
+    private volatile long writeOffset;
+    // guarded by syncLock
+    private long syncedOffset;
+    private final Object syncLock = new Object();
+    private final Thread syncer;
+    private volatile boolean open = true;
+
+    EventJournal(File directory, int segmentSize, long syncInterval) {
+        this(directory, segmentSize, syncInterval, 0, 0);
+    }
+
+    /**
+     * Opens a journal keeping at most {@code retentionSize} bytes, and the segments
+     * completed in the last {@code retentionTime} milliseconds, 0 for no limit.
+     * */
+    EventJournal(File directory, int segmentSize, long syncInterval, long retentionSize, long retentionTime) {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new JBusException("Journal segment size must be at least " + MIN_SEGMENT_SIZE
+                    + ", found " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.error("Could not create journal directory " + directory);
+            throw new JBusException("Could not create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+        this.retentionSize = retentionSize;
+        this.retentionTime = retentionTime;
+
+        try {
+            for (long base : findSegments(directory)) {
+                segments.put(base, Segment.file(directory, base));
+            }
+            long last = segments.isEmpty() ? 0 : segments.lastKey();
+            current = Segment.open(directory, last, segmentSize);
+            segments.put(last, current.file);
+            current.position = recover(current);
+        } catch (IOException e) {
+            logger.error("Could not open journal " + directory, e);
+            throw new JBusException("Could not open journal " + directory, e);
+        }
+        writeOffset = current.base + current.position;
+        syncedOffset = writeOffset;
+        logger.debug("Journal " + directory + " opened at offset " + writeOffset);
+
+        if (syncInterval > 0) {
+            syncer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    syncPeriodically();
+                }
+            }, "jbus-journal");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Appends a record and returns its offset. If the sync interval is 0,
+     * the record is on the disk once it returns.
+     * */
+    long append(byte[] data) {
+        long offset = write(data);
+        if (syncInterval <= 0) {
+            sync(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the offset of the record following a record.
+     * */
+    static long nextOffset(long offset, int dataLength) {
+        return offset + HEADER_SIZE + dataLength;
+    }
+
+    /**
+     * Gets the offset the next record will be written at.
+     * */
+    long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * Reads the records from an offset up to the last record appended so far.
+     * An offset before the first segment starts from the first record.
+     *
+     * @return the offset after the last record read.
+     * */
+    long read(long fromOffset, RecordHandler handler) {
+        long end;
+        Segment active;
+        List<Map.Entry<Long, File>> snapshot;
+        synchronized (this) {
+            checkOpen();
+            end = writeOffset;
+            active = current;
+            Long first = segments.floorKey(fromOffset);
+            snapshot = new ArrayList<Map.Entry<Long, File>>((first != null
+                    ? segments.tailMap(first, true) : segments).entrySet());
+        }
+
+        long offset = fromOffset;
+        for (int i = 0; i < snapshot.size(); i++) {
+            long base = snapshot.get(i).getKey();
+            if (offset < base) {
+                offset = base;
+            }
+            // a segment ends where the next one starts, whatever follows its last record
+            long segmentEnd = i + 1 < snapshot.size() ? snapshot.get(i + 1).getKey() : end;
+            if (base == active.base) {
+                // a private view, the position of the mapped buffer belongs to the writer
+                offset = readRecords(base, active.buffer.duplicate(), offset, segmentEnd, handler);
+            } else {
+                offset = readSegment(base, snapshot.get(i).getValue(), offset, segmentEnd, handler);
+            }
+        }
+        return Math.max(offset, fromOffset);
+    }
+
+    /**
+     * Removes the segments all of whose records are before the offset,
+     * except the segment being written.
+     * */
+    synchronized void retain(long offset) {
+        if (!open) {
+            return;
+        }
+        while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= offset) {
+            if (!removeOldest()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the offset of the first record retained.
+     * */
+    synchronized long getFirstOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Reads the records of a segment which is not written any more, through its file.
+     * */
+    private long readSegment(long base, File file, long offset, long segmentEnd, RecordHandler handler) {
+        RandomAccessFile randomAccessFile;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+        } catch (IOException e) {
+            // removed by the retention meanwhile
+            logger.debug("Journal segment " + file + " has been removed.");
+            return offset;
+        }
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // mapped only while it is read, released once the reader drops it
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readRecords(base, buffer, offset, segmentEnd, handler);
+        } catch (IOException e) {
+            logger.error("Could not read journal segment " + file, e);
+            throw new JBusException("Could not read journal segment " + file, e);
+        } finally {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                logger.error("Could not close journal segment " + file, e);
+            }
+        }
+    }
+
+    private long readRecords(long base, ByteBuffer view, long offset, long segmentEnd, RecordHandler handler) {
+        int position = (int) (offset - base);
+        while (base + position < segmentEnd && position + HEADER_SIZE <= view.capacity()) {
+            int length = view.getInt(position);
+            if (length <= 0) {
+                break;
+            }
+            byte[] data = readData(view, position, length);
+            if (data == null) {
+                logger.error("Corrupted journal record at offset " + (base + position));
+                throw new JBusException("Corrupted journal record at offset " + (base + position));
+            }
+            handler.onRecord(base + position, data);
+            position += HEADER_SIZE + length;
+        }
+        return base + position;
+    }
+
+    /**
+     * Forces the journal to the disk, stops the background sync and closes the segments.
+     * */
+    void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (syncer != null) {
+            syncer.interrupt();
+        }
+        synchronized (syncLock) {
+            synchronized (this) {
+                current.buffer.force();
+                closeCurrent();
+            }
+        }
+        logger.debug("Journal " + directory + " closed at offset " + writeOffset);
+    }
+
+    private synchronized long write(byte[] data) {
+        checkOpen();
+        if (data.length == 0) {
+            throw new JBusException("An empty record can not be written to the journal.");
+        }
+        int recordSize = HEADER_SIZE + data.length;
+        if (recordSize > segmentSize) {
+            throw new JBusException("A record of " + recordSize
+                    + " bytes does not fit in a journal segment of " + segmentSize + " bytes.");
+        }
+        if (current.buffer.capacity() - current.position < recordSize) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        MappedByteBuffer buffer = current.buffer;
+        int position = current.position;
+        buffer.position(position + HEADER_SIZE);
+        buffer.put(data);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // the length goes last, a record is never seen half written
+        buffer.putInt(position, data.length);
+
+        current.position = position + recordSize;
+        long offset = current.base + position;
+        writeOffset = offset + recordSize;
+        return offset;
+    }
+
+    /**
+     * Starts a new segment after the last record of the current one.
+     * */
+    private void roll() {
+        // the rest of the old segment is never forced by a sync
+        current.buffer.force();
+        Segment next;
+        try {
+            next = Segment.open(directory, current.base + current.position, segmentSize);
+        } catch (IOException e) {
+            logger.error("Could not create a journal segment in " + directory, e);
+            throw new JBusException("Could not create a journal segment in " + directory, e);
+        }
+        // the age of a segment counts from its completion
+        if (!current.file.setLastModified(System.currentTimeMillis())) {
+            logger.debug("Could not set the completion time of " + current.file);
+        }
+        closeCurrent();
+        segments.put(next.base, next.file);
+        current = next;
+        logger.debug("Journal rolled to segment " + next.file);
+        applyRetentionLimits();
+    }
+
+    /**
+     * Removes the oldest segments while the journal is larger than its retention
+     * size, or the oldest segment is older than the retention time.
+     * */
+    private void closeCurrent() {
+        try {
+            current.close();
+        } catch (IOException e) {
+            logger.error("Could not close journal segment " + current.file, e);
+        }
+    }
+
+    private void applyRetentionLimits() {
+        long now = System.currentTimeMillis();
+        while (segments.size() > 1) {
+            Map.Entry<Long, File> oldest = segments.firstEntry();
+            boolean tooLarge = retentionSize > 0 && writeOffset - oldest.getKey() > retentionSize;
+            boolean tooOld = retentionTime > 0 && now - oldest.getValue().lastModified() > retentionTime;
+            if (!(tooLarge || tooOld) || !removeOldest()) {
+                return;
+            }
+        }
+    }
+
+    private boolean removeOldest() {
+        File file = segments.firstEntry().getValue();
+        if (file.exists() && !file.delete()) {
+            // e.g. still read on a platform which does not delete open files
+            logger.warn("Could not remove journal segment " + file + ", retrying later.");
+            return false;
+        }
+        segments.remove(segments.firstKey());
+        logger.debug("Journal segment " + file + " removed.");
+        return true;
+    }
+
+    /**
+     * Waits until the record at the offset is on the disk. A single force
+     * covers all records appended before it, so the appends waiting meanwhile
+     * return without forcing again.
+     * */
+    private void sync(long offset) {
+        synchronized (syncLock) {
+            if (syncedOffset > offset || !open) {
+                return;
+            }
+            long target = writeOffset;
+            Segment segment;
+            synchronized (this) {
+                segment = current;
+            }
+            // the older segments have been forced when rolled
+            segment.buffer.force();
+            syncedOffset = target;
+        }
+    }
+
+    private void syncPeriodically() {
+        while (open) {
+            try {
+                Thread.sleep(syncInterval);
+            } catch (InterruptedException e) {
+                break;
+            }
+            long end = writeOffset;
+            if (end > 0) {
+                sync(end - 1);
+            }
+        }
+        logger.debug("Journal sync of " + directory + " stopped.");
+    }
+
+    /**
+     * Finds the end of the last complete record of a segment.
+     * */
+    private int recover(Segment segment) {
+        ByteBuffer view = segment.buffer.duplicate();
+        int position = 0;
+        while (position + HEADER_SIZE <= view.capacity()) {
+            int length = view.getInt(position);
+            if (length <= 0 || readData(view, position, length) == null) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        if (position + HEADER_SIZE <= view.capacity() && view.getInt(position) != 0) {
+            logger.warn("Incomplete journal record discarded at offset " + (segment.base + position));
+        }
+        return position;
+    }
+
+    /**
+     * Reads the data of a record, or returns {@code null} if it is incomplete or corrupted.
+     * */
+    private static byte[] readData(ByteBuffer view, int position, int length) {
+        if (length > view.capacity() - position - HEADER_SIZE) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        view.position(position + HEADER_SIZE);
+        view.get(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue() == view.getInt(position + 4) ? data : null;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new JBusException("Journal " + directory + " has been closed.");
+        }
+    }
+
+    private static List<Long> findSegments(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        List<Long> bases = new ArrayList<Long>();
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        return bases;
+    }
+
+    /**
+     * Receives the records read from the journal.
+     * */
+    interface RecordHandler {
+        void onRecord(long offset, byte[] data);
+    }
+
+    /**
+     * The memory-mapped file of the journal being written.
+     * */
+    private static class Segment {
+        final long base;
+        final File file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // end of the last record, only used by the writer
+        int position;
+
+        private Segment(long base, File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.base = base;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() throws IOException {
+            // the mapping itself is released once the buffer is collected
+            channel.close();
+        }
+
+        static File file(File directory, long base) {
+            return new File(directory, String.format("%020d", base) + SEGMENT_SUFFIX);
+        }
+
+        static Segment open(File directory, long base, int size) throws IOException {
+            File file = file(directory, base);
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                // an existing segment keeps its size
+                long length = Math.max(randomAccessFile.length(), size);
+                FileChannel channel = randomAccessFile.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                return new Segment(base, file, channel, buffer);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * Converts the events posted via {@link JBus#postDurable(Object)} to bytes
+ * to be written to the journal, and back when they are replayed.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setEventSerializer(EventSerializer)
+ * @see JavaEventSerializer
+ */
+public interface EventSerializer {
+    /**
+     * Serializes an event.
+     *
+     * @param event the event.
+     * @return the serialized event, not empty.
+     * @exception JBusException if the event can not be serialized.
+     * */
+    byte[] serialize(Object event);
+
+    /**
+     * Deserializes an event.
+     *
+     * @param data the serialized event.
+     * @return the event.
+     * @exception JBusException if the event can not be deserialized.
+     * */
+    Object deserialize(byte[] data);
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * Extracts the filter key of an event which does not implement
+ * {@link Filterable}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setFilterKeyExtractor(FilterKeyExtractor)
+ */
+public interface FilterKeyExtractor {
+    /**
+     * Gets the filter key of the event.
+     *
+     * @param event the event.
+     * @return the filter key, or {@code null} if the event has none.
+     * */
+    Object getFilterKey(Object event);
+}
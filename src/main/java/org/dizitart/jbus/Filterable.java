@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * An event which supplies its own filter key. It is delivered only to the
+ * subscribers whose {@link Subscribe#filter()} matches the key, and to the
+ * subscribers without any filter.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see FilterKeyExtractor
+ */
+public interface Filterable {
+    /**
+     * Gets the filter key of the event, e.g. the tenant it belongs to.
+     *
+     * @return the filter key, compared with the filters by its string value.
+     * */
+    Object getFilterKey();
+}
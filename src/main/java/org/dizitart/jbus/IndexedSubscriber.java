@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * A subscriber method in a generated {@link SubscriberIndex}, along with
+ * the generated code to invoke it directly.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+public abstract class IndexedSubscriber implements Invoker {
+    final String methodName;
+    final Class<?> parameterType;
+    final Class<?> eventType;
+
+    /**
+     * Instantiates a new indexed subscriber.
+     *
+     * @param methodName the name of the subscriber method.
+     * @param parameterType the erased type of its parameter.
+     * @param eventType the event type it subscribes to, which is the
+     *                  element type of the list for a batch subscriber.
+     * */
+    protected IndexedSubscriber(String methodName, Class<?> parameterType, Class<?> eventType) {
+        this.methodName = methodName;
+        this.parameterType = parameterType;
+        this.eventType = eventType;
+    }
+
+    /**
+     * Invokes the subscriber method on {@code target} passing {@code event}.
+     *
+     * @param target the listener object.
+     * @param event the event to deliver.
+     * @throws Throwable exception thrown from the subscriber code.
+     * */
+    public abstract void invoke(Object target, Object event) throws Throwable;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+/**
+ * Invokes a subscriber method on a listener object. An implementation
+ * is selected once per subscriber method at registration time and
+ * reused for every dispatch.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see InvokerFactory
+ */
+interface Invoker {
+    /**
+     * Invokes the subscriber method on {@code target} passing {@code event}.
+     * Any exception thrown from the subscriber code is propagated as it is,
+     * without any wrapping.
+     *
+     * @param target the listener object.
+     * @param event the event to deliver.
+     * @throws Throwable exception thrown from the subscriber code.
+     * */
+    void invoke(Object target, Object event) throws Throwable;
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * Selects the fastest {@link Invoker} the running jvm supports for a
+ * subscriber method. On java 8+ it generates a {@link LambdaInvoker},
+ * otherwise or if generation fails, it falls back to {@link ReflectionInvoker}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class InvokerFactory {
+    private final static Logger logger = LoggerFactory.getLogger(InvokerFactory.class);
+    private final static boolean lambdaSupported = isLambdaSupported();
+
+    /**
+     * Creates an invoker for the subscriber {@code method}. The method
+     * must already be made accessible.
+     * */
+    static Invoker createInvoker(Method method) {
+        if (lambdaSupported) {
+            try {
+                return LambdaInvoker.create(method);
+            } catch (Throwable e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Could not generate invoker for " + method
+                            + ", falling back to reflection.", e);
+                }
+            }
+        }
+        return new ReflectionInvoker(method);
+    }
+
+    private static boolean isLambdaSupported() {
+        try {
+            Class.forName("java.lang.invoke.LambdaMetafactory");
+            Class.forName("java.util.function.BiConsumer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            logger.debug("LambdaMetafactory is not available, subscribers will be invoked via reflection.");
+            return false;
+        }
+    }
+}
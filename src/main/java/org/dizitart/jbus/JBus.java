@@ -20,7 +20,17 @@ package org.dizitart.jbus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An event bus for java 1.6+. It dispatches event to registered listeners.
@@ -63,13 +73,25 @@ import java.util.List;
  * <p><b>To post an event</b> to the event bus, simply call {@link #post(Object)}
  * passing the event object. Event bus will automatically route the event depending on
  * its type to a handler chain. Handler chain is a collection of registered subscribers
- * of the event. By design, event bus does not support inheritance for the event object.</p>
+ * of the event. By default, event bus does not support inheritance for the event object.
+ * It can be enabled via {@link JBusConfig#setEventInheritance(boolean)}, in which case
+ * the subscribers of all super classes and interfaces of the event are also part of
+ * the handler chain.</p>
+ *
+ * A collection of events can be posted at once via {@link #postAll(java.util.Collection)}.
+ * Subscribers marked with {@link Subscribe#batch()} receive such events as a list.
+ *
+ * An event posted via {@link #postSticky(Object)} is kept by the event bus and replayed
+ * to the subscribers marked with {@link Subscribe#sticky()} when they register later.
  *
  * If an event implements {@link HandlerChainAware} then before each invocation, the runtime
  * will check if an interruption has been signalled from the subscriber code via
  * {@link HandlerChain#interrupt()} call. If interrupted, further invocation of the handler
  * chain will be barred until the next {@link #post(Object)} call for the event.
  *
+ * Events can be segmented into named {@link Channel}s via {@link #channel(String)}, each with its
+ * own listeners, sharing the threads and the queues of the event bus.
+ *
  * <p><b>Subscriber execution</b> mode can be either <em>synchronous</em> or <em>asynchronous</em>
  * depending on the {@link Subscribe} annotation.</p>
  *
@@ -78,6 +100,11 @@ import java.util.List;
  * relevant information in {@link ExceptionContext} to the handler if found. If no such error handler
  * is found, runtime will just log the error and move on.
  *
+ * <p><b>To shut down</b> the event bus, call {@link #drain(long, TimeUnit)} to wait for the
+ * pending asynchronous deliveries, {@link #shutdown(long, TimeUnit)} to also release its threads,
+ * or {@link #close()}. Once any of them is called, the event bus does not accept any further
+ * event.</p>
+ *
  *
  * @since 1.0
  * @author Anindya Chatterjee.
@@ -87,18 +114,69 @@ import java.util.List;
  * @see ExceptionEvent
  * @see ExceptionContext
  */
-public class JBus {
+public class JBus implements Closeable {
     private Logger logger = LoggerFactory.getLogger(getClass());
     private ListenersRegistry listenersRegistry;
     private EventDispatcher eventDispatcher;
+    private StickyEventStore stickyEvents;
+    private MetricsCollector metrics;
+    private boolean eventInheritance;
+    private long shutdownTimeout;
+    private EventJournal journal;
+    private SubscriberCheckpoints checkpoints;
+    // binds the durable subscribers to their checkpoints, null without a journal
+    private ListenersRegistry.SubscriberBinder checkpointBinder;
+    private EventSerializer eventSerializer;
+    private volatile boolean closed;
     private String tag = "";
 
+    // channels by name, created on first use, removed once closed and guarded by the map for any change
+    private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
+    private final List<Channel> channelOrder = new ArrayList<Channel>();
+    // route of each channel name, removed whenever a pattern matching it is created or closed
+    private final ConcurrentMap<String, ChannelRoute> routingTable = new ConcurrentHashMap<String, ChannelRoute>();
+    private FilterKeyExtractor filterKeyExtractor;
+
     /**
-     * Instantiates a new event bus.
+     * Instantiates a new event bus with default configuration.
      */
     public JBus() {
-        listenersRegistry = new ListenersRegistry();
-        eventDispatcher = new EventDispatcher(listenersRegistry);
+        this(new JBusConfig());
+    }
+
+    /**
+     * Instantiates a new event bus with the supplied configuration.
+     *
+     * @param config the event bus configuration.
+     *
+     * @exception  NullPointerException if the configuration is null.
+     * @since 1.3
+     */
+    public JBus(JBusConfig config) {
+        if (config == null) {
+            throw new NullPointerException("Null configuration can not be used.");
+        }
+        metrics = config.getMetricsCollector();
+        filterKeyExtractor = config.getFilterKeyExtractor();
+        listenersRegistry = new ListenersRegistry(config.isEventInheritance(), metrics, filterKeyExtractor);
+        eventDispatcher = new EventDispatcher(listenersRegistry, config);
+        stickyEvents = new StickyEventStore(config.getStickyEventCapacity(), config.getStickyEventExpiry());
+        eventInheritance = config.isEventInheritance();
+        shutdownTimeout = config.getShutdownTimeout();
+        if (config.getJournalDirectory() != null) {
+            journal = new EventJournal(config.getJournalDirectory(), config.getJournalSegmentSize(),
+                    config.getJournalSyncInterval(), config.getJournalRetentionSize(),
+                    config.getJournalRetentionTime());
+            eventSerializer = config.getEventSerializer();
+            checkpoints = new SubscriberCheckpoints(config.getJournalDirectory(), config.getCheckpointInterval(),
+                    journal);
+            checkpointBinder = new ListenersRegistry.SubscriberBinder() {
+                @Override
+                public void bind(ListenerMethod listenerMethod) {
+                    bindCheckpoint(listenerMethod);
+                }
+            };
+        }
     }
 
     /**
@@ -119,7 +197,7 @@ public class JBus {
             throw new NullPointerException("Null object can not be registered.");
         }
         logger.info("Registering listener " + listener);
-        listenersRegistry.register(listener, false);
+        replayStickyEvents(listenersRegistry.register(listener, false, checkpointBinder));
     }
 
     /**
@@ -140,7 +218,7 @@ public class JBus {
             throw new NullPointerException("Null object can not be registered.");
         }
         logger.info("Registering listener " + listener);
-        listenersRegistry.register(listener, true);
+        replayStickyEvents(listenersRegistry.register(listener, true, checkpointBinder));
     }
 
     /**
@@ -167,7 +245,8 @@ public class JBus {
      * @param event the event to post.
      *
      * @exception NullPointerException if the event is null.
-     * @exception JBusException if the invoking subscriber method throws an exception.
+     * @exception JBusException if the invoking subscriber method throws an exception,
+     * or if the event bus has been shut down.
      *
      * */
     public void post(Object event) {
@@ -175,19 +254,489 @@ public class JBus {
             logger.error("Null event posted.");
             throw new NullPointerException("Null event can not be posted.");
         }
-        logger.info("Event " + event + " has been posted to the bus " + tag);
+        checkOpen();
+        dispatch(event, null);
+    }
 
-        List<ListenerMethod> subscribers = listenersRegistry.getSubscribers(event);
-        if (subscribers != null && !subscribers.isEmpty()) {
+    private void dispatch(Object event, DurableEvent durableEvent) {
+        // the post path does not allocate for a regular event, so
+        // no log message is built unless it is going to be logged.
+        if (logger.isDebugEnabled()) {
+            logger.debug("Event " + event + " has been posted to the bus " + tag);
+        }
+        if (metrics != null) {
+            metrics.onPost(event.getClass());
+        }
+
+        ListenerMethod[] subscribers = listenersRegistry.getSubscribers(event);
+        if (subscribers != null && subscribers.length > 0) {
             if (logger.isDebugEnabled()) {
-                logger.debug("Total subscribers found for event " + event + " is = " + subscribers.size());
+                logger.debug("Total subscribers found for event " + event + " is = " + subscribers.length);
                 logger.debug("Dispatching event " + event);
             }
-            DefaultHandlerChain handlerChain = new DefaultHandlerChain(subscribers);
-            eventDispatcher.dispatch(event, handlerChain);
+            eventDispatcher.dispatch(event, subscribers, false, durableEvent);
+        }
+    }
+
+    /**
+     * Gets a named channel of the event bus, creating it on first use. The name
+     * can be a pattern, to register listeners to all matching channels. A channel
+     * is kept until it is {@link Channel#close() closed}.
+     *
+     * @param name the channel name or pattern.
+     * @return the channel.
+     *
+     * @exception NullPointerException if the name is null.
+     * @exception JBusException if the name is not valid.
+     * @since 1.3
+     * @see Channel
+     * */
+    public Channel channel(String name) {
+        if (name == null) {
+            logger.error("Null channel name.");
+            throw new NullPointerException("Null channel name can not be used.");
+        }
+        Channel channel = channels.get(name);
+        if (channel != null) {
+            return channel;
+        }
+
+        synchronized (channels) {
+            channel = channels.get(name);
+            if (channel == null) {
+                ListenersRegistry registry = new ListenersRegistry(eventInheritance, metrics, filterKeyExtractor);
+                channel = new Channel(this, name, registry);
+                eventDispatcher.addPartition(registry);
+                channels.put(name, channel);
+                channelOrder.add(channel);
+                if (channel.isPattern()) {
+                    // the names matching the new pattern are routed to it as well
+                    removeRoutes(channel);
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Channel " + name + " has been created in the bus " + tag);
+                }
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Posts an event to a channel, dispatching it to the subscribers of all
+     * partitions the channel is routed to, in the order of their priority.
+     * */
+    void post(Channel channel, Object event) {
+        if (event == null) {
+            logger.error("Null event posted.");
+            throw new NullPointerException("Null event can not be posted.");
+        }
+        checkOpen();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Event " + event + " has been posted to the channel " + channel + " of the bus " + tag);
+        }
+        if (metrics != null) {
+            metrics.onPost(event.getClass());
+        }
+
+        ChannelRoute route = routingTable.get(channel.getName());
+        if (route == null) {
+            route = resolveRoute(channel);
+        }
+        ListenerMethod[] subscribers = route.getSubscribers(event);
+        if (subscribers != null) {
+            eventDispatcher.dispatch(event, subscribers);
+        }
+    }
+
+    /**
+     * Removes a closed channel from the event bus along with the routes
+     * through it, and de-registers all of its listeners.
+     * */
+    void closeChannel(Channel channel) {
+        synchronized (channels) {
+            if (channels.get(channel.getName()) != channel) {
+                return;
+            }
+            channels.remove(channel.getName());
+            channelOrder.remove(channel);
+            eventDispatcher.removePartition(channel.listenersRegistry);
+            if (channel.isPattern()) {
+                removeRoutes(channel);
+            } else {
+                ChannelRoute route = routingTable.remove(channel.getName());
+                if (route != null) {
+                    route.detach();
+                }
+            }
+        }
+        channel.listenersRegistry.clear();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Channel " + channel + " has been closed in the bus " + tag);
+        }
+    }
+
+    /**
+     * Removes the routes of all channel names matching the pattern, they are
+     * resolved again on their next post. Called under the lock of the channels.
+     * */
+    private void removeRoutes(Channel pattern) {
+        for (Channel channel : channelOrder) {
+            if (!channel.isPattern() && pattern.matches(channel.getSegments())) {
+                ChannelRoute route = routingTable.remove(channel.getName());
+                if (route != null) {
+                    route.detach();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the partitions of the channel and of all patterns matching it,
+     * the channel itself first and then the patterns in order of creation.
+     * */
+    private ChannelRoute resolveRoute(Channel channel) {
+        synchronized (channels) {
+            ChannelRoute route = routingTable.get(channel.getName());
+            if (route != null) {
+                return route;
+            }
+            if (channels.get(channel.getName()) != channel) {
+                logger.error("Event posted to the closed channel " + channel);
+                throw new JBusException("Events can not be posted to the closed channel " + channel);
+            }
+            List<ListenersRegistry> matching = new ArrayList<ListenersRegistry>();
+            matching.add(channel.listenersRegistry);
+            for (Channel pattern : channelOrder) {
+                if (pattern.isPattern() && pattern.matches(channel.getSegments())) {
+                    matching.add(pattern.listenersRegistry);
+                }
+            }
+            route = new ChannelRoute(matching.toArray(new ListenersRegistry[matching.size()]));
+            routingTable.put(channel.getName(), route);
+            return route;
+        }
+    }
+
+    /**
+     * Posts a sticky event to the event bus. The event is kept by the event bus
+     * after it is posted, and it is replayed to any subscriber marked with
+     * {@link Subscribe#sticky()} registering later. The number of events kept for
+     * each event class and their expiry are set via {@link JBusConfig}.
+     *
+     * @param event the event to post.
+     *
+     * @exception NullPointerException if the event is null.
+     * @exception JBusException if the event bus has been shut down.
+     * @since 1.3
+     * @see JBusConfig#setStickyEventCapacity(int)
+     * @see JBusConfig#setStickyEventExpiry(long)
+     * */
+    public void postSticky(Object event) {
+        if (event == null) {
+            logger.error("Null event posted.");
+            throw new NullPointerException("Null event can not be posted.");
+        }
+        checkOpen();
+        // keep it first, so that a concurrent registration never misses it
+        stickyEvents.put(event);
+        post(event);
+    }
+
+    /**
+     * Posts a durable event to the event bus. The event is written to the journal
+     * before it is dispatched, so it survives a crash of the process even if an
+     * asynchronous subscriber has not received it yet, and it can be replayed
+     * via {@link #replay(long)} after a restart.
+     *
+     * @param event the event to post.
+     * @return the offset of the event in the journal.
+     *
+     * @exception NullPointerException if the event is null.
+     * @exception JBusException if no journal is configured, the event can not be
+     * written to the journal, or the event bus has been shut down.
+     * @since 1.3
+     * @see JBusConfig#setJournalDirectory(java.io.File)
+     * */
+    public long postDurable(Object event) {
+        if (event == null) {
+            logger.error("Null event posted.");
+            throw new NullPointerException("Null event can not be posted.");
+        }
+        checkOpen();
+        EventJournal journal = getJournal();
+        byte[] data = eventSerializer.serialize(event);
+
+        // the event is written at or after the current end of the journal,
+        // no checkpoint passes it until its subscribers have received it.
+        long lowerBound = journal.getWriteOffset();
+        checkpoints.postStarted(lowerBound);
+        try {
+            long offset = journal.append(data);
+            dispatch(event, new DurableEvent(event, offset, EventJournal.nextOffset(offset, data.length)));
+            return offset;
+        } finally {
+            checkpoints.postFinished(lowerBound);
+        }
+    }
+
+    /**
+     * Delivers again the durable events in the journal, which the registered
+     * {@link Subscribe#durable() durable} subscribers have not acknowledged, to
+     * those subscribers only. It is called after a restart, once the durable
+     * subscribers have registered. As the acknowledgements are persisted in
+     * batches, a subscriber might receive an event it had already finished.
+     *
+     * @return the number of redelivered events.
+     *
+     * @exception JBusException if no journal is configured, the journal is corrupted,
+     * or the event bus has been shut down.
+     * @since 1.3
+     * @see JBusConfig#setCheckpointInterval(long)
+     * */
+    public long redeliver() {
+        checkOpen();
+        EventJournal journal = getJournal();
+        final List<ListenerMethod> durableSubscribers = new ArrayList<ListenerMethod>();
+        for (ListenerMethod[] subscribers : listenersRegistry.getAllSubscribers()) {
+            for (ListenerMethod listenerMethod : subscribers) {
+                if (listenerMethod.checkpoint != null) {
+                    durableSubscribers.add(listenerMethod);
+                }
+            }
+        }
+        if (durableSubscribers.isEmpty()) {
+            return 0;
+        }
+
+        // the offsets acknowledged before the redelivery started
+        final long[] committed = new long[durableSubscribers.size()];
+        long fromOffset = Long.MAX_VALUE;
+        for (int i = 0; i < committed.length; i++) {
+            committed[i] = durableSubscribers.get(i).checkpoint.getCommitted();
+            fromOffset = Math.min(fromOffset, committed[i]);
+        }
+
+        logger.info("Redelivering the journal of the bus " + tag + " from offset " + fromOffset);
+        final long[] redelivered = new long[1];
+        journal.read(fromOffset, new EventJournal.RecordHandler() {
+            @Override
+            public void onRecord(long offset, byte[] data) {
+                Object event = null;
+                List<ListenerMethod> subscribers = new ArrayList<ListenerMethod>();
+                for (int i = 0; i < committed.length; i++) {
+                    ListenerMethod listenerMethod = durableSubscribers.get(i);
+                    if (committed[i] > offset) {
+                        continue;
+                    }
+                    if (event == null) {
+                        event = eventSerializer.deserialize(data);
+                    }
+                    if ((eventInheritance ? listenerMethod.eventType.isInstance(event)
+                            : listenerMethod.eventType == event.getClass())
+                            && listenersRegistry.accepts(listenerMethod, event)) {
+                        subscribers.add(listenerMethod);
+                    }
+                }
+                if (!subscribers.isEmpty()) {
+                    eventDispatcher.dispatch(event, subscribers.toArray(new ListenerMethod[subscribers.size()]),
+                            false, new DurableEvent(event, offset, EventJournal.nextOffset(offset, data.length)));
+                    redelivered[0]++;
+                }
+            }
+        });
+        return redelivered[0];
+    }
+
+    /**
+     * Posts again the durable events in the journal, from an offset up to the last
+     * event written so far, to the current subscribers. The replayed events are not
+     * written to the journal again.
+     *
+     * @param fromOffset an offset returned by {@link #postDurable(Object)} or by a
+     * previous replay, or {@code 0} to replay the whole journal. The events of the
+     * segments removed by the retention of the journal are skipped.
+     * @return the offset after the last replayed event, to continue the replay from.
+     *
+     * @exception JBusException if no journal is configured, the journal is corrupted,
+     * or the event bus has been shut down.
+     * @since 1.3
+     * */
+    public long replay(long fromOffset) {
+        checkOpen();
+        logger.info("Replaying the journal of the bus " + tag + " from offset " + fromOffset);
+        return getJournal().read(fromOffset, new EventJournal.RecordHandler() {
+            @Override
+            public void onRecord(long offset, byte[] data) {
+                post(eventSerializer.deserialize(data));
+            }
+        });
+    }
+
+    /**
+     * Gets the offset the next durable event will be written at in the journal.
+     *
+     * @return the journal offset.
+     * @exception JBusException if no journal is configured.
+     * @since 1.3
+     * */
+    public long getJournalOffset() {
+        return getJournal().getWriteOffset();
+    }
+
+    /**
+     * Binds a durable subscriber of a registering listener to its checkpoint. It is
+     * bound before the subscriber is published, so no durable post can reach it
+     * without its checkpoint.
+     * */
+    private void bindCheckpoint(ListenerMethod listenerMethod) {
+        if (listenerMethod.durable) {
+            listenerMethod.checkpoint = checkpoints.get(listenerMethod.method, journal.getWriteOffset());
+        }
+    }
+
+    private EventJournal getJournal() {
+        if (journal == null) {
+            logger.error("No journal configured for the bus " + tag);
+            throw new JBusException("No journal configured for the bus " + tag);
+        }
+        return journal;
+    }
+
+    /**
+     * Gets the latest sticky event of an event class.
+     *
+     * @param <T> the event type.
+     * @param eventType the exact class of the event.
+     * @return the latest sticky event, or {@code null} if there is none.
+     * @since 1.3
+     * */
+    public <T> T getStickyEvent(Class<T> eventType) {
+        return eventType.cast(stickyEvents.getLatest(eventType));
+    }
+
+    /**
+     * Removes all sticky events of an event class.
+     *
+     * @param eventType the exact class of the events.
+     * @return {@code true} if any sticky event has been removed.
+     * @since 1.3
+     * */
+    public boolean removeStickyEvents(Class<?> eventType) {
+        return stickyEvents.remove(eventType);
+    }
+
+    /**
+     * Removes all sticky events from the event bus.
+     *
+     * @since 1.3
+     * */
+    public void clearStickyEvents() {
+        stickyEvents.clear();
+    }
+
+    /**
+     * Posts a batch of events to the event bus. Subscribers are resolved only
+     * once per event class in the batch.
+     *
+     * <p>Regular subscribers receive the events one by one in the order of the
+     * collection, same as a {@link #post(Object)} call for each event.
+     * Subscribers marked with {@link Subscribe#batch()} receive all events of
+     * their event class at once as a list, after the regular subscribers.</p>
+     *
+     * @param events the events to post.
+     *
+     * @exception NullPointerException if the collection or any of its events is null.
+     * @exception JBusException if the event bus has been shut down.
+     * @since 1.3
+     * */
+    public void postAll(Collection<?> events) {
+        if (events == null) {
+            logger.error("Null events posted.");
+            throw new NullPointerException("Null events can not be posted.");
+        }
+        for (Object event : events) {
+            if (event == null) {
+                logger.error("Null event posted.");
+                throw new NullPointerException("Null event can not be posted.");
+            }
+        }
+        checkOpen();
+        if (logger.isDebugEnabled()) {
+            logger.debug(events.size() + " events have been posted to the bus " + tag);
+        }
+
+        // subscribers of each event class, in the order of first appearance
+        Map<Class<?>, EventBatch> batches = new IdentityHashMap<Class<?>, EventBatch>();
+        List<EventBatch> batchOrder = new ArrayList<EventBatch>();
+        for (Object event : events) {
+            if (metrics != null) {
+                metrics.onPost(event.getClass());
+            }
+            EventBatch batch = batches.get(event.getClass());
+            if (batch == null) {
+                batch = new EventBatch(listenersRegistry.getSubscribers(event.getClass()));
+                batches.put(event.getClass(), batch);
+                batchOrder.add(batch);
+            }
+
+            if (batch.subscribers != null && batch.subscribers.length > 0) {
+                eventDispatcher.dispatch(event, listenersRegistry.route(event, batch.subscribers), true);
+                if (batch.events != null) {
+                    batch.events.add(event);
+                }
+            }
+        }
+
+        for (EventBatch batch : batchOrder) {
+            if (batch.events != null && !batch.events.isEmpty()) {
+                eventDispatcher.dispatchBatch(Collections.unmodifiableList(batch.events), batch.subscribers);
+            }
         }
     }
 
+    /**
+     * Posts a batch of events to the event bus.
+     *
+     * @param events the events to post.
+     *
+     * @exception NullPointerException if any of the events is null.
+     * @since 1.3
+     * @see #postAll(Collection)
+     * */
+    public void postAll(Object... events) {
+        if (events == null) {
+            logger.error("Null events posted.");
+            throw new NullPointerException("Null events can not be posted.");
+        }
+        postAll(Arrays.asList(events));
+    }
+
+    /**
+     * Gets the number of times an overflow policy has been applied because a
+     * queue of pending asynchronous deliveries was full.
+     *
+     * @param overflowPolicy the overflow policy.
+     * @return the number of times the policy has been applied.
+     * @since 1.3
+     * @see JBusConfig#setAsyncQueueCapacity(int)
+     * @see Subscribe#queueCapacity()
+     * */
+    public long getOverflowCount(OverflowPolicy overflowPolicy) {
+        return eventDispatcher.getOverflowCount(overflowPolicy);
+    }
+
+    /**
+     * Gets the number of asynchronous deliveries pending in the queues of
+     * the event bus and of its subscribers. Deliveries submitted directly to
+     * the executor service are not counted.
+     *
+     * @return the number of pending deliveries.
+     * @since 1.3
+     * */
+    public int getAsyncQueueDepth() {
+        return eventDispatcher.getAsyncQueueDepth();
+    }
+
     /**
      * Sets a tag to the event bus for identification.
      *
@@ -205,4 +754,128 @@ public class JBus {
     public void addShutdownHook() {
         eventDispatcher.addShutdownHook();
     }
+
+    /**
+     * Stops accepting any further event and waits until all pending asynchronous
+     * deliveries are made, or the timeout elapses. The events held back by the
+     * time based subscribers are delivered right away. The threads of the event
+     * bus keep running, so that it can be shut down afterwards.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return {@code true} if all pending deliveries have been made.
+     * @since 1.3
+     * */
+    public boolean drain(long timeout, TimeUnit unit) {
+        closed = true;
+        logger.info("Draining the bus " + tag);
+        return eventDispatcher.drain(unit.toNanos(timeout));
+    }
+
+    /**
+     * Stops accepting any further event, waits until all pending asynchronous
+     * deliveries are made, or the timeout elapses, and then stops all threads of
+     * the event bus. An executor service supplied via {@link JBusConfig} is left
+     * running. The deliveries still queued after the timeout are discarded, while
+     * the ones already invoking their subscriber are not counted as discarded.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return the number of discarded deliveries.
+     * @since 1.3
+     * @see #drain(long, TimeUnit)
+     * */
+    public long shutdown(long timeout, TimeUnit unit) {
+        closed = true;
+        logger.info("Shutting down the bus " + tag);
+        long undelivered = eventDispatcher.shutdown(unit.toNanos(timeout));
+        if (journal != null) {
+            checkpoints.close();
+            journal.close();
+        }
+        return undelivered;
+    }
+
+    /**
+     * Shuts down the event bus, waiting at most for the shutdown timeout
+     * of its configuration.
+     *
+     * @since 1.3
+     * @see #shutdown(long, TimeUnit)
+     * @see JBusConfig#setShutdownTimeout(long)
+     * */
+    @Override
+    public void close() {
+        shutdown(shutdownTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks if the event bus has been drained or shut down.
+     *
+     * @return {@code true} if the event bus does not accept any further event.
+     * @since 1.3
+     * */
+    public boolean isShutdown() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            logger.error("Event posted to the bus " + tag + " after shutdown.");
+            throw new JBusException("Event bus " + tag + " has been shut down.");
+        }
+    }
+
+    /**
+     * Replays the sticky events to the sticky subscribers of a newly registered listener.
+     * */
+    private void replayStickyEvents(ListenerMethod[] listenerMethods) {
+        for (ListenerMethod listenerMethod : listenerMethods) {
+            if (listenerMethod.sticky) {
+                List<Object> events = stickyEvents.getEvents(listenerMethod.eventType, eventInheritance);
+                if (events.isEmpty()) {
+                    continue;
+                }
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Replaying " + events.size() + " sticky events to " + listenerMethod);
+                }
+                ListenerMethod[] subscriber = new ListenerMethod[]{listenerMethod};
+                if (listenerMethod.batch) {
+                    eventDispatcher.dispatchBatch(Collections.unmodifiableList(events), subscriber);
+                } else {
+                    for (Object event : events) {
+                        if (listenersRegistry.accepts(listenerMethod, event)) {
+                            eventDispatcher.dispatch(event, subscriber);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolved subscribers of an event class in a batch post, along with
+     * the events for its batch subscribers, if it has any.
+     * */
+    private static class EventBatch {
+        final ListenerMethod[] subscribers;
+        final List<Object> events;
+
+        EventBatch(ListenerMethod[] subscribers) {
+            this.subscribers = subscribers;
+            this.events = hasBatchSubscriber(subscribers) ? new ArrayList<Object>() : null;
+        }
+
+        private static boolean hasBatchSubscriber(ListenerMethod[] subscribers) {
+            if (subscribers != null) {
+                for (ListenerMethod subscriber : subscribers) {
+                    if (subscriber.batch) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
 }
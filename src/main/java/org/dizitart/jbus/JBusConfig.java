@@ -0,0 +1,660 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration of a {@link JBus} instance. A default instance
+ * represents the behavior of {@link JBus#JBus()}.
+ *
+ * <pre>
+ *     JBusConfig config = new JBusConfig();
+ *     config.setEventInheritance(true);
+ *     JBus jBus = new JBus(config);
+ * </pre>
+ *
+ * The configuration is read once while constructing the event bus, any
+ * later modification does not affect an existing event bus.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBus#JBus(JBusConfig)
+ */
+public class JBusConfig {
+    private boolean eventInheritance = false;
+    private ExecutorService executorService;
+    private int asyncQueueCapacity = 0;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private int asyncConcurrency = Runtime.getRuntime().availableProcessors();
+    private int ringBufferSize = 0;
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private int ringBufferConsumers = 1;
+    private int stickyEventCapacity = 1;
+    private long stickyEventExpiry = 0;
+    private ConflationKeyExtractor conflationKeyExtractor;
+    private FilterKeyExtractor filterKeyExtractor;
+    private MetricsCollector metricsCollector;
+    private long slowSubscriberThreshold = 0;
+    private SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.REPORT;
+    private int slowSubscriberStrikes = 3;
+    private long shutdownTimeout = 30000;
+    private File journalDirectory;
+    private int journalSegmentSize = 64 * 1024 * 1024;
+    private long journalSyncInterval = 100;
+    private long journalRetentionSize = 0;
+    private long journalRetentionTime = 0;
+    private EventSerializer eventSerializer = new JavaEventSerializer();
+    private long checkpointInterval = 1000;
+    private long offHeapBufferCapacity = 0;
+    private final Map<Class<?>, EventCodec<?>> eventCodecs = new LinkedHashMap<Class<?>, EventCodec<?>>();
+
+    /**
+     * Checks if an event is dispatched to the subscribers of its super
+     * classes and interfaces as well.
+     *
+     * @return the event inheritance flag.
+     * */
+    public boolean isEventInheritance() {
+        return eventInheritance;
+    }
+
+    /**
+     * Sets whether an event will be dispatched to the subscribers of all of
+     * its super classes and interfaces along with the subscribers of its
+     * own class.
+     *
+     * <p>Defaults to {@code false}, i.e. an event is only dispatched to the
+     * subscribers of its exact class.</p>
+     *
+     * @param eventInheritance the event inheritance flag.
+     * */
+    public void setEventInheritance(boolean eventInheritance) {
+        this.eventInheritance = eventInheritance;
+    }
+
+    /**
+     * Gets the executor service for asynchronous subscribers.
+     *
+     * @return the executor service, or {@code null} if not set.
+     * */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the executor service to run asynchronous subscribers. {@link AsyncExecutors}
+     * provides some presets for common use cases.
+     *
+     * <p>If not set, the event bus creates an unbounded cached thread pool and shuts it
+     * down in {@link JBus#addShutdownHook()}. A supplied executor service is owned by
+     * the caller, it can be shared between event buses and is never shut down by
+     * any event bus.</p>
+     *
+     * @param executorService the executor service.
+     * @see AsyncExecutors
+     * */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Gets the capacity of the queue of pending asynchronous deliveries.
+     *
+     * @return the queue capacity.
+     * */
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the queue of pending asynchronous deliveries shared
+     * by all asynchronous subscribers of the event bus. If the queue is full, the
+     * {@link #setOverflowPolicy(OverflowPolicy) overflow policy} is applied.
+     * A subscriber can have its own queue via {@link Subscribe#queueCapacity()}.
+     *
+     * <p>Defaults to {@code 0}, i.e. every event is directly submitted to the
+     * executor service without any bound.</p>
+     *
+     * @param asyncQueueCapacity the queue capacity.
+     * */
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    /**
+     * Gets the policy applied when the queue of pending asynchronous deliveries is full.
+     *
+     * @return the overflow policy.
+     * */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied when the event bus queue of pending asynchronous
+     * deliveries is full.
+     *
+     * <p>Defaults to {@link OverflowPolicy#BLOCK}.</p>
+     *
+     * @param overflowPolicy the overflow policy.
+     * */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Gets the maximum number of deliveries from a queue running in parallel.
+     *
+     * @return the concurrency of a queue.
+     * */
+    public int getAsyncConcurrency() {
+        return asyncConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of deliveries from a queue of pending asynchronous
+     * deliveries running in parallel on the executor service. It applies to the
+     * event bus queue and to the queue of every subscriber. It is ignored if the
+     * asynchronous deliveries are not queued.
+     *
+     * <p>Defaults to the number of available processors.</p>
+     *
+     * @param asyncConcurrency the concurrency of a queue.
+     * */
+    public void setAsyncConcurrency(int asyncConcurrency) {
+        this.asyncConcurrency = asyncConcurrency;
+    }
+
+    /**
+     * Gets the size of the ring buffer for asynchronous deliveries.
+     *
+     * @return the ring buffer size.
+     * */
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * Sets the size of a preallocated ring buffer which replaces the executor
+     * service for asynchronous deliveries. The deliveries are executed in batches
+     * by dedicated consumer threads without any allocation per event. If the ring
+     * is full, a publisher waits for a free slot. It takes precedence over
+     * {@link #setAsyncQueueCapacity(int)}. Subscribers with their own queue, i.e.
+     * {@link Subscribe#serial()} or {@link Subscribe#queueCapacity()}, still use
+     * the executor service.
+     *
+     * <p>Defaults to {@code 0}, i.e. no ring buffer.</p>
+     *
+     * @param ringBufferSize the ring buffer size, it must be a power of 2.
+     * */
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    /**
+     * Gets the wait strategy of the ring buffer.
+     *
+     * @return the wait strategy.
+     * */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Sets how the ring buffer threads wait for events or for free slots.
+     *
+     * <p>Defaults to {@link WaitStrategy#PARK}.</p>
+     *
+     * @param waitStrategy the wait strategy.
+     * */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Gets the number of consumer threads of the ring buffer.
+     *
+     * @return the number of consumers.
+     * */
+    public int getRingBufferConsumers() {
+        return ringBufferConsumers;
+    }
+
+    /**
+     * Sets the number of consumer threads of the ring buffer. Deliveries are spread
+     * over the consumers, so with more than one consumer two events to the same
+     * subscriber can run in parallel.
+     *
+     * <p>Defaults to {@code 1}.</p>
+     *
+     * @param ringBufferConsumers the number of consumers.
+     * */
+    public void setRingBufferConsumers(int ringBufferConsumers) {
+        this.ringBufferConsumers = ringBufferConsumers;
+    }
+
+    /**
+     * Gets the number of sticky events kept for each event class.
+     *
+     * @return the sticky event capacity.
+     * */
+    public int getStickyEventCapacity() {
+        return stickyEventCapacity;
+    }
+
+    /**
+     * Sets the number of the latest sticky events kept for each event class.
+     * Once it is reached, a new sticky event evicts the oldest one of its class.
+     *
+     * <p>Defaults to {@code 1}, i.e. only the latest event of each class.</p>
+     *
+     * @param stickyEventCapacity the sticky event capacity, at least 1.
+     * @see JBus#postSticky(Object)
+     * */
+    public void setStickyEventCapacity(int stickyEventCapacity) {
+        this.stickyEventCapacity = stickyEventCapacity;
+    }
+
+    /**
+     * Gets the time in milliseconds after which a sticky event expires.
+     *
+     * @return the sticky event expiry.
+     * */
+    public long getStickyEventExpiry() {
+        return stickyEventExpiry;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a sticky event expires. An
+     * expired event is no longer replayed to the sticky subscribers.
+     *
+     * <p>Defaults to {@code 0}, i.e. sticky events never expire.</p>
+     *
+     * @param stickyEventExpiry the sticky event expiry in milliseconds.
+     * */
+    public void setStickyEventExpiry(long stickyEventExpiry) {
+        this.stickyEventExpiry = stickyEventExpiry;
+    }
+
+    /**
+     * Gets the extractor of the conflation key of an event.
+     *
+     * @return the conflation key extractor, or {@code null} if not set.
+     * */
+    public ConflationKeyExtractor getConflationKeyExtractor() {
+        return conflationKeyExtractor;
+    }
+
+    /**
+     * Sets the extractor of the conflation key of the events which do not implement
+     * {@link Conflatable}, for the subscribers marked with {@link Subscribe#conflate()}.
+     *
+     * <p>Defaults to {@code null}, i.e. such events do not have any key and all of them
+     * conflate with each other.</p>
+     *
+     * @param conflationKeyExtractor the conflation key extractor.
+     * */
+    public void setConflationKeyExtractor(ConflationKeyExtractor conflationKeyExtractor) {
+        this.conflationKeyExtractor = conflationKeyExtractor;
+    }
+
+    /**
+     * Gets the extractor of the filter key of an event.
+     *
+     * @return the filter key extractor, or {@code null} if not set.
+     * */
+    public FilterKeyExtractor getFilterKeyExtractor() {
+        return filterKeyExtractor;
+    }
+
+    /**
+     * Sets the extractor of the filter key of the events which do not implement
+     * {@link Filterable}, for the subscribers declaring a {@link Subscribe#filter()}.
+     *
+     * <p>Defaults to {@code null}, i.e. such events do not have any key and only reach
+     * the subscribers without a filter.</p>
+     *
+     * @param filterKeyExtractor the filter key extractor.
+     * */
+    public void setFilterKeyExtractor(FilterKeyExtractor filterKeyExtractor) {
+        this.filterKeyExtractor = filterKeyExtractor;
+    }
+
+    /**
+     * Gets the collector of the metrics of the event bus.
+     *
+     * @return the metrics collector, or {@code null} if not set.
+     * */
+    public MetricsCollector getMetricsCollector() {
+        return metricsCollector;
+    }
+
+    /**
+     * Sets the collector of the metrics of the event bus, e.g. a {@link JBusMetrics}.
+     *
+     * <p>Defaults to {@code null}, i.e. no metrics are collected.</p>
+     *
+     * @param metricsCollector the metrics collector.
+     * @see JBusMetricsJmx
+     * */
+    public void setMetricsCollector(MetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Gets the time in milliseconds after which a running subscriber is considered slow.
+     *
+     * @return the slow subscriber threshold.
+     * */
+    public long getSlowSubscriberThreshold() {
+        return slowSubscriberThreshold;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a running subscriber is considered
+     * slow. A watchdog tracks the in-flight invocations and posts a
+     * {@link SlowSubscriberEvent}, with a sample of the stack of the thread running
+     * the subscriber, once an invocation exceeds it. The detection happens within a
+     * quarter of the threshold, but not before 10 milliseconds.
+     *
+     * <p>Defaults to {@code 0}, i.e. no watchdog.</p>
+     *
+     * @param slowSubscriberThreshold the slow subscriber threshold in milliseconds.
+     * */
+    public void setSlowSubscriberThreshold(long slowSubscriberThreshold) {
+        this.slowSubscriberThreshold = slowSubscriberThreshold;
+    }
+
+    /**
+     * Gets the policy applied to a repeatedly slow subscriber.
+     *
+     * @return the slow subscriber policy.
+     * */
+    public SlowSubscriberPolicy getSlowSubscriberPolicy() {
+        return slowSubscriberPolicy;
+    }
+
+    /**
+     * Sets the policy applied to a subscriber once it has been slow for
+     * {@link #setSlowSubscriberStrikes(int)} times.
+     *
+     * <p>Defaults to {@link SlowSubscriberPolicy#REPORT}.</p>
+     *
+     * @param slowSubscriberPolicy the slow subscriber policy.
+     * */
+    public void setSlowSubscriberPolicy(SlowSubscriberPolicy slowSubscriberPolicy) {
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
+    }
+
+    /**
+     * Gets the number of slow invocations after which the slow subscriber policy is applied.
+     *
+     * @return the number of slow invocations.
+     * */
+    public int getSlowSubscriberStrikes() {
+        return slowSubscriberStrikes;
+    }
+
+    /**
+     * Sets the number of slow invocations of a subscriber after which the slow
+     * subscriber policy is applied to it.
+     *
+     * <p>Defaults to {@code 3}.</p>
+     *
+     * @param slowSubscriberStrikes the number of slow invocations, at least 1.
+     * */
+    public void setSlowSubscriberStrikes(int slowSubscriberStrikes) {
+        this.slowSubscriberStrikes = slowSubscriberStrikes;
+    }
+
+    /**
+     * Gets the time in milliseconds {@link JBus#close()} waits for the pending
+     * asynchronous deliveries.
+     *
+     * @return the shutdown timeout.
+     * */
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds {@link JBus#close()} waits for the pending
+     * asynchronous deliveries, before it discards them and stops the threads
+     * of the event bus.
+     *
+     * <p>Defaults to {@code 30000}.</p>
+     *
+     * @param shutdownTimeout the shutdown timeout in milliseconds.
+     * @see JBus#shutdown(long, java.util.concurrent.TimeUnit)
+     * */
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * Gets the directory of the journal of the durable events.
+     *
+     * @return the journal directory, or {@code null} if not set.
+     * */
+    public File getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Sets the directory of the journal the events posted via {@link JBus#postDurable(Object)}
+     * are written to, before they are dispatched. It is created if it does not exist. The
+     * events of an existing journal are kept, and can be replayed via {@link JBus#replay(long)}.
+     *
+     * <p>Defaults to {@code null}, i.e. no journal.</p>
+     *
+     * @param journalDirectory the journal directory.
+     * */
+    public void setJournalDirectory(File journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Gets the size in bytes of a segment of the journal.
+     *
+     * @return the journal segment size.
+     * */
+    public int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    /**
+     * Sets the size in bytes of a segment of the journal. Each segment is a memory-mapped
+     * file, a new one is started once an event does not fit in the current one.
+     *
+     * <p>Defaults to {@code 64} MB.</p>
+     *
+     * @param journalSegmentSize the journal segment size, at least 1024.
+     * */
+    public void setJournalSegmentSize(int journalSegmentSize) {
+        this.journalSegmentSize = journalSegmentSize;
+    }
+
+    /**
+     * Gets the interval in milliseconds the journal is forced to the disk at.
+     *
+     * @return the journal sync interval.
+     * */
+    public long getJournalSyncInterval() {
+        return journalSyncInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds the journal is forced to the disk at. A durable
+     * event survives a crash of the process once it is posted, and a crash of the
+     * operating system once the journal is forced. If it is 0, a post returns only after
+     * the journal is forced, and concurrent posts share a single force.
+     *
+     * <p>Defaults to {@code 100}.</p>
+     *
+     * @param journalSyncInterval the journal sync interval in milliseconds.
+     * */
+    public void setJournalSyncInterval(long journalSyncInterval) {
+        this.journalSyncInterval = journalSyncInterval;
+    }
+
+    /**
+     * Gets the maximum size in bytes the journal is kept at.
+     *
+     * @return the journal retention size.
+     * */
+    public long getJournalRetentionSize() {
+        return journalRetentionSize;
+    }
+
+    /**
+     * Sets the maximum size in bytes the journal is kept at. Once a new segment is
+     * started, the oldest segments are removed while the journal is larger, even if
+     * a {@link Subscribe#durable() durable} subscriber has not acknowledged their events.
+     * Regardless of it, the segments all durable subscribers have acknowledged are
+     * removed.
+     *
+     * <p>Defaults to {@code 0}, no limit.</p>
+     *
+     * @param journalRetentionSize the journal retention size.
+     * */
+    public void setJournalRetentionSize(long journalRetentionSize) {
+        this.journalRetentionSize = journalRetentionSize;
+    }
+
+    /**
+     * Gets the time in milliseconds a completed journal segment is kept for.
+     *
+     * @return the journal retention time.
+     * */
+    public long getJournalRetentionTime() {
+        return journalRetentionTime;
+    }
+
+    /**
+     * Sets the time in milliseconds a journal segment is kept for once it is
+     * completed. Expired segments are removed when a new segment is started,
+     * even if a {@link Subscribe#durable() durable} subscriber has not
+     * acknowledged their events.
+     *
+     * <p>Defaults to {@code 0}, no limit.</p>
+     *
+     * @param journalRetentionTime the journal retention time in milliseconds.
+     * */
+    public void setJournalRetentionTime(long journalRetentionTime) {
+        this.journalRetentionTime = journalRetentionTime;
+    }
+
+    /**
+     * Gets the serializer of the durable events.
+     *
+     * @return the event serializer.
+     * */
+    public EventSerializer getEventSerializer() {
+        return eventSerializer;
+    }
+
+    /**
+     * Sets the serializer of the events written to the journal.
+     *
+     * <p>Defaults to a {@link JavaEventSerializer}.</p>
+     *
+     * @param eventSerializer the event serializer.
+     * */
+    public void setEventSerializer(EventSerializer eventSerializer) {
+        this.eventSerializer = eventSerializer;
+    }
+
+    /**
+     * Gets the interval in milliseconds the acknowledged offsets of the durable
+     * subscribers are persisted at.
+     *
+     * @return the checkpoint interval.
+     * */
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds the offsets acknowledged by the
+     * {@link Subscribe#durable() durable} subscribers are persisted at, next to the
+     * journal. The events acknowledged since the last write are delivered again by
+     * {@link JBus#redeliver()} after a crash.
+     *
+     * <p>Defaults to {@code 1000}.</p>
+     *
+     * @param checkpointInterval the checkpoint interval in milliseconds.
+     * */
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Gets the capacity in bytes of the off-heap buffer of pending asynchronous deliveries.
+     *
+     * @return the off-heap buffer capacity.
+     * */
+    public long getOffHeapBufferCapacity() {
+        return offHeapBufferCapacity;
+    }
+
+    /**
+     * Sets the capacity in bytes of the off-heap buffer of pending asynchronous deliveries.
+     * If it is greater than 0, an event having a {@link #registerEventCodec(Class, EventCodec) codec}
+     * and dispatched to an async subscriber without a queue of its own is encoded in direct
+     * memory until it is delivered, and decoded right before the invocation, unless the bus
+     * has a {@link #setAsyncQueueCapacity(int) queue} or a {@link #setRingBufferSize(int) ring
+     * buffer}, whose capacity and overflow policy apply as usual instead. Such a subscriber
+     * therefore receives a copy of the event. If the buffer is full, the events are delivered
+     * through the heap as usual. The memory is allocated in slabs of at most 1 MB on demand,
+     * and kept for reuse.
+     *
+     * <p>Defaults to {@code 0}, no off-heap buffer.</p>
+     *
+     * @param offHeapBufferCapacity the off-heap buffer capacity.
+     * */
+    public void setOffHeapBufferCapacity(long offHeapBufferCapacity) {
+        this.offHeapBufferCapacity = offHeapBufferCapacity;
+    }
+
+    /**
+     * Gets the codecs of the events staged in the off-heap buffer.
+     *
+     * @return the codecs by event type.
+     * */
+    public Map<Class<?>, EventCodec<?>> getEventCodecs() {
+        return Collections.unmodifiableMap(eventCodecs);
+    }
+
+    /**
+     * Registers the codec of the events of a class, to stage them in the off-heap
+     * buffer. It applies to the exact class only, not to its sub classes.
+     *
+     * @param <T> the event type.
+     * @param eventType the class of the events.
+     * @param eventCodec the codec of the events.
+     * @see #setOffHeapBufferCapacity(long)
+     * */
+    public <T> void registerEventCodec(Class<T> eventType, EventCodec<T> eventCodec) {
+        eventCodecs.put(eventType, eventCodec);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link MetricsCollector} keeping the metrics in memory. All counters are
+ * striped, so that recording from many threads does not contend, and the
+ * invocation latencies of each subscriber method are kept in a log-linear
+ * histogram. Invocations are counted per subscriber method, i.e. across all
+ * listener objects of the declaring class, while at least one of them is
+ * registered. The metrics of a subscriber method are released along with its
+ * last registration, and posts are counted by the name of the event class, so
+ * that the metrics never keep a class loaded.
+ *
+ * <pre>
+ *     JBusMetrics metrics = new JBusMetrics();
+ *     JBusConfig config = new JBusConfig();
+ *     config.setMetricsCollector(metrics);
+ *     JBus jBus = new JBus(config);
+ *     JBusMetricsJmx.register(metrics, jBus, "orders");
+ * </pre>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusMetricsJmx
+ */
+public class JBusMetrics implements MetricsCollector {
+    private final ConcurrentMap<String, StripedCounter> postCounts =
+            new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<Method, SubscriberMetrics> subscriberMetrics =
+            new ConcurrentHashMap<Method, SubscriberMetrics>();
+    private final StripedCounter[] rejections = new StripedCounter[OverflowPolicy.values().length + 1];
+    private final StripedCounter errors = new StripedCounter();
+    private final StripedCounter weakListenersReclaimed = new StripedCounter();
+
+    /**
+     * Instantiates a new, empty metrics collector.
+     * */
+    public JBusMetrics() {
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new StripedCounter();
+        }
+    }
+
+    @Override
+    public void onPost(Class<?> eventType) {
+        StripedCounter counter = postCounts.get(eventType.getName());
+        if (counter == null) {
+            counter = new StripedCounter();
+            StripedCounter existing = postCounts.putIfAbsent(eventType.getName(), counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void onRegister(Method subscriber) {
+        synchronized (subscriberMetrics) {
+            SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+            if (metrics == null) {
+                metrics = new SubscriberMetrics();
+                subscriberMetrics.put(subscriber, metrics);
+            }
+            metrics.registrations++;
+        }
+    }
+
+    @Override
+    public void onDeregister(Method subscriber) {
+        synchronized (subscriberMetrics) {
+            SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+            if (metrics != null && --metrics.registrations == 0) {
+                subscriberMetrics.remove(subscriber);
+            }
+        }
+    }
+
+    @Override
+    public void onInvocation(Method subscriber, long durationNanos) {
+        // a late asynchronous delivery after the last de-registration is not recorded
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        if (metrics != null) {
+            metrics.latency.record(durationNanos);
+        }
+    }
+
+    @Override
+    public void onError(Method subscriber, Throwable error) {
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        if (metrics != null) {
+            metrics.errors.increment();
+        }
+        errors.increment();
+    }
+
+    @Override
+    public void onRejection(OverflowPolicy overflowPolicy) {
+        rejections[overflowPolicy == null ? 0 : overflowPolicy.ordinal() + 1].increment();
+    }
+
+    @Override
+    public void onWeakListenerReclaimed() {
+        weakListenersReclaimed.increment();
+    }
+
+    /**
+     * Gets the number of events of a class posted so far.
+     *
+     * @param eventType the exact class of the event.
+     * @return the number of posts.
+     * */
+    public long getPostCount(Class<?> eventType) {
+        StripedCounter counter = postCounts.get(eventType.getName());
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Gets the number of posts of each event class.
+     *
+     * @return the number of posts keyed by the name of the event class.
+     * */
+    public Map<String, Long> getPostCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> entry : postCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets all subscriber methods with at least one registered listener.
+     *
+     * @return the subscriber methods.
+     * */
+    public Iterable<Method> getSubscribers() {
+        return subscriberMetrics.keySet();
+    }
+
+    /**
+     * Gets the number of invocations of a subscriber method.
+     *
+     * @param subscriber the subscriber method.
+     * @return the number of invocations.
+     * */
+    public long getInvocationCount(Method subscriber) {
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        return metrics != null ? metrics.latency.getCount() : 0;
+    }
+
+    /**
+     * Gets the mean invocation latency of a subscriber method.
+     *
+     * @param subscriber the subscriber method.
+     * @return the mean latency in nanoseconds.
+     * */
+    public double getMeanLatency(Method subscriber) {
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        return metrics != null ? metrics.latency.getMean() : 0;
+    }
+
+    /**
+     * Gets a percentile of the invocation latency of a subscriber method,
+     * with a relative error of at most 1/16.
+     *
+     * @param subscriber the subscriber method.
+     * @param percentile the percentile, e.g. {@code 99.9}.
+     * @return the latency in nanoseconds.
+     * */
+    public long getLatencyPercentile(Method subscriber, double percentile) {
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        return metrics != null ? metrics.latency.getPercentile(percentile) : 0;
+    }
+
+    /**
+     * Gets the number of errors thrown by a subscriber method.
+     *
+     * @param subscriber the subscriber method.
+     * @return the number of errors.
+     * */
+    public long getErrorCount(Method subscriber) {
+        SubscriberMetrics metrics = subscriberMetrics.get(subscriber);
+        return metrics != null ? metrics.errors.sum() : 0;
+    }
+
+    /**
+     * Gets the number of errors thrown by all subscribers.
+     *
+     * @return the number of errors.
+     * */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the number of asynchronous deliveries to which an overflow policy has
+     * been applied, or which have been rejected by the executor service if the
+     * policy is {@code null}.
+     *
+     * @param overflowPolicy the overflow policy, or {@code null}.
+     * @return the number of rejections.
+     * */
+    public long getRejectionCount(OverflowPolicy overflowPolicy) {
+        return rejections[overflowPolicy == null ? 0 : overflowPolicy.ordinal() + 1].sum();
+    }
+
+    /**
+     * Gets the number of all rejected or overflowed asynchronous deliveries.
+     *
+     * @return the number of rejections.
+     * */
+    public long getRejectionCount() {
+        long sum = 0;
+        for (StripedCounter counter : rejections) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the number of weakly registered listeners reclaimed after garbage collection.
+     *
+     * @return the number of reclaimed listeners.
+     * */
+    public long getWeakListenersReclaimed() {
+        return weakListenersReclaimed.sum();
+    }
+
+    private static class SubscriberMetrics {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final StripedCounter errors = new StripedCounter();
+        // guarded by the subscriber metrics map
+        int registrations;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exposes the {@link JBusMetrics} of an event bus via JMX, under the name
+ * {@code org.dizitart.jbus:type=JBus,name=<name>}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+public class JBusMetricsJmx implements JBusMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(JBusMetricsJmx.class);
+    private final JBusMetrics metrics;
+    private final JBus jBus;
+
+    /**
+     * Instantiates a new adapter for the metrics of an event bus.
+     *
+     * @param metrics the metrics collector of the event bus.
+     * @param jBus the event bus.
+     * */
+    public JBusMetricsJmx(JBusMetrics metrics, JBus jBus) {
+        this.metrics = metrics;
+        this.jBus = jBus;
+    }
+
+    /**
+     * Registers the metrics of an event bus to the platform MBean server.
+     *
+     * @param metrics the metrics collector of the event bus.
+     * @param jBus the event bus.
+     * @param name the name of the event bus.
+     * @return the object name of the registered MBean.
+     *
+     * @exception JBusException if the registration fails.
+     * */
+    public static ObjectName register(JBusMetrics metrics, JBus jBus, String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new JBusMetricsJmx(metrics, jBus), objectName);
+            return objectName;
+        } catch (JMException e) {
+            logger.error("Could not register the metrics of " + name + " to JMX.", e);
+            throw new JBusException("Could not register the metrics of " + name + " to JMX.", e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics of an event bus from the platform MBean server, if registered.
+     *
+     * @param name the name of the event bus.
+     *
+     * @exception JBusException if the de-registration fails.
+     * */
+    public static void unregister(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.error("Could not unregister the metrics of " + name + " from JMX.", e);
+            throw new JBusException("Could not unregister the metrics of " + name + " from JMX.", e);
+        }
+    }
+
+    @Override
+    public long getPostCount() {
+        long sum = 0;
+        for (Long count : metrics.getPostCounts().values()) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    @Override
+    public Map<String, Long> getPostCounts() {
+        return new TreeMap<String, Long>(metrics.getPostCounts());
+    }
+
+    @Override
+    public Map<String, Long> getInvocationCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Method subscriber : metrics.getSubscribers()) {
+            counts.put(key(subscriber), metrics.getInvocationCount(subscriber));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencies() {
+        Map<String, Double> latencies = new TreeMap<String, Double>();
+        for (Method subscriber : metrics.getSubscribers()) {
+            latencies.put(key(subscriber), metrics.getMeanLatency(subscriber));
+        }
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Long> getP50Latencies() {
+        return getLatencies(50);
+    }
+
+    @Override
+    public Map<String, Long> getP99Latencies() {
+        return getLatencies(99);
+    }
+
+    @Override
+    public Map<String, Long> getP999Latencies() {
+        return getLatencies(99.9);
+    }
+
+    @Override
+    public long getErrorCount() {
+        return metrics.getErrorCount();
+    }
+
+    @Override
+    public long getRejectionCount() {
+        return metrics.getRejectionCount();
+    }
+
+    @Override
+    public long getWeakListenersReclaimed() {
+        return metrics.getWeakListenersReclaimed();
+    }
+
+    @Override
+    public int getAsyncQueueDepth() {
+        return jBus.getAsyncQueueDepth();
+    }
+
+    private Map<String, Long> getLatencies(double percentile) {
+        Map<String, Long> latencies = new TreeMap<String, Long>();
+        for (Method subscriber : metrics.getSubscribers()) {
+            latencies.put(key(subscriber), metrics.getLatencyPercentile(subscriber, percentile));
+        }
+        return latencies;
+    }
+
+    private static String key(Method subscriber) {
+        return subscriber.getDeclaringClass().getName() + "." + subscriber.getName()
+                + "(" + subscriber.getParameterTypes()[0].getSimpleName() + ")";
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("org.dizitart.jbus:type=JBus,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics of an event bus, as exposed
+ * via JMX by {@link JBusMetricsJmx}. Subscriber methods are keyed as
+ * {@code DeclaringClass.method(EventType)}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+public interface JBusMetricsMXBean {
+    /**
+     * @return the number of posts of all event classes.
+     * */
+    long getPostCount();
+
+    /**
+     * @return the number of posts keyed by event class name.
+     * */
+    Map<String, Long> getPostCounts();
+
+    /**
+     * @return the number of invocations keyed by subscriber method.
+     * */
+    Map<String, Long> getInvocationCounts();
+
+    /**
+     * @return the mean invocation latency in nanoseconds keyed by subscriber method.
+     * */
+    Map<String, Double> getMeanLatencies();
+
+    /**
+     * @return the median invocation latency in nanoseconds keyed by subscriber method.
+     * */
+    Map<String, Long> getP50Latencies();
+
+    /**
+     * @return the 99th percentile of invocation latency in nanoseconds keyed by subscriber method.
+     * */
+    Map<String, Long> getP99Latencies();
+
+    /**
+     * @return the 99.9th percentile of invocation latency in nanoseconds keyed by subscriber method.
+     * */
+    Map<String, Long> getP999Latencies();
+
+    /**
+     * @return the number of errors thrown by all subscribers.
+     * */
+    long getErrorCount();
+
+    /**
+     * @return the number of rejected or overflowed asynchronous deliveries.
+     * */
+    long getRejectionCount();
+
+    /**
+     * @return the number of reclaimed weak listeners.
+     * */
+    long getWeakListenersReclaimed();
+
+    /**
+     * @return the number of pending asynchronous deliveries.
+     * */
+    int getAsyncQueueDepth();
+}
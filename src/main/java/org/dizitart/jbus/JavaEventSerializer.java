@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * An {@link EventSerializer} using the Java serialization. The events
+ * must implement {@link Serializable}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+public class JavaEventSerializer implements EventSerializer {
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public byte[] serialize(Object event) {
+        if (!(event instanceof Serializable)) {
+            logger.error(event.getClass().getName() + " is not serializable.");
+            throw new JBusException(event.getClass().getName() + " is not serializable.");
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            output.writeObject(event);
+            output.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            logger.error("Could not serialize " + event, e);
+            throw new JBusException("Could not serialize " + event, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] data) {
+        try {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data));
+            try {
+                return input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            logger.error("Could not deserialize an event", e);
+            throw new JBusException("Could not deserialize an event", e);
+        } catch (ClassNotFoundException e) {
+            logger.error("Could not deserialize an event", e);
+            throw new JBusException("Could not deserialize an event", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+
+/**
+ * An {@link Invoker} backed by a class spun by {@link LambdaMetafactory}.
+ * The generated class calls the subscriber method directly, so an invocation
+ * costs the same as an interface call which the JIT can inline.
+ *
+ * <p>This class must only be loaded on java 8 or above. {@link InvokerFactory}
+ * takes care of that.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class LambdaInvoker implements Invoker {
+    private static final MethodType SAM_TYPE
+            = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType FACTORY_TYPE
+            = MethodType.methodType(BiConsumer.class);
+
+    private final BiConsumer<Object, Object> consumer;
+    private final String name;
+
+    private LambdaInvoker(BiConsumer<Object, Object> consumer, String name) {
+        this.consumer = consumer;
+        this.name = name;
+    }
+
+    /**
+     * Creates a new invoker for the {@code method}.
+     *
+     * @throws Throwable if the jvm does not allow to spin the invoker class.
+     * */
+    @SuppressWarnings("unchecked")
+    static LambdaInvoker create(Method method) throws Throwable {
+        Class<?> declaringClass = method.getDeclaringClass();
+        MethodHandles.Lookup lookup = privateLookup(declaringClass);
+        MethodHandle implementation = lookup.unreflect(method);
+
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                FACTORY_TYPE, SAM_TYPE, implementation,
+                MethodType.methodType(void.class, declaringClass, method.getParameterTypes()[0]));
+
+        // the factory is called only once, so the non-exact invocation is fine here
+        BiConsumer<Object, Object> consumer
+                = (BiConsumer<Object, Object>) callSite.getTarget().invokeWithArguments();
+        return new LambdaInvoker(consumer, method.getName());
+    }
+
+    @Override
+    public void invoke(Object target, Object event) {
+        // checked exceptions from subscriber code pass through undeclared
+        consumer.accept(target, event);
+    }
+
+    /**
+     * Gets a lookup with private access to {@code targetClass}, so that
+     * subscriber methods with any access modifier can be linked.
+     * */
+    private static MethodHandles.Lookup privateLookup(Class<?> targetClass) throws Exception {
+        try {
+            // java 9+
+            Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn",
+                    Class.class, MethodHandles.Lookup.class);
+            return (MethodHandles.Lookup) privateLookupIn.invoke(null, targetClass, MethodHandles.lookup());
+        } catch (NoSuchMethodException e) {
+            // java 8 has a private constructor granting full access
+            Constructor<MethodHandles.Lookup> constructor
+                    = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(targetClass);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LambdaInvoker[" + name + "]";
+    }
+}
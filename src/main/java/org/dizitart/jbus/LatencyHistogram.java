@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A log-linear histogram of latencies in nanoseconds, in the style of an HDR
+ * histogram. Values are counted in buckets whose width grows with the value,
+ * so that every bucket has a relative error of at most {@code 1/16}, while the
+ * whole range of a long fits in a fixed array of counters.
+ *
+ * <p>The buckets are striped by thread same as a {@link StripedCounter}, each
+ * stripe allocated on its first use, so that concurrent recording threads
+ * rarely hit the same counters. The stripes are only merged when read.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class LatencyHistogram {
+    // values below are counted exactly
+    private static final int LINEAR = 32;
+    // sub buckets per power of 2 above
+    private static final int SUB_BUCKETS = 16;
+    private static final int BUCKETS = LINEAR + 58 * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes =
+            new AtomicReferenceArray<AtomicLongArray>(StripedCounter.STRIPES);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter total = new StripedCounter();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = StripedCounter.stripe();
+        AtomicLongArray counts = stripes.get(stripe);
+        if (counts == null) {
+            stripes.compareAndSet(stripe, null, new AtomicLongArray(BUCKETS));
+            counts = stripes.get(stripe);
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values in nanoseconds.
+     * */
+    double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    /**
+     * Gets the value in nanoseconds at or below which the {@code percentile}
+     * of the recorded values fall, e.g. {@code 99.9}. It is the upper bound of
+     * the bucket containing the percentile.
+     * */
+    long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < stripes.length(); stripe++) {
+            AtomicLongArray counts = stripes.get(stripe);
+            if (counts != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    long bucketCount = counts.get(i);
+                    snapshot[i] += bucketCount;
+                    count += bucketCount;
+                }
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - 4;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        long upper = ((subBucket + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
@@ -32,12 +32,46 @@ import java.lang.reflect.Modifier;
 class ListenerMethod {
     Object target;
     WeakReference<?> weakListener;
+    // the registry partition the subscriber is bound in
+    ListenersRegistry registry;
 
     Method method;
     Class<?> eventType;
+    Invoker invoker;
 
-    boolean async;
+    // may be demoted to async by the watchdog
+    volatile boolean async;
+    boolean batch;
+    int priority;
+    boolean sticky;
     boolean holdWeakReference;
+    // only events with this filter key are delivered, null if not filtered
+    String filter;
+
+    // own queue of pending deliveries, created on first async dispatch
+    boolean serial;
+    int queueCapacity;
+    OverflowPolicy overflowPolicy;
+    boolean conflate;
+    volatile DeliveryQueue asyncQueue;
+
+    // time based delivery, the window is created on first dispatch
+    boolean windowed;
+    int batchSize;
+    long maxDelay;
+    long debounce;
+    long throttle;
+    volatile SubscriberWindow window;
+
+    // slow invocations detected so far, only touched by the watchdog
+    int slowInvocations;
+
+    // acknowledges the durable events, bound on registration if there is a journal
+    boolean durable;
+    volatile SubscriberCheckpoints.Checkpoint checkpoint;
+
+    // id of the subscriber in the off-heap buffer while it has staged events, guarded by the buffer
+    int stagingId;
 
 
     ListenerMethod(Method method, Class<?> eventType) {
@@ -45,6 +79,31 @@ class ListenerMethod {
         this.eventType = eventType;
     }
 
+    /**
+     * Creates an unbound copy of a cached subscriber method, to be
+     * bound to a listener object.
+     * */
+    ListenerMethod(ListenerMethod listenerMethod) {
+        this.method = listenerMethod.method;
+        this.eventType = listenerMethod.eventType;
+        this.invoker = listenerMethod.invoker;
+        this.async = listenerMethod.async;
+        this.batch = listenerMethod.batch;
+        this.priority = listenerMethod.priority;
+        this.sticky = listenerMethod.sticky;
+        this.serial = listenerMethod.serial;
+        this.queueCapacity = listenerMethod.queueCapacity;
+        this.overflowPolicy = listenerMethod.overflowPolicy;
+        this.conflate = listenerMethod.conflate;
+        this.windowed = listenerMethod.windowed;
+        this.batchSize = listenerMethod.batchSize;
+        this.maxDelay = listenerMethod.maxDelay;
+        this.debounce = listenerMethod.debounce;
+        this.throttle = listenerMethod.throttle;
+        this.durable = listenerMethod.durable;
+        this.filter = listenerMethod.filter;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj)
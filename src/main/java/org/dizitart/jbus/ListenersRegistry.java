@@ -20,78 +20,155 @@ package org.dizitart.jbus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.dizitart.jbus.ReflectionUtil.findSubscribedMethods;
+import static org.dizitart.jbus.SubscriberCache.getSubscriberMethods;
 
 /**
  * A class to hold the records of listeners registered to the event bus runtime.
  *
+ * <p>Listeners are indexed by identity, each along with its own subscriber methods,
+ * so that registration and de-registration only touch the event types the listener
+ * subscribes to. The subscribers of an event type are kept in an array which is
+ * replaced on each change under a lock striped by event type.</p>
+ *
+ * <p>If any subscriber declares a filter, the subscribers of an event class are also
+ * indexed by filter key, each key mapped to the matching subscribers merged with the
+ * unfiltered ones in priority order, so that a post only iterates the subscribers it
+ * reaches. The index is replaced along with the subscriber array it has been built
+ * from, under the same lock, and a post only reads it.</p>
+ *
  * @since 1.0
  * @author Anindya Chatterjee.
  */
 class ListenersRegistry {
     private Logger logger = LoggerFactory.getLogger(getClass());
 
-    // keep track of event and its registered subscribed methods
-    private Map<Class<?>, List<ListenerMethod>> registry =
-            new ConcurrentHashMap<Class<?>, List<ListenerMethod>>();
-    // cache to keep track of all strong referenced listener object
-    private final List<Object> subscriberCache = new CopyOnWriteArrayList<Object>();
-    // cache to keep track of all weak referenced listener object
-    private final List<WeakReference<Object>> weakSubscriberCache =
-            new CopyOnWriteArrayList<WeakReference<Object>>();
-    private final Object lock = new Object();
+    private static final ListenerMethod[] NO_SUBSCRIBERS = new ListenerMethod[0];
+    private static final int LOCK_STRIPES = 32;
+    private static final Comparator<ListenerMethod> PRIORITY_ORDER = new Comparator<ListenerMethod>() {
+        @Override
+        public int compare(ListenerMethod first, ListenerMethod second) {
+            return first.priority > second.priority ? -1 : (first.priority == second.priority ? 0 : 1);
+        }
+    };
+    // max collected weak listeners removed by a single post
+    private static final int EXPUNGE_BATCH = 16;
+
+    // keep track of event and its registered subscribed methods. the arrays are
+    // never modified once published, a change replaces the whole array under the
+    // stripe lock of the event type, so that dispatch can iterate them without any copy.
+    private final Map<Class<?>, ListenerMethod[]> registry =
+            new ConcurrentHashMap<Class<?>, ListenerMethod[]>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // identity index of all registered listener objects
+    private final ConcurrentMap<ListenerKey, Registration> listenerIndex =
+            new ConcurrentHashMap<ListenerKey, Registration>();
+    // registrations of weak listeners by their weak reference, to find
+    // them even after the listener object has been garbage collected
+    private final ConcurrentMap<WeakReference<?>, Registration> weakRegistrations =
+            new ConcurrentHashMap<WeakReference<?>, Registration>();
+    // weak references of the listeners are enqueued here once the listeners
+    // are garbage collected, so that they can be removed without any sweep
+    private final ReferenceQueue<Object> collectedListeners = new ReferenceQueue<Object>();
+
+    // if set, an event is also dispatched to the subscribers of its super types
+    private final boolean eventInheritance;
+    // resolved subscribers of all super types, keyed by concrete event class
+    private final Map<Class<?>, ListenerMethod[]> dispatchTable =
+            new ConcurrentHashMap<Class<?>, ListenerMethod[]>();
+    // guards the fill and the invalidation of the dispatch table
+    private final Object dispatchTableLock = new Object();
+    private final MetricsCollector metrics;
+
+    // subscribers of each event class by filter key, only kept for the subscriber
+    // arrays having a filter. replaced along with the array it has been built from.
+    private final Map<Class<?>, FilterIndex> filterIndexes = new ConcurrentHashMap<Class<?>, FilterIndex>();
+    private final FilterKeyExtractor filterKeyExtractor;
+    // number of registered subscribers declaring a filter
+    private final AtomicInteger filteredSubscribers = new AtomicInteger();
+    // routes of the channels this registry is a partition of, told about each change
+    private final List<ChannelRoute> routes = new CopyOnWriteArrayList<ChannelRoute>();
+
+    ListenersRegistry(boolean eventInheritance) {
+        this(eventInheritance, null, null);
+    }
+
+    ListenersRegistry(boolean eventInheritance, MetricsCollector metrics, FilterKeyExtractor filterKeyExtractor) {
+        this.eventInheritance = eventInheritance;
+        this.metrics = metrics;
+        this.filterKeyExtractor = filterKeyExtractor;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
 
     /**
      * Registers an object in the listener registry. If weak is set,
      * it will create a weak reference of the listener object and register.
      * Otherwise it will store a strong reference of the listener object.
+     * It returns the subscriber methods bound to the listener.
      *
      * */
-    void register(Object listener, boolean weak) {
-        WeakReference<Object> weakListener = null;
+    ListenerMethod[] register(Object listener, boolean weak) {
+        return register(listener, weak, null);
+    }
 
-        // synchronize the search in the cache, to check if the listener
-        // has already been registered.
-        synchronized (lock) {
-            if (weak) {
-                // if the weak is set, check if a weak reference of the object is
-                // kept in the cache or not.
-                if (containsWeak(listener)) {
-                    logger.error(listener + " has already been registered.");
-                    throw new JBusException(listener + " has already been registered.");
-                }
-                // create a weak reference of the object and add it to the cache
-                weakListener = new WeakReference<Object>(listener);
-                weakSubscriberCache.add(weakListener);
-                logger.debug(listener + " added to the weak subscriber cache.");
-            } else {
-                if (subscriberCache.contains(listener)) {
-                    // if listener is found in the strong referenced cache, throw
-                    logger.error(listener + " has already been registered.");
-                    throw new JBusException(listener + " has already been registered.");
-                }
-                // add the object to the strong referenced cache
-                subscriberCache.add(listener);
-                logger.debug(listener + " added to the subscriber cache.");
-            }
+    /**
+     * Registers an object in the listener registry, passing each of its bound
+     * subscriber methods to the {@code binder} before any post can see it.
+     * */
+    ListenerMethod[] register(Object listener, boolean weak, SubscriberBinder binder) {
+        expungeCollectedListeners(Integer.MAX_VALUE);
+
+        // fail fast without scanning if the listener has already been registered.
+        ListenerKey key = ListenerKey.lookup(listener, weak);
+        if (listenerIndex.containsKey(key)) {
+            logger.error(listener + " has already been registered.");
+            throw new JBusException(listener + " has already been registered.");
         }
 
-        // extract all subscribed methods from the listener and its super class and interfaces.
-        // up to this point, we hold a strong reference of the object, beyond this point,
-        // if the weak is set, we will not hold any strong reference of the object.
-        List<ListenerMethod> subscribedMethods = findSubscribedMethods(listener.getClass());
-        if (subscribedMethods == null || subscribedMethods.isEmpty()) {
+        // get all subscribed methods of the listener and its super class and interfaces,
+        // scanned only once per listener class. up to this point, we hold a strong
+        // reference of the object, beyond this point, if the weak is set, we will
+        // not hold any strong reference of the object.
+        ListenerMethod[] subscribedMethods = getSubscriberMethods(listener.getClass());
+        if (subscribedMethods.length == 0) {
             logger.error(listener + " does not have any method marked with @Subscribe.");
             throw new JBusException(listener + " does not have any method marked with @Subscribe.");
         }
 
-        for (ListenerMethod listenerMethod : subscribedMethods) {
+        WeakReference<Object> weakListener = null;
+        if (weak) {
+            weakListener = new WeakReference<Object>(listener, collectedListeners);
+            key = ListenerKey.weak(listener, weakListener);
+        } else {
+            key = ListenerKey.strong(listener);
+        }
+
+        // bind a copy of each cached subscriber method to the listener
+        ListenerMethod[] listenerMethods = new ListenerMethod[subscribedMethods.length];
+        for (int i = 0; i < subscribedMethods.length; i++) {
+            ListenerMethod listenerMethod = new ListenerMethod(subscribedMethods[i]);
+            listenerMethod.registry = this;
             if (weak) {
                 listenerMethod.weakListener = weakListener;
                 listenerMethod.holdWeakReference = true;
@@ -99,179 +176,541 @@ class ListenersRegistry {
                 listenerMethod.target = listener;
                 listenerMethod.holdWeakReference = false;
             }
+            if (binder != null) {
+                binder.bind(listenerMethod);
+            }
+            listenerMethods[i] = listenerMethod;
+        }
 
-            Class<?> eventType = listenerMethod.eventType;
-            if (registry.containsKey(eventType)) {
-                List<ListenerMethod> listenerMethods = registry.get(eventType);
+        Registration registration = new Registration(key, listenerMethods);
+        if (listenerIndex.putIfAbsent(key, registration) != null) {
+            // lost the race against a concurrent registration of the same object
+            logger.error(listener + " has already been registered.");
+            throw new JBusException(listener + " has already been registered.");
+        }
+        if (weak) {
+            weakRegistrations.put(weakListener, registration);
+            logger.debug(listener + " added to the weak subscriber index.");
+        } else {
+            logger.debug(listener + " added to the subscriber index.");
+        }
 
-                // check ListenerMethod's equals method
-                if (!listenerMethods.contains(listenerMethod)) {
-                    listenerMethods.add(listenerMethod);
-                    logger.debug(listenerMethod + " has been registered.");
-                } else {
-                    logger.debug(listenerMethod + " has already been registered.");
+        synchronized (registration) {
+            // a concurrent de-registration might have already removed it
+            if (registration.active) {
+                for (ListenerMethod listenerMethod : registration.listenerMethods) {
+                    addSubscriber(listenerMethod);
                 }
-            } else {
-                List<ListenerMethod> listenerMethods = new CopyOnWriteArrayList<ListenerMethod>();
-                listenerMethods.add(listenerMethod);
-                registry.put(listenerMethod.eventType, listenerMethods);
-                logger.debug(listenerMethod + " has been registered.");
             }
         }
+
+        // the listener might have been collected before its weak reference
+        // was indexed, in which case the reference queue has missed it.
+        if (weak && weakListener.get() == null) {
+            removeWeakListener(weakListener);
+        }
+        return listenerMethods;
     }
 
     /**
      * De-registers a listener object.
      * */
     void deregister(Object listener) {
-        // synchronize the search. search and remove are put in one place
-        // to avoid unnecessary looping.
-        synchronized (lock) {
-            // we need to check in both the caches, as we don't know how
-            // the listener object was registered. If it was a weak reference,
-            // there are chances, that underlying object has already been
-            // collected by GC. In that case while iterating we will cleanup
-            // the cache as we go, if we find such weak reference.
-            //
-            // But one catch here is that we will never know if we are trying
-            // to deregister an object which was never registered before, hence
-            // we can not throw such exception.
-
-            for (WeakReference<Object> weakRef : weakSubscriberCache) {
-                Object element = weakRef.get();
-                if (element == null) {
-                    // underlying object is no more. remove it from the cache already.
-                    if (weakSubscriberCache.remove(weakRef)) {
-                        logger.debug(weakRef + " removed from cache as underlying object does not exist anymore.");
-                    }
-                } else {
-                    if (element.equals(listener)) {
-                        // found in weak cache, remove it and break
-                        if (weakSubscriberCache.remove(weakRef)) {
-                            logger.debug(listener + " removed from the weak subscriber reference cache.");
-                        }
-                        break;
-                    }
+        expungeCollectedListeners(Integer.MAX_VALUE);
+
+        // we need to check in both the indexes, as we don't know how
+        // the listener object was registered. If it was a weak reference,
+        // there are chances, that underlying object has already been
+        // collected by GC. In that case it has already been removed or will
+        // be removed when it is found during dispatch.
+        //
+        // But one catch here is that we will never know if we are trying
+        // to deregister an object which was never registered before, hence
+        // we can not throw such exception.
+        Registration registration = listenerIndex.remove(ListenerKey.lookup(listener, false));
+        if (registration != null) {
+            logger.debug(listener + " removed from the subscriber index.");
+            unregister(registration);
+        }
+
+        registration = listenerIndex.remove(ListenerKey.lookup(listener, true));
+        if (registration != null) {
+            weakRegistrations.remove(registration.key.weakListener);
+            logger.debug(listener + " removed from the weak subscriber index.");
+            unregister(registration);
+        }
+    }
+
+
+    /**
+     * Get all registered subscriber information for an event, except the subscribers
+     * whose filter does not match it. The returned array is a snapshot shared with
+     * other callers and must not be modified.
+     * */
+    ListenerMethod[] getSubscribers(Object event) {
+        if (event != null) {
+            ListenerMethod[] subscribers = getSubscribers(event.getClass());
+            return subscribers != null ? route(event, subscribers) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Selects the subscribers whose filter matches the event among the
+     * {@code subscribers} of its class, keeping their order.
+     * */
+    ListenerMethod[] route(Object event, ListenerMethod[] subscribers) {
+        if (filteredSubscribers.get() == 0) {
+            return subscribers;
+        }
+
+        FilterIndex filterIndex = filterIndexes.get(event.getClass());
+        if (filterIndex == null || filterIndex.subscribers != subscribers) {
+            // either none of the subscribers has a filter, or the subscribers
+            // have changed since they were read, in which case the index of
+            // this snapshot is built once for this post and not published
+            if (!hasFilter(subscribers)) {
+                return subscribers;
+            }
+            filterIndex = new FilterIndex(subscribers);
+        }
+        return filterIndex.select(getFilterKey(event));
+    }
+
+    /**
+     * Checks if the filter of the subscriber, if any, matches the event.
+     * */
+    boolean accepts(ListenerMethod listenerMethod, Object event) {
+        return listenerMethod.filter == null || listenerMethod.filter.equals(getFilterKey(event));
+    }
+
+    String getFilterKey(Object event) {
+        Object filterKey = null;
+        if (event instanceof Filterable) {
+            filterKey = ((Filterable) event).getFilterKey();
+        } else if (filterKeyExtractor != null) {
+            filterKey = filterKeyExtractor.getFilterKey(event);
+        }
+        return filterKey != null ? filterKey.toString() : null;
+    }
+
+    /**
+     * Get all registered subscriber information for an event class. The returned
+     * array is a snapshot shared with other callers and must not be modified.
+     * */
+    ListenerMethod[] getSubscribers(Class<?> eventType) {
+        if (eventType != null) {
+            // amortize the clean up of collected listeners over the posts,
+            // a few at a time, so that no post stalls on a large clean up.
+            expungeCollectedListeners(EXPUNGE_BATCH);
+            if (eventInheritance) {
+                // a single lookup, same as the exact match. the table is
+                // only filled on the first post of an event class after
+                // any change in its super types' subscribers.
+                ListenerMethod[] subscribers = dispatchTable.get(eventType);
+                return subscribers != null ? subscribers : resolveSubscribers(eventType);
+            }
+            return registry.get(eventType);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a single subscriber method from the registry, while the rest of
+     * the subscribers of its listener stay registered.
+     * */
+    void quarantine(ListenerMethod listenerMethod) {
+        removeSubscriber(listenerMethod);
+    }
+
+    /**
+     * Gets the subscribers of all event types, without resolving any inheritance.
+     * */
+    Collection<ListenerMethod[]> getAllSubscribers() {
+        return registry.values();
+    }
+
+    /**
+     * De-registers all listeners, e.g. once the channel of this registry is closed.
+     * */
+    void clear() {
+        for (Registration registration : listenerIndex.values()) {
+            if (listenerIndex.remove(registration.key, registration)) {
+                if (registration.key.weakListener != null) {
+                    weakRegistrations.remove(registration.key.weakListener);
                 }
+                unregister(registration);
+            }
+        }
+    }
+
+    /**
+     * Adds a channel route including this registry, to be invalidated on each change.
+     * */
+    void addRoute(ChannelRoute route) {
+        routes.add(route);
+    }
+
+    void removeRoute(ChannelRoute route) {
+        routes.remove(route);
+    }
+
+    boolean isEventInheritance() {
+        return eventInheritance;
+    }
+
+    /**
+     * Flattens the subscribers of the event class and all of its super classes
+     * and interfaces into an array and caches it in the dispatch table.
+     * Subscribers are ordered by priority, and then the subscribers of the most
+     * specific type come first.
+     * */
+    private ListenerMethod[] resolveSubscribers(Class<?> eventType) {
+        synchronized (dispatchTableLock) {
+            ListenerMethod[] subscribers = dispatchTable.get(eventType);
+            if (subscribers != null) {
+                return subscribers;
+            }
+
+            List<ListenerMethod> resolved = new ArrayList<ListenerMethod>();
+            for (Class<?> type : getTypeHierarchy(eventType)) {
+                ListenerMethod[] listenerMethods = registry.get(type);
+                if (listenerMethods != null) {
+                    resolved.addAll(Arrays.asList(listenerMethods));
+                }
+            }
+            // a stable sort, which keeps the order of the type hierarchy for the same priority
+            Collections.sort(resolved, PRIORITY_ORDER);
+            subscribers = resolved.toArray(NO_SUBSCRIBERS);
+            dispatchTable.put(eventType, subscribers);
+            updateFilterIndex(eventType, subscribers);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Dispatch table resolved for " + eventType.getName()
+                        + " with " + subscribers.length + " subscribers.");
             }
+            return subscribers;
+        }
+    }
 
-            for (Object object : subscriberCache) {
-                if (object.equals(listener)) {
-                    // found in strong cache, remove it break
-                    if (subscriberCache.remove(listener)) {
-                        logger.debug(listener + " removed from the subscriber cache.");
+    /**
+     * Removes all resolved entries of the dispatch table which are affected
+     * by a change in the subscribers of {@code eventType}.
+     * */
+    private void invalidate(Class<?> eventType) {
+        for (ChannelRoute route : routes) {
+            route.invalidate(eventType);
+        }
+        if (eventInheritance) {
+            synchronized (dispatchTableLock) {
+                for (Class<?> resolvedType : dispatchTable.keySet()) {
+                    if (eventType.isAssignableFrom(resolvedType)) {
+                        dispatchTable.remove(resolvedType);
+                        filterIndexes.remove(resolvedType);
                     }
-                    break;
                 }
             }
         }
+    }
 
-        // remove the listener and its subscribed methods from the registry,
-        // we are not 100% sure if we are dealing with weak referenced object
-        // or not, hence we are passing false.
-        removeFromRegistry(listener, false);
+    /**
+     * Gets the class, its super classes and all of the interfaces it implements,
+     * starting from the class itself.
+     * */
+    private static Set<Class<?>> getTypeHierarchy(Class<?> eventType) {
+        Set<Class<?>> hierarchy = new LinkedHashSet<Class<?>>();
+        for (Class<?> type = eventType; type != null; type = type.getSuperclass()) {
+            hierarchy.add(type);
+        }
+
+        List<Class<?>> classes = new ArrayList<Class<?>>(hierarchy);
+        for (int i = 0; i < classes.size(); i++) {
+            for (Class<?> interfaceClass : classes.get(i).getInterfaces()) {
+                if (hierarchy.add(interfaceClass)) {
+                    classes.add(interfaceClass);
+                }
+            }
+        }
+        return hierarchy;
     }
 
+
     /**
-     * Get all registered subscriber information for an event.
+     * Removes a weak referenced listener from the bus runtime.
      * */
-    List<ListenerMethod> getSubscribers(Object event) {
-        if (event != null) {
-            Class<?> eventType = event.getClass();
-            // loop through the registry to get all subscribed method
-            if (registry.containsKey(eventType)) {
-                return registry.get(eventType);
+    void removeWeakListener(WeakReference<?> weakRef) {
+        Registration registration = weakRegistrations.remove(weakRef);
+        if (registration != null) {
+            // the key of a cleared weak reference is only equal to itself
+            listenerIndex.remove(registration.key);
+            logger.debug("Weak reference " + weakRef + " removed from index.");
+            unregister(registration);
+            if (metrics != null) {
+                metrics.onWeakListenerReclaimed();
             }
         }
-        return null;
     }
 
     /**
-     * Checks if an object's weak reference is kept in the cache or not.
+     * Removes the listeners which have been garbage collected, up to {@code max}
+     * of them. Each removal only touches the event types of its listener.
      * */
-    private boolean containsWeak(Object listener) {
-        for (WeakReference<Object> weakRef : weakSubscriberCache) {
-            Object element = weakRef.get();
-            if (element == null) {
-                // if the object has already been claimed by the GC,
-                // remove it from the cache.
-                if (weakSubscriberCache.remove(weakRef)) {
-                    logger.debug(weakRef + " removed from cache as underlying object does not exist anymore.");
-                }
+    void expungeCollectedListeners(int max) {
+        Reference<?> reference;
+        for (int i = 0; i < max && (reference = collectedListeners.poll()) != null; i++) {
+            removeWeakListener((WeakReference<?>) reference);
+        }
+    }
+
+    /**
+     * Removes all subscriber methods of a registration from the registry.
+     * */
+    private void unregister(Registration registration) {
+        synchronized (registration) {
+            registration.active = false;
+            for (ListenerMethod listenerMethod : registration.listenerMethods) {
+                removeSubscriber(listenerMethod);
+            }
+        }
+    }
+
+    /**
+     * Adds a subscriber method to the subscribers of its event type.
+     * */
+    private void addSubscriber(ListenerMethod listenerMethod) {
+        Class<?> eventType = listenerMethod.eventType;
+        if (listenerMethod.filter != null) {
+            filteredSubscribers.incrementAndGet();
+        }
+        if (metrics != null) {
+            metrics.onRegister(listenerMethod.method);
+        }
+        synchronized (lockFor(eventType)) {
+            ListenerMethod[] listenerMethods = registry.get(eventType);
+            if (listenerMethods == null) {
+                publish(eventType, new ListenerMethod[]{listenerMethod});
             } else {
-                if (element.equals(listener)) {
-                    // if the listener is found equal to any weak referenced object,
-                    // return true immediately.
-                    return true;
+                // publish a new array, the old one might still be in use by a dispatch.
+                // the array is kept sorted by priority, after the subscribers of the
+                // same priority, so that a post never has to sort it.
+                int index = listenerMethods.length;
+                while (index > 0 && listenerMethods[index - 1].priority < listenerMethod.priority) {
+                    index--;
                 }
+                ListenerMethod[] newListenerMethods = new ListenerMethod[listenerMethods.length + 1];
+                System.arraycopy(listenerMethods, 0, newListenerMethods, 0, index);
+                newListenerMethods[index] = listenerMethod;
+                System.arraycopy(listenerMethods, index, newListenerMethods, index + 1,
+                        listenerMethods.length - index);
+                publish(eventType, newListenerMethods);
+            }
+        }
+        invalidate(eventType);
+        logger.debug(listenerMethod + " has been registered.");
+    }
+
+    /**
+     * Removes a subscriber method from the subscribers of its event type.
+     * */
+    private void removeSubscriber(ListenerMethod listenerMethod) {
+        Class<?> eventType = listenerMethod.eventType;
+        synchronized (lockFor(eventType)) {
+            ListenerMethod[] listenerMethods = registry.get(eventType);
+            if (listenerMethods == null) {
+                return;
+            }
+
+            int index = -1;
+            for (int i = 0; i < listenerMethods.length; i++) {
+                if (listenerMethods[i] == listenerMethod) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+
+            if (listenerMethods.length == 1) {
+                publish(eventType, null);
+            } else {
+                ListenerMethod[] newListenerMethods = new ListenerMethod[listenerMethods.length - 1];
+                System.arraycopy(listenerMethods, 0, newListenerMethods, 0, index);
+                System.arraycopy(listenerMethods, index + 1, newListenerMethods, index,
+                        listenerMethods.length - index - 1);
+                publish(eventType, newListenerMethods);
+            }
+        }
+        if (listenerMethod.filter != null) {
+            filteredSubscribers.decrementAndGet();
+        }
+        invalidate(eventType);
+        if (metrics != null) {
+            metrics.onDeregister(listenerMethod.method);
+        }
+        logger.debug(listenerMethod + " has been un-registered.");
+    }
+
+    /**
+     * Replaces the subscribers of an event type, or removes them if {@code null},
+     * along with their filter index. Called under the stripe lock of the event type.
+     * */
+    private void publish(Class<?> eventType, ListenerMethod[] listenerMethods) {
+        if (listenerMethods == null) {
+            registry.remove(eventType);
+        } else {
+            registry.put(eventType, listenerMethods);
+        }
+        // with event inheritance, the index is kept for the resolved subscribers instead
+        if (!eventInheritance) {
+            updateFilterIndex(eventType, listenerMethods);
+        }
+    }
+
+    /**
+     * Indexes the subscribers of an event class by filter key, or removes
+     * the index if none of the subscribers, if any, has a filter.
+     * */
+    private void updateFilterIndex(Class<?> eventType, ListenerMethod[] listenerMethods) {
+        if (listenerMethods != null && hasFilter(listenerMethods)) {
+            filterIndexes.put(eventType, new FilterIndex(listenerMethods));
+        } else {
+            filterIndexes.remove(eventType);
+        }
+    }
+
+    static boolean hasFilter(ListenerMethod[] listenerMethods) {
+        for (ListenerMethod listenerMethod : listenerMethods) {
+            if (listenerMethod.filter != null) {
+                return true;
             }
         }
         return false;
     }
 
+    private Object lockFor(Class<?> eventType) {
+        return locks[eventType.hashCode() & (LOCK_STRIPES - 1)];
+    }
+
     /**
-     * Removes a weak referenced listener from the bus runtime.
+     * A registered listener object along with its subscriber methods.
      * */
-    void removeWeakListener(WeakReference<?> weakRef) {
-        // first remove it from cache
-        if (weakSubscriberCache.remove(weakRef)) {
-            logger.debug("Weak reference " + weakRef + " removed from cache.");
+    private static class Registration {
+        final ListenerKey key;
+        final ListenerMethod[] listenerMethods;
+        // guarded by the registration itself
+        boolean active = true;
+
+        Registration(ListenerKey key, ListenerMethod[] listenerMethods) {
+            this.key = key;
+            this.listenerMethods = listenerMethods;
+        }
+    }
+
+    /**
+     * Identity based key of a listener object. A strong key and a weak key
+     * of the same object are not equal, as the same object can be registered
+     * both ways. A weak key whose listener has been garbage collected is only
+     * equal to itself.
+     * */
+    private static class ListenerKey {
+        private final boolean weak;
+        private final Object listener;
+        private final WeakReference<?> weakListener;
+        private final int hash;
+
+        private ListenerKey(boolean weak, Object listener, WeakReference<?> weakListener, int hash) {
+            this.weak = weak;
+            this.listener = listener;
+            this.weakListener = weakListener;
+            this.hash = hash;
         }
 
-        // clean up the registry. Most of the time removeWeakListener is called when
-        // underlying object is garbage collected and we want to remove the weak
-        // reference from the runtime. So weakRef.get() will always return null
-        // in that case.
-        //
-        // But fortunately, removeFromRegistry method will cleanup the cache while
-        // iterating if it finds a weak reference which does not hold any object
-        // reference any more.
-        removeFromRegistry(weakRef.get(), true);
+        static ListenerKey strong(Object listener) {
+            return new ListenerKey(false, listener, null, System.identityHashCode(listener));
+        }
+
+        static ListenerKey weak(Object listener, WeakReference<?> weakListener) {
+            return new ListenerKey(true, null, weakListener, System.identityHashCode(listener));
+        }
+
+        static ListenerKey lookup(Object listener, boolean weak) {
+            return new ListenerKey(weak, listener, null, System.identityHashCode(listener));
+        }
+
+        Object get() {
+            return weakListener != null ? weakListener.get() : listener;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof ListenerKey))
+                return false;
+            ListenerKey other = (ListenerKey) obj;
+            Object referent = get();
+            return weak == other.weak && referent != null && referent == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
     /**
-     * Removes the listener from the registry. It also cleans up the registry,
-     * while iterating, if it finds any weak reference which does not hold any
-     * object reference any more, i.e. the underlying object has been garbage collected.
-     *
-     * @param confirmedWeak if we know listener was registered as a weak reference
+     * Binds a subscriber method of a registering listener to a resource
+     * of the event bus, before the subscriber becomes visible to posts.
      * */
-    private void removeFromRegistry(Object listener, boolean confirmedWeak) {
-        // iterate the whole registry map
-        for (Map.Entry<Class<?>, List<ListenerMethod>> entry : registry.entrySet()) {
-            List<ListenerMethod> subscribedMethods = entry.getValue();
-            for (ListenerMethod listenerMethod : subscribedMethods) {
-                if (confirmedWeak || listenerMethod.holdWeakReference) {
-                    // if confirmedWeak is true or listener method holds weak reference,
-                    // check if underlying object is still valid.
-
-                    // if not valid clean up. remove the entry from cache and
-                    // from the event's subscriber list.
-                    Object reference = listenerMethod.weakListener.get();
-                    if (reference == null) {
-                        // remove from event subscribers list
-                        if (subscribedMethods.remove(listenerMethod)) {
-                            logger.debug(listenerMethod + " has been un-registered as the " +
-                                    "target has been garbage collected.");
-                        }
-                        // remove that invalid weak reference from cache
-                        if (weakSubscriberCache.remove(listenerMethod.weakListener)) {
-                            logger.debug(listenerMethod.weakListener +
-                                    " removed from cache as underlying object does not exist anymore.");
-                        }
-                    } else if (reference.equals(listener)) {
-                        if (subscribedMethods.remove(listenerMethod)) {
-                            logger.debug(listenerMethod + " has been un-registered.");
-                        }
+    interface SubscriberBinder {
+        void bind(ListenerMethod listenerMethod);
+    }
+
+    /**
+     * Subscribers of an event class indexed by filter key, built
+     * from subscribers of which at least one has a filter.
+     * */
+    static class FilterIndex {
+        // the subscribers of the class the index has been built from
+        final ListenerMethod[] subscribers;
+        final ListenerMethod[] unfiltered;
+        final Map<String, ListenerMethod[]> byKey;
+
+        FilterIndex(ListenerMethod[] subscribers) {
+            this.subscribers = subscribers;
+
+            Map<String, List<ListenerMethod>> matching = new LinkedHashMap<String, List<ListenerMethod>>();
+            for (ListenerMethod listenerMethod : subscribers) {
+                if (listenerMethod.filter != null && !matching.containsKey(listenerMethod.filter)) {
+                    matching.put(listenerMethod.filter, new ArrayList<ListenerMethod>());
+                }
+            }
+
+            // a single pass over the subscribers keeps the priority order in every key
+            List<ListenerMethod> unfilteredList = new ArrayList<ListenerMethod>();
+            for (ListenerMethod listenerMethod : subscribers) {
+                if (listenerMethod.filter == null) {
+                    unfilteredList.add(listenerMethod);
+                    for (List<ListenerMethod> listenerMethods : matching.values()) {
+                        listenerMethods.add(listenerMethod);
                     }
                 } else {
-                    if (listenerMethod.target.equals(listener)) {
-                        if (subscribedMethods.remove(listenerMethod)) {
-                            logger.debug(listenerMethod + " has been un-registered.");
-                        }
-                    }
+                    matching.get(listenerMethod.filter).add(listenerMethod);
                 }
             }
+            unfiltered = unfilteredList.toArray(NO_SUBSCRIBERS);
+            byKey = new HashMap<String, ListenerMethod[]>(matching.size() * 2);
+            for (Map.Entry<String, List<ListenerMethod>> entry : matching.entrySet()) {
+                byKey.put(entry.getKey(), entry.getValue().toArray(NO_SUBSCRIBERS));
+            }
+        }
+
+        /**
+         * Selects the subscribers accepting the filter key, in priority order.
+         * */
+        ListenerMethod[] select(String filterKey) {
+            ListenerMethod[] matching = filterKey != null ? byKey.get(filterKey) : null;
+            return matching != null ? matching : unfiltered;
         }
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.lang.reflect.Method;
+
+/**
+ * A service provider interface to collect metrics of an event bus. The
+ * callbacks are made on the hot path of the event bus, from any thread,
+ * so an implementation must be thread safe and should neither block nor
+ * allocate. {@link JBusMetrics} is a ready to use implementation.
+ *
+ * <p>No callback is made and no time is measured if no collector is configured.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setMetricsCollector(MetricsCollector)
+ */
+public interface MetricsCollector {
+    /**
+     * Called when an event is posted to the event bus.
+     *
+     * @param eventType the class of the event.
+     * */
+    void onPost(Class<?> eventType);
+
+    /**
+     * Called when a subscriber method of a listener has been registered, before
+     * it receives any event. Each call is paired with a call to
+     * {@link #onDeregister(Method)} once the subscriber is removed again.
+     *
+     * @param subscriber the subscriber method.
+     * */
+    void onRegister(Method subscriber);
+
+    /**
+     * Called when a subscriber method of a listener has been removed from the
+     * event bus. Once all of its registrations are removed, the collector should
+     * release anything it keeps for the method, so that its class can be unloaded.
+     * A pending asynchronous delivery might still be invoked afterwards.
+     *
+     * @param subscriber the subscriber method.
+     * */
+    void onDeregister(Method subscriber);
+
+    /**
+     * Called when a subscriber method has returned normally or exceptionally.
+     *
+     * @param subscriber the subscriber method.
+     * @param durationNanos the duration of the invocation in nanoseconds.
+     * */
+    void onInvocation(Method subscriber, long durationNanos);
+
+    /**
+     * Called when a subscriber method has thrown an error, before it
+     * is routed to the {@link ExceptionEvent} handlers.
+     *
+     * @param subscriber the subscriber method.
+     * @param error the error thrown.
+     * */
+    void onError(Method subscriber, Throwable error);
+
+    /**
+     * Called when an asynchronous delivery has not been accepted as it is,
+     * either because a full queue has applied its overflow policy, or because
+     * the executor service has rejected it, in which case the policy is {@code null}.
+     *
+     * @param overflowPolicy the overflow policy applied, or {@code null}.
+     * */
+    void onRejection(OverflowPolicy overflowPolicy);
+
+    /**
+     * Called when a weakly registered listener has been garbage collected
+     * and removed from the event bus.
+     * */
+    void onWeakListenerReclaimed();
+}
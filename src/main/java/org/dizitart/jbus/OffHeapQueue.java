@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A staging buffer of pending asynchronous deliveries outside the heap. The
+ * events of a class with an {@link EventCodec} are encoded into direct buffer
+ * slabs, and decoded by a drainer right before the subscriber is invoked, so a
+ * large backlog does not keep millions of small objects on the heap. A subscriber
+ * is referred by a small id, which is released once none of its deliveries is
+ * staged any more.
+ *
+ * <p>Each record is the subscriber id, the codec id, the length of the event and
+ * the encoded event. A record never spans two slabs, the consumed slabs are
+ * reused, and no more slabs are allocated than the capacity allows. An event
+ * without a codec, larger than a slab, or not fitting in the capacity is not
+ * staged, and takes the regular path instead.</p>
+ *
+ * <p>An event is encoded into a buffer of the publishing thread, so that only
+ * the copy into the slab is serialized. A record which can not be decoded is
+ * reported to the error handlers and skipped.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class OffHeapQueue implements DeliveryQueue {
+    private static final int DRAIN_BATCH = 64;
+    private static final int MAX_SLAB_SIZE = 1024 * 1024;
+    private static final int HEADER_SIZE = 12;
+    // encoding buffer of each publishing thread, grown on demand up to a slab
+    private static final ThreadLocal<ByteBuffer> encodeBuffers = new ThreadLocal<ByteBuffer>();
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final EventDispatcher eventDispatcher;
+    private final Executor executor;
+    private final int concurrency;
+    private final int slabSize;
+    private final int maxSlabs;
+    private final Map<Class<?>, Integer> codecIds = new HashMap<Class<?>, Integer>();
+    private final EventCodec<?>[] codecs;
+    private final AtomicInteger drainers = new AtomicInteger();
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // guarded by this
+    private final ArrayDeque<ByteBuffer> slabs = new ArrayDeque<ByteBuffer>();
+    private final ArrayDeque<ByteBuffer> freeSlabs = new ArrayDeque<ByteBuffer>();
+    private int allocatedSlabs;
+    // read position in the first slab, the write position is the position of the last slab
+    private int readPosition;
+    private int size;
+    private ListenerMethod[] subscribers = new ListenerMethod[16];
+    private int[] stagedCounts = new int[16];
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+    private int nextId;
+    private volatile boolean running = true;
+
+    OffHeapQueue(EventDispatcher eventDispatcher, Executor executor, long capacity,
+                 Map<Class<?>, EventCodec<?>> codecs, int concurrency) {
+        this.eventDispatcher = eventDispatcher;
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.slabSize = (int) Math.min(capacity, MAX_SLAB_SIZE);
+        this.maxSlabs = (int) Math.min(capacity / slabSize, Integer.MAX_VALUE);
+        this.codecs = new EventCodec<?>[codecs.size()];
+        int codecId = 0;
+        for (Map.Entry<Class<?>, EventCodec<?>> entry : codecs.entrySet()) {
+            codecIds.put(entry.getKey(), codecId);
+            this.codecs[codecId++] = entry.getValue();
+        }
+    }
+
+    /**
+     * Stages the event for delivery to the subscriber if it can be encoded and
+     * there is space left. A drainer must be scheduled afterwards.
+     *
+     * @return {@code true} if the event has been staged.
+     * */
+    @SuppressWarnings("unchecked")
+    boolean offer(Object event, ListenerMethod listenerMethod) {
+        Integer codecId = codecIds.get(event.getClass());
+        if (codecId == null || !running) {
+            return false;
+        }
+        EventCodec<Object> codec = (EventCodec<Object>) codecs[codecId];
+        int length = codec.size(event);
+        if (HEADER_SIZE + length > slabSize) {
+            return false;
+        }
+
+        // a codec writing more than its size overflows the limit of the buffer
+        ByteBuffer encoded = encodeBuffer(length);
+        codec.encode(event, encoded);
+        if (encoded.position() != length) {
+            // a codec writing less than its size would corrupt the slab
+            logger.error(codec + " has not written " + length + " bytes for " + event);
+            throw new JBusException(codec + " has not written " + length + " bytes for " + event);
+        }
+        encoded.flip();
+
+        synchronized (this) {
+            ByteBuffer slab = writableSlab(HEADER_SIZE + length);
+            if (slab == null) {
+                return false;
+            }
+            slab.putInt(subscriberId(listenerMethod));
+            slab.putInt(codecId);
+            slab.putInt(length);
+            slab.put(encoded);
+            size++;
+        }
+        return true;
+    }
+
+    @Override
+    public void submit(Object event, ListenerMethod listenerMethod) {
+        if (!offer(event, listenerMethod)) {
+            throw new JBusException("Event " + event + " can not be staged off-heap.");
+        }
+        scheduleDrainer();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the encoding buffer of the current thread, cleared and limited to {@code length}.
+     * */
+    private static ByteBuffer encodeBuffer(int length) {
+        ByteBuffer buffer = encodeBuffers.get();
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, 256));
+            encodeBuffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        return buffer;
+    }
+
+    /**
+     * Gets the last slab if the record fits in it, or else a new slab.
+     * */
+    private ByteBuffer writableSlab(int recordSize) {
+        ByteBuffer slab = slabs.peekLast();
+        if (slab != null && slab.remaining() >= recordSize) {
+            return slab;
+        }
+        slab = freeSlabs.poll();
+        if (slab == null) {
+            if (allocatedSlabs >= maxSlabs) {
+                return null;
+            }
+            slab = ByteBuffer.allocateDirect(slabSize);
+            allocatedSlabs++;
+        }
+        if (slabs.isEmpty()) {
+            readPosition = 0;
+        }
+        slabs.addLast(slab);
+        return slab;
+    }
+
+    private int subscriberId(ListenerMethod listenerMethod) {
+        int id = listenerMethod.stagingId;
+        if (id == 0) {
+            if (freeIdCount > 0) {
+                id = freeIds[--freeIdCount];
+            } else {
+                id = ++nextId;
+                if (id >= subscribers.length) {
+                    subscribers = Arrays.copyOf(subscribers, id * 2);
+                    stagedCounts = Arrays.copyOf(stagedCounts, id * 2);
+                }
+            }
+            listenerMethod.stagingId = id;
+            subscribers[id] = listenerMethod;
+        }
+        stagedCounts[id]++;
+        return id;
+    }
+
+    private void releaseSubscriberId(int id) {
+        if (--stagedCounts[id] == 0) {
+            subscribers[id].stagingId = 0;
+            subscribers[id] = null;
+            if (freeIdCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+            }
+            freeIds[freeIdCount++] = id;
+        }
+    }
+
+    void scheduleDrainer() {
+        while (true) {
+            int running = drainers.get();
+            if (running >= concurrency) {
+                // a running drainer will pick the event up
+                return;
+            }
+            if (drainers.compareAndSet(running, running + 1)) {
+                try {
+                    executor.execute(drainer);
+                } catch (RuntimeException e) {
+                    drainers.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        // each drainer copies a record out of the slab, so that
+        // the slab can be reused while the event is being decoded
+        ByteBuffer scratch = null;
+        try {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                ListenerMethod listenerMethod;
+                EventCodec<Object> codec;
+                synchronized (this) {
+                    if (size == 0) {
+                        break;
+                    }
+                    ByteBuffer slab = slabs.peekFirst();
+                    if (readPosition == slab.position()) {
+                        // the rest of the first slab was too small for the next record
+                        recycle(slabs.pollFirst());
+                        slab = slabs.peekFirst();
+                        readPosition = 0;
+                    }
+                    int id = slab.getInt(readPosition);
+                    codec = (EventCodec<Object>) codecs[slab.getInt(readPosition + 4)];
+                    int length = slab.getInt(readPosition + 8);
+                    if (scratch == null || scratch.capacity() < length) {
+                        scratch = ByteBuffer.allocate(Math.max(length, 256));
+                    }
+                    scratch.clear();
+                    ByteBuffer record = slab.duplicate();
+                    record.limit(readPosition + HEADER_SIZE + length).position(readPosition + HEADER_SIZE);
+                    scratch.put(record).flip();
+                    readPosition += HEADER_SIZE + length;
+
+                    listenerMethod = subscribers[id];
+                    releaseSubscriberId(id);
+                    size--;
+                    if (size == 0) {
+                        // nothing staged, start over from the beginning of the slab
+                        ByteBuffer last = slabs.pollLast();
+                        while (!slabs.isEmpty()) {
+                            recycle(slabs.pollFirst());
+                        }
+                        last.clear();
+                        slabs.addLast(last);
+                        readPosition = 0;
+                    }
+                }
+
+                Object event;
+                try {
+                    event = codec.decode(scratch);
+                } catch (RuntimeException e) {
+                    // only this record is lost, the rest are delivered as usual
+                    eventDispatcher.undeliverable(listenerMethod, e);
+                    continue;
+                }
+                eventDispatcher.deliverPending(event, listenerMethod);
+            }
+        } finally {
+            drainers.decrementAndGet();
+
+            // an event might have been staged while this drainer was finishing
+            if (running && size() > 0) {
+                scheduleDrainer();
+            }
+        }
+    }
+
+    private void recycle(ByteBuffer slab) {
+        slab.clear();
+        freeSlabs.push(slab);
+    }
+}
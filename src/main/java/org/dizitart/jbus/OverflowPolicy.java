@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+/**
+ * Determines what happens to an event for an asynchronous subscriber
+ * when its bounded queue is full.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setOverflowPolicy(OverflowPolicy)
+ * @see Subscribe#overflowPolicy()
+ */
+public enum OverflowPolicy {
+    /**
+     * Blocks the publisher until there is space in the queue.
+     * */
+    BLOCK,
+
+    /**
+     * Drops the new event.
+     * */
+    DROP_NEWEST,
+
+    /**
+     * Drops the oldest pending event to make space for the new event.
+     * */
+    DROP_OLDEST,
+
+    /**
+     * Replaces the event of a pending delivery to the same subscriber with
+     * the new event. If the subscriber does not have any pending delivery,
+     * it behaves like {@link #DROP_OLDEST}.
+     * */
+    COALESCE,
+
+    /**
+     * Invokes the subscriber in the thread posting the event.
+     * */
+    CALLER_RUNS
+}
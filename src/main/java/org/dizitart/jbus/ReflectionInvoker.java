@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * An {@link Invoker} which uses {@link Method#invoke(Object, Object...)}.
+ * It works on every jvm and used as a fallback when a faster invoker
+ * can not be created.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class ReflectionInvoker implements Invoker {
+    private final Method method;
+
+    ReflectionInvoker(Method method) {
+        this.method = method;
+    }
+
+    @Override
+    public void invoke(Object target, Object event) throws Throwable {
+        try {
+            method.invoke(target, event);
+        } catch (InvocationTargetException e) {
+            // unwrap to surface the actual error from the subscriber code
+            throw e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReflectionInvoker[" + method.getName() + "]";
+    }
+}
@@ -20,7 +20,11 @@ package org.dizitart.jbus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,31 +45,35 @@ class ReflectionUtil {
     static List<ListenerMethod> findSubscribedMethods(Class<?> subscribedClass) {
         List<ListenerMethod> listenerMethodList = new ArrayList<ListenerMethod>();
         if (subscribedClass != null) {
-            Method[] declaredMethods = subscribedClass.getDeclaredMethods();
-            for (Method method : declaredMethods) {
-                if (method.isAnnotationPresent(Subscribe.class) && !method.isBridge() && !method.isSynthetic()) {
-                    if (method.getParameterTypes().length != 1) {
-                        logger.error(method.getName() + " has @Subscribe annotation, " +
-                                "but it should have exactly 1 parameter.");
-                        throw new JBusException(method.getName() + " has @Subscribe annotation, " +
-                                "but it should have exactly 1 parameter.");
+            SubscriberIndex subscriberIndex = findSubscriberIndex(subscribedClass);
+            if (subscriberIndex != null) {
+                // the index generated at build time replaces the scan of the
+                // declared methods, and its generated code replaces reflection.
+                for (IndexedSubscriber subscriber : subscriberIndex.getSubscribers()) {
+                    Method method;
+                    try {
+                        method = subscribedClass.getDeclaredMethod(subscriber.methodName, subscriber.parameterType);
+                    } catch (NoSuchMethodException e) {
+                        logger.error("Subscriber index of " + subscribedClass.getName() + " is out of date.", e);
+                        throw new JBusException("Subscriber index of " + subscribedClass.getName()
+                                + " is out of date.", e);
                     }
+                    validate(method);
+                    listenerMethodList.add(createListenerMethod(method, subscriber.eventType, subscriber));
+                }
+            } else {
+                Method[] declaredMethods = subscribedClass.getDeclaredMethods();
+                for (Method method : declaredMethods) {
+                    if (method.isAnnotationPresent(Subscribe.class) && !method.isBridge() && !method.isSynthetic()) {
+                        validate(method);
+                        method.setAccessible(true);
 
-                    Class<?> parameterType = method.getParameterTypes()[0];
-                    if (parameterType.isArray() || method.isVarArgs()) {
-                        logger.error(method.getName() + " has @Subscribe annotation, " +
-                                "but its parameter should not be an array or varargs.");
-                        throw new JBusException(method.getName() + " has @Subscribe annotation, " +
-                                "but its parameter should not be an array or varargs.");
+                        Subscribe subscribe = method.getAnnotation(Subscribe.class);
+                        Class<?> eventType = subscribe.batch()
+                                ? findBatchEventType(method) : method.getParameterTypes()[0];
+                        listenerMethodList.add(createListenerMethod(method, eventType,
+                                InvokerFactory.createInvoker(method)));
                     }
-
-                    method.setAccessible(true);
-                    Subscribe subscribe = method.getAnnotation(Subscribe.class);
-                    boolean async = subscribe.async();
-
-                    ListenerMethod listenerMethod = new ListenerMethod(method, method.getParameterTypes()[0]);
-                    listenerMethod.async = async;
-                    listenerMethodList.add(listenerMethod);
                 }
             }
 
@@ -90,4 +98,93 @@ class ReflectionUtil {
         }
         return listenerMethodList;
     }
+
+    /**
+     * Validates the declaration of a subscriber method.
+     * */
+    private static void validate(Method method) {
+        String error = SubscriberRules.check(method.getAnnotation(Subscribe.class),
+                method.getParameterTypes().length,
+                method.getParameterTypes().length == 1
+                        && (method.getParameterTypes()[0].isArray() || method.isVarArgs()));
+        if (error != null) {
+            logger.error(method.getName() + " has @Subscribe annotation, but " + error);
+            throw new JBusException(method.getName() + " has @Subscribe annotation, but " + error);
+        }
+    }
+
+    /**
+     * Creates an unbound subscriber method from its {@link Subscribe} declaration.
+     * */
+    private static ListenerMethod createListenerMethod(Method method, Class<?> eventType, Invoker invoker) {
+        Subscribe subscribe = method.getAnnotation(Subscribe.class);
+        ListenerMethod listenerMethod = new ListenerMethod(method, eventType);
+        listenerMethod.async = subscribe.async();
+        listenerMethod.batch = subscribe.batch();
+        listenerMethod.priority = subscribe.priority();
+        listenerMethod.sticky = subscribe.sticky();
+        listenerMethod.serial = subscribe.serial();
+        listenerMethod.queueCapacity = subscribe.queueCapacity();
+        listenerMethod.overflowPolicy = subscribe.overflowPolicy();
+        listenerMethod.conflate = subscribe.conflate();
+        listenerMethod.batchSize = subscribe.batchSize();
+        listenerMethod.maxDelay = subscribe.maxDelay();
+        listenerMethod.debounce = subscribe.debounce();
+        listenerMethod.throttle = subscribe.throttle();
+        listenerMethod.durable = subscribe.durable();
+        listenerMethod.filter = subscribe.filter().isEmpty() ? null : subscribe.filter();
+        listenerMethod.windowed = subscribe.batchSize() > 0 || subscribe.maxDelay() > 0
+                || subscribe.debounce() > 0 || subscribe.throttle() > 0;
+        listenerMethod.invoker = invoker;
+        return listenerMethod;
+    }
+
+    /**
+     * Loads the subscriber index generated for the class, if there is one.
+     * */
+    private static SubscriberIndex findSubscriberIndex(Class<?> subscribedClass) {
+        try {
+            Class<?> indexClass = Class.forName(subscribedClass.getName() + SubscriberIndex.INDEX_SUFFIX,
+                    true, subscribedClass.getClassLoader());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Subscriber index found for " + subscribedClass.getName());
+            }
+            return (SubscriberIndex) indexClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            logger.error("Could not create the subscriber index of " + subscribedClass.getName(), e.getCause());
+            throw new JBusException("Could not create the subscriber index of " + subscribedClass.getName(),
+                    e.getCause());
+        } catch (Exception e) {
+            logger.error("Could not load the subscriber index of " + subscribedClass.getName(), e);
+            throw new JBusException("Could not load the subscriber index of " + subscribedClass.getName(), e);
+        }
+    }
+
+    /**
+     * Finds the event type of a batch subscriber from the type argument of its
+     * {@code List} parameter.
+     * */
+    private static Class<?> findBatchEventType(Method method) {
+        Type parameterType = method.getGenericParameterTypes()[0];
+        if (parameterType instanceof ParameterizedType
+                && ((ParameterizedType) parameterType).getRawType().equals(List.class)) {
+            Type typeArgument = ((ParameterizedType) parameterType).getActualTypeArguments()[0];
+            if (typeArgument instanceof WildcardType) {
+                typeArgument = ((WildcardType) typeArgument).getUpperBounds()[0];
+            }
+            if (typeArgument instanceof ParameterizedType) {
+                typeArgument = ((ParameterizedType) typeArgument).getRawType();
+            }
+            if (typeArgument instanceof Class) {
+                return (Class<?>) typeArgument;
+            }
+        }
+
+        logger.error(method.getName() + " has @Subscribe(batch = true) annotation, " +
+                "but its parameter should be a List of the event type.");
+        throw new JBusException(method.getName() + " has @Subscribe(batch = true) annotation, " +
+                "but its parameter should be a List of the event type.");
+    }
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated ring buffer of asynchronous deliveries, in the spirit of the
+ * LMAX disruptor. Publishers claim a sequence, fill the slot in place and mark
+ * it available. Dedicated consumer threads wait on the sequence barrier, i.e.
+ * the highest contiguous available sequence, and deliver everything up to it
+ * in one batch. Nothing is allocated per event.
+ *
+ * <p>With more than one consumer, each consumer owns the sequences equal to
+ * its index modulo the number of consumers. A slot is reused only after all
+ * consumers have moved past it. If the ring is full, a publisher waits for a
+ * free slot, unless it is a consumer thread itself, in which case the delivery
+ * is executed in place to avoid waiting on itself. Once the ring is shut down,
+ * a waiting publisher gives up and its delivery is rejected.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class RingBuffer implements DeliveryQueue {
+    // claim results other than a sequence
+    private static final long FULL = -1;
+    private static final long STOPPED = -2;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final EventDispatcher eventDispatcher;
+    private final WaitStrategy waitStrategy;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final int indexShift;
+    // round number of the sequence last published in each slot
+    private final AtomicIntegerArray published;
+    // last claimed sequence
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // last known minimum consumer sequence, saves a scan of the consumers
+    private final AtomicLong gatingCache = new AtomicLong(-1);
+    private final Consumer[] consumers;
+    private volatile boolean running = true;
+
+    RingBuffer(EventDispatcher eventDispatcher, int size, WaitStrategy waitStrategy, int consumerCount) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new JBusException("Ring buffer size must be a power of 2, found " + size);
+        }
+        if (consumerCount <= 0) {
+            throw new JBusException("Ring buffer needs at least one consumer, found " + consumerCount);
+        }
+
+        this.eventDispatcher = eventDispatcher;
+        this.waitStrategy = waitStrategy;
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.slots = new Slot[size];
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+
+        this.consumers = new Consumer[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            consumers[i] = new Consumer(i, consumerCount);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.start();
+        }
+    }
+
+    @Override
+    public void submit(Object event, ListenerMethod listenerMethod) {
+        long sequence = claim();
+        if (sequence == FULL) {
+            // ring is full and the publisher is a consumer of this ring
+            eventDispatcher.deliverPending(event, listenerMethod);
+            return;
+        }
+        if (sequence == STOPPED) {
+            // no consumer is left to free a slot
+            eventDispatcher.pendingDropped(event, listenerMethod);
+            throw new RejectedExecutionException("Ring buffer has been shut down.");
+        }
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.event = event;
+        slot.listenerMethod = listenerMethod;
+        // ordered store, makes the slot visible to the consumers
+        published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+    }
+
+    @Override
+    public int size() {
+        return (int) (cursor.get() - minimumSequence());
+    }
+
+    /**
+     * Claims the next sequence, waiting for a free slot if required. Returns
+     * {@link #FULL} if the ring is full and the current thread is one of its
+     * consumers, or {@link #STOPPED} if the ring is shut down while waiting.
+     * */
+    private long claim() {
+        int attempt = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - slots.length;
+
+            if (wrapPoint > gatingCache.get()) {
+                long gatingSequence = minimumSequence();
+                if (wrapPoint > gatingSequence) {
+                    if (isConsumerThread()) {
+                        return FULL;
+                    }
+                    if (!running) {
+                        return STOPPED;
+                    }
+                    waitStrategy.idle(++attempt);
+                    continue;
+                }
+                gatingCache.set(gatingSequence);
+            }
+
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long minimumSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            long sequence = consumer.sequence.get();
+            if (sequence < minimum) {
+                minimum = sequence;
+            }
+        }
+        return minimum;
+    }
+
+    private boolean isConsumerThread() {
+        Thread thread = Thread.currentThread();
+        for (Consumer consumer : consumers) {
+            if (consumer == thread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * The sequence barrier. Gets the highest sequence up to which
+     * all slots are published, starting from {@code from}.
+     * */
+    private long highestPublished(long from) {
+        long last = cursor.get();
+        for (long sequence = from; sequence <= last; sequence++) {
+            if (!isPublished(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return last;
+    }
+
+    private static class Slot {
+        Object event;
+        ListenerMethod listenerMethod;
+    }
+
+    private class Consumer extends Thread {
+        // last sequence this consumer has moved past
+        final AtomicLong sequence = new AtomicLong(-1);
+        private final int index;
+        private final int consumerCount;
+
+        Consumer(int index, int consumerCount) {
+            super("jbus-ring-consumer-" + index);
+            setDaemon(true);
+            this.index = index;
+            this.consumerCount = consumerCount;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            int attempt = 0;
+            while (running) {
+                long available = highestPublished(next);
+                if (available < next) {
+                    waitStrategy.idle(++attempt);
+                    continue;
+                }
+
+                attempt = 0;
+                for (long current = next; current <= available; current++) {
+                    if (current % consumerCount == index) {
+                        Slot slot = slots[(int) current & mask];
+                        Object event = slot.event;
+                        ListenerMethod listenerMethod = slot.listenerMethod;
+                        // do not keep the event reachable until the slot is reused
+                        slot.event = null;
+                        slot.listenerMethod = null;
+                        eventDispatcher.deliverPending(event, listenerMethod);
+                    }
+                }
+                // ordered store, frees the batch for the publishers
+                sequence.lazySet(available);
+                next = available + 1;
+            }
+            logger.debug(getName() + " stopped.");
+        }
+    }
+}
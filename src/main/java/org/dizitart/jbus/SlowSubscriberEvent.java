@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.lang.reflect.Method;
+
+/**
+ * Represents the event triggered when a subscriber is still running
+ * after the slow subscriber threshold. It is posted once per slow
+ * invocation, while the subscriber is still running.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setSlowSubscriberThreshold(long)
+ */
+public class SlowSubscriberEvent implements HandlerChainAware {
+    private Object listener;
+    private Object event;
+    private Method subscribedMethod;
+    private String threadName;
+    private long elapsedMillis;
+    private StackTraceElement[] stackTrace;
+    private int slowInvocations;
+    private SlowSubscriberPolicy appliedPolicy;
+    private HandlerChain handlerChain;
+
+    /**
+     * Instantiate the slow subscriber event.
+     *
+     * @param listener the listener object.
+     * @param event the event which is being handled.
+     * @param subscribedMethod the slow subscribed method.
+     * @param threadName the name of the thread running the subscriber.
+     * @param elapsedMillis the time the subscriber has been running for.
+     * @param stackTrace the stack of the thread sampled at the time of the detection.
+     * @param slowInvocations the number of slow invocations of the subscriber so far.
+     * @param appliedPolicy the policy applied to the subscriber upon this invocation.
+     * */
+    public SlowSubscriberEvent(Object listener, Object event, Method subscribedMethod,
+                               String threadName, long elapsedMillis, StackTraceElement[] stackTrace,
+                               int slowInvocations, SlowSubscriberPolicy appliedPolicy) {
+        this.listener = listener;
+        this.event = event;
+        this.subscribedMethod = subscribedMethod;
+        this.threadName = threadName;
+        this.elapsedMillis = elapsedMillis;
+        this.stackTrace = stackTrace;
+        this.slowInvocations = slowInvocations;
+        this.appliedPolicy = appliedPolicy;
+    }
+
+    /**
+     * Gets the listener object of the slow subscriber.
+     *
+     * @return the listener object.
+     * */
+    public Object getListener() {
+        return listener;
+    }
+
+    /**
+     * Gets the event which is being handled by the slow subscriber.
+     *
+     * @return the event.
+     * */
+    public Object getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the slow subscribed method.
+     *
+     * @return the subscribed method.
+     * */
+    public Method getSubscribedMethod() {
+        return subscribedMethod;
+    }
+
+    /**
+     * Gets the name of the thread running the slow subscriber.
+     *
+     * @return the thread name.
+     * */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets the time the subscriber had been running for when it was detected.
+     *
+     * @return the elapsed time in milliseconds.
+     * */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Gets the stack of the thread running the subscriber, sampled at the
+     * time of the detection.
+     *
+     * @return the stack trace.
+     * */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * Gets the number of slow invocations of the subscriber so far,
+     * including this one.
+     *
+     * @return the number of slow invocations.
+     * */
+    public int getSlowInvocations() {
+        return slowInvocations;
+    }
+
+    /**
+     * Gets the policy applied to the subscriber upon this invocation. It is
+     * {@link SlowSubscriberPolicy#REPORT} unless the subscriber has just
+     * reached the configured number of slow invocations.
+     *
+     * @return the applied policy.
+     * */
+    public SlowSubscriberPolicy getAppliedPolicy() {
+        return appliedPolicy;
+    }
+
+    @Override
+    public void setHandlerChain(HandlerChain handlerChain) {
+        this.handlerChain = handlerChain;
+    }
+
+    @Override
+    public HandlerChain getHandlerChain() {
+        return handlerChain;
+    }
+
+    @Override
+    public String toString() {
+        return "[" +
+                "method = " +
+                subscribedMethod +
+                ", thread = " +
+                threadName +
+                ", elapsed = " +
+                elapsedMillis +
+                "ms, policy = " +
+                appliedPolicy +
+                "]";
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * Determines what happens to a subscriber which has repeatedly exceeded
+ * the slow subscriber threshold.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setSlowSubscriberThreshold(long)
+ * @see SlowSubscriberEvent
+ */
+public enum SlowSubscriberPolicy {
+    /**
+     * Only reports the slow invocations.
+     * */
+    REPORT,
+
+    /**
+     * Demotes a synchronous subscriber to an asynchronous one, so that it
+     * no longer runs in the thread posting the event.
+     * */
+    DEMOTE,
+
+    /**
+     * Removes the subscriber from the event bus. The rest of the subscribers
+     * of its listener stay registered.
+     * */
+    QUARANTINE
+}
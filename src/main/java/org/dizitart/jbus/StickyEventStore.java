@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last few sticky events of each event class, to be replayed
+ * to the sticky subscribers at registration.
+ *
+ * <p>The events of each class are bounded by a capacity, a new event evicts
+ * the oldest one once the capacity is reached. If an expiry is set, an event
+ * older than that is neither returned nor replayed and is evicted lazily.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class StickyEventStore {
+    private static final Comparator<StickyEvent> POST_ORDER = new Comparator<StickyEvent>() {
+        @Override
+        public int compare(StickyEvent first, StickyEvent second) {
+            return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+        }
+    };
+
+    private final int capacity;
+    private final long expiryNanos;
+    private final AtomicLong sequence = new AtomicLong();
+    // events of each class, each deque is guarded by itself, and is only
+    // removed from the map under its lock, so no put can append to it after
+    private final ConcurrentMap<Class<?>, ArrayDeque<StickyEvent>> stickyEvents =
+            new ConcurrentHashMap<Class<?>, ArrayDeque<StickyEvent>>();
+
+    StickyEventStore(int capacity, long expiryMillis) {
+        if (capacity < 1) {
+            throw new JBusException("Sticky event capacity must be at least 1, found " + capacity);
+        }
+        this.capacity = capacity;
+        this.expiryNanos = TimeUnit.MILLISECONDS.toNanos(expiryMillis);
+    }
+
+    /**
+     * Stores an event, evicting the oldest event of its class if it is full.
+     * */
+    void put(Object event) {
+        while (true) {
+            ArrayDeque<StickyEvent> events = stickyEvents.get(event.getClass());
+            if (events == null) {
+                events = new ArrayDeque<StickyEvent>(capacity);
+                ArrayDeque<StickyEvent> existing = stickyEvents.putIfAbsent(event.getClass(), events);
+                if (existing != null) {
+                    events = existing;
+                }
+            }
+
+            synchronized (events) {
+                if (stickyEvents.get(event.getClass()) != events) {
+                    // removed concurrently, the event would be lost in it
+                    continue;
+                }
+                // the sequence is taken under the lock, so the deque stays in post order
+                StickyEvent stickyEvent = new StickyEvent(event, System.nanoTime(), sequence.incrementAndGet());
+                if (events.size() == capacity) {
+                    events.removeFirst();
+                }
+                events.addLast(stickyEvent);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the latest event of the exact class, if any.
+     * */
+    Object getLatest(Class<?> eventType) {
+        ArrayDeque<StickyEvent> events = stickyEvents.get(eventType);
+        if (events != null) {
+            synchronized (events) {
+                evictExpired(events);
+                StickyEvent stickyEvent = events.peekLast();
+                return stickyEvent != null ? stickyEvent.event : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the events of the class, in the order they were posted. If the
+     * {@code eventInheritance} is set, the events of its sub classes are
+     * included as well.
+     * */
+    List<Object> getEvents(Class<?> eventType, boolean eventInheritance) {
+        List<StickyEvent> found = new ArrayList<StickyEvent>();
+        if (eventInheritance) {
+            for (Map.Entry<Class<?>, ArrayDeque<StickyEvent>> entry : stickyEvents.entrySet()) {
+                if (eventType.isAssignableFrom(entry.getKey())) {
+                    collect(entry.getValue(), found);
+                }
+            }
+            Collections.sort(found, POST_ORDER);
+        } else {
+            ArrayDeque<StickyEvent> events = stickyEvents.get(eventType);
+            if (events != null) {
+                collect(events, found);
+            }
+        }
+
+        List<Object> result = new ArrayList<Object>(found.size());
+        for (StickyEvent stickyEvent : found) {
+            result.add(stickyEvent.event);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all events of the exact class.
+     * */
+    boolean remove(Class<?> eventType) {
+        ArrayDeque<StickyEvent> events = stickyEvents.get(eventType);
+        if (events == null) {
+            return false;
+        }
+        synchronized (events) {
+            return stickyEvents.remove(eventType, events);
+        }
+    }
+
+    /**
+     * Removes all events.
+     * */
+    void clear() {
+        for (Class<?> eventType : stickyEvents.keySet()) {
+            remove(eventType);
+        }
+    }
+
+    private void collect(ArrayDeque<StickyEvent> events, List<StickyEvent> found) {
+        synchronized (events) {
+            evictExpired(events);
+            found.addAll(events);
+        }
+    }
+
+    private void evictExpired(ArrayDeque<StickyEvent> events) {
+        if (expiryNanos > 0) {
+            long now = System.nanoTime();
+            Iterator<StickyEvent> iterator = events.iterator();
+            while (iterator.hasNext() && now - iterator.next().timestamp > expiryNanos) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class StickyEvent {
+        final Object event;
+        final long timestamp;
+        final long sequence;
+
+        StickyEvent(Object event, long timestamp, long sequence) {
+            this.event = event;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -51,4 +51,216 @@ public @interface Subscribe {
      * @return async flag.
      * */
     boolean async() default false;
+
+    /**
+     * Declares the priority of the subscriber in the handler chain of an event.
+     * Subscribers with a higher priority are invoked first, subscribers with the
+     * same priority are invoked in the order of registration. A high priority
+     * subscriber can validate or filter an event and stop the rest of the chain
+     * via {@link HandlerChain#interrupt()}.
+     *
+     * <p>The order is kept in the subscribers of each event type as they are
+     * registered, so it does not cost anything per post. An asynchronous subscriber
+     * is only submitted in the order of priority, it might still complete later
+     * than a subscriber with a lower priority.</p>
+     *
+     * <p>Defaults to {@code 0}</p>.
+     *
+     * @return the priority.
+     * @since 1.3
+     * */
+    int priority() default 0;
+
+    /**
+     * Declares whether the subscriber receives the sticky events posted before
+     * its registration. The events kept by the event bus for its event type are
+     * replayed to it at registration, in the order they were posted. A sticky
+     * event posted while the listener is being registered might be received twice.
+     *
+     * <p>Defaults to {@code false}</p>.
+     *
+     * @return sticky flag.
+     * @since 1.3
+     * @see JBus#postSticky(Object)
+     * */
+    boolean sticky() default false;
+
+    /**
+     * Declares whether the events to an asynchronous subscriber are delivered
+     * one at a time in the order they were posted. Deliveries to a serial
+     * subscriber never run concurrently, while different subscribers still run
+     * in parallel on the shared executor service. It is only applicable for
+     * asynchronous subscribers.
+     *
+     * <p>Defaults to {@code false}</p>.
+     *
+     * @return serial flag.
+     * @since 1.3
+     * */
+    boolean serial() default false;
+
+    /**
+     * Declares whether the subscriber receives events in batches. A batch
+     * subscriber must accept a single {@link java.util.List} parameter, whose
+     * type argument is the type of the event, e.g. {@code List<UserEvent>}.
+     *
+     * <p>All events of the same class posted together via {@link JBus#postAll(java.util.Collection)}
+     * are delivered to it as one list, in the order they were posted. An event posted
+     * via {@link JBus#post(Object)} is delivered as a list of one event. A batch
+     * subscriber does not take part in the {@link HandlerChain} of an event.</p>
+     *
+     * <p>Defaults to {@code false}</p>.
+     *
+     * @return batch flag.
+     * @since 1.3
+     * */
+    boolean batch() default false;
+
+    /**
+     * Declares the number of events a {@link #batch()} subscriber accumulates before
+     * they are delivered as one list. Along with {@link #maxDelay()}, the list is
+     * delivered once either of the bounds is reached. Events posted together via
+     * {@link JBus#postAll(java.util.Collection)} are accumulated one by one as well.
+     *
+     * <p>A list filled up by a post is delivered from the posting thread, unless the
+     * subscriber is asynchronous. A list closed by the delay is always delivered via
+     * the executor service.</p>
+     *
+     * <p>Defaults to {@code 0}, i.e. no bound on the number of events. If neither
+     * bound is set, the events of each post are delivered right away.</p>
+     *
+     * @return the batch size.
+     * @since 1.3
+     * */
+    int batchSize() default 0;
+
+    /**
+     * Declares the maximum time in milliseconds a {@link #batch()} subscriber accumulates
+     * events, counted from the first event of a batch, before they are delivered as one list.
+     *
+     * <p>Defaults to {@code 0}, i.e. no bound on the time.</p>
+     *
+     * @return the maximum delay in milliseconds.
+     * @since 1.3
+     * @see #batchSize()
+     * */
+    long maxDelay() default 0;
+
+    /**
+     * Declares the quiet period in milliseconds of a debouncing subscriber. An event
+     * is held back until no further event has been posted to the subscriber for this
+     * period, and only the latest one is delivered. It can not be combined with
+     * {@link #throttle()} or {@link #batch()}.
+     *
+     * <p>A debounced event is delivered via the executor service.</p>
+     *
+     * <p>Defaults to {@code 0}, i.e. no debouncing.</p>
+     *
+     * @return the debounce period in milliseconds.
+     * @since 1.3
+     * */
+    long debounce() default 0;
+
+    /**
+     * Declares the interval in milliseconds of a throttling subscriber, which is invoked
+     * at most once per interval. The first event is delivered right away, the latest
+     * event posted during the interval is delivered via the executor service once the
+     * interval is over, any other event is dropped. It can not be combined with
+     * {@link #debounce()} or {@link #batch()}.
+     *
+     * <p>Defaults to {@code 0}, i.e. no throttling.</p>
+     *
+     * @return the throttle interval in milliseconds.
+     * @since 1.3
+     * */
+    long throttle() default 0;
+
+    /**
+     * Declares the capacity of a queue of pending deliveries owned by this
+     * subscriber. It is only applicable for asynchronous subscribers. If
+     * the queue is full, the {@link #overflowPolicy()} is applied.
+     *
+     * <p>Defaults to {@code 0}, i.e. the subscriber uses the queue of
+     * the event bus, if any. A {@link #serial()} subscriber always has its
+     * own queue, which is unbounded by default.</p>
+     *
+     * @return the queue capacity.
+     * @since 1.3
+     * @see JBusConfig#setAsyncQueueCapacity(int)
+     * */
+    int queueCapacity() default 0;
+
+    /**
+     * Declares the policy applied when the queue of this subscriber is
+     * full. It is only applicable if {@link #queueCapacity()} is set. A
+     * {@link #serial()} subscriber can only use {@link OverflowPolicy#BLOCK}
+     * or {@link OverflowPolicy#DROP_NEWEST}, as the other policies would
+     * reorder its events or run it concurrently.
+     *
+     * <p>Defaults to {@link OverflowPolicy#BLOCK}</p>.
+     *
+     * @return the overflow policy.
+     * @since 1.3
+     * */
+    OverflowPolicy overflowPolicy() default OverflowPolicy.BLOCK;
+
+    /**
+     * Declares whether the pending events to an asynchronous subscriber are
+     * conflated. The subscriber holds one pending event per conflation key, a
+     * newer event replaces the pending one of the same key, so that only the
+     * latest value of each key is delivered. The key of an event is supplied by
+     * {@link Conflatable}, or else by the {@link JBusConfig#setConflationKeyExtractor(ConflationKeyExtractor)
+     * key extractor} of the event bus. Events without any key conflate with each other.
+     *
+     * <p>The deliveries to a conflating subscriber never run concurrently. It is only
+     * applicable for asynchronous subscribers, it takes precedence over {@link #serial()}
+     * and {@link #queueCapacity()}, and it can not be combined with {@link #batch()}.
+     * Each replaced event is counted as an {@link OverflowPolicy#COALESCE}.</p>
+     *
+     * <p>Defaults to {@code false}</p>.
+     *
+     * @return conflate flag.
+     * @since 1.3
+     * */
+    boolean conflate() default false;
+
+    /**
+     * Declares whether an asynchronous subscriber acknowledges the durable events
+     * posted via {@link JBus#postDurable(Object)}. Once the subscriber has finished
+     * an event, successfully or not, its offset in the journal is acknowledged,
+     * and the acknowledged offsets are persisted in batches. After a restart,
+     * {@link JBus#redeliver()} delivers it only the events it has not acknowledged.
+     * The subscribers of the same method in all listeners of a class share their
+     * acknowledgements.
+     *
+     * <p>It requires {@link #async()}, and it can not be combined with {@link #batch()},
+     * {@link #conflate()}, {@link #debounce()} or {@link #throttle()}. It has no effect if
+     * the event bus does not have a journal. An event dropped by the
+     * {@link #overflowPolicy()} is skipped, while an event discarded by a shutdown
+     * is delivered again.</p>
+     *
+     * <p>Defaults to {@code false}</p>.
+     *
+     * @return durable flag.
+     * @since 1.3
+     * @see JBusConfig#setJournalDirectory(java.io.File)
+     * */
+    boolean durable() default false;
+
+    /**
+     * Declares the filter key of the events the subscriber receives. An event is
+     * delivered to the subscriber only if its key, supplied by {@link Filterable} or else
+     * by the {@link JBusConfig#setFilterKeyExtractor(FilterKeyExtractor) key extractor}
+     * of the event bus, has the same string value. The subscribers are indexed by their
+     * filters, so a post only reaches the matching subscribers and the ones without any
+     * filter, however many filtered subscribers an event type has.
+     *
+     * <p>It can not be combined with {@link #batch()}.</p>
+     *
+     * <p>Defaults to {@code ""}, i.e. no filter</p>.
+     *
+     * @return the filter key.
+     * @since 1.3
+     * */
+    String filter() default "";
 }
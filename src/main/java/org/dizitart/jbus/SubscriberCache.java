@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static org.dizitart.jbus.ReflectionUtil.findSubscribedMethods;
+
+/**
+ * A cache of the subscriber methods of each listener class, along with their
+ * invokers. The class hierarchy of a listener is scanned only once, further
+ * registrations of the same class only bind the cached subscriber methods to
+ * the listener object.
+ *
+ * <p>On java 7+ the cache is backed by a {@link ClassValue}, which stores the
+ * subscriber methods along with the listener class itself, so that a cached
+ * class can still be unloaded. Otherwise it falls back to a weak map.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+abstract class SubscriberCache {
+    private final static Logger logger = LoggerFactory.getLogger(SubscriberCache.class);
+    private final static SubscriberCache instance = create();
+
+    /**
+     * Gets the unbound subscriber methods of the listener class. The returned
+     * array is shared and must neither be modified nor bound to a listener.
+     *
+     * @exception JBusException if any subscriber method is invalid.
+     * */
+    static ListenerMethod[] getSubscriberMethods(Class<?> listenerClass) {
+        return instance.get(listenerClass);
+    }
+
+    abstract ListenerMethod[] get(Class<?> listenerClass);
+
+    /**
+     * Scans the class hierarchy of the listener class. Overridden methods
+     * from the super classes are skipped.
+     * */
+    static ListenerMethod[] scan(Class<?> listenerClass) {
+        List<ListenerMethod> subscribedMethods = findSubscribedMethods(listenerClass);
+        List<ListenerMethod> listenerMethods = new ArrayList<ListenerMethod>(subscribedMethods.size());
+        for (ListenerMethod listenerMethod : subscribedMethods) {
+            if (!isOverridden(listenerMethod, listenerMethods)) {
+                listenerMethods.add(listenerMethod);
+            } else if (logger.isDebugEnabled()) {
+                logger.debug(listenerMethod.method + " is overridden in " + listenerClass.getName());
+            }
+        }
+        return listenerMethods.toArray(new ListenerMethod[listenerMethods.size()]);
+    }
+
+    /**
+     * Checks if a subscriber method has already been found in a sub class,
+     * same as {@link ListenerMethod#equals(Object)} does for the same listener.
+     * Private methods are never overridden.
+     * */
+    private static boolean isOverridden(ListenerMethod listenerMethod, List<ListenerMethod> found) {
+        for (ListenerMethod other : found) {
+            if (other.method.getName().equals(listenerMethod.method.getName())
+                    && other.method.getModifiers() != Modifier.PRIVATE
+                    && listenerMethod.method.getModifiers() != Modifier.PRIVATE
+                    && other.eventType.equals(listenerMethod.eventType)
+                    && other.async == listenerMethod.async) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SubscriberCache create() {
+        try {
+            Class.forName("java.lang.ClassValue");
+            return new ClassValueCache();
+        } catch (Throwable e) {
+            logger.debug("ClassValue is not available, subscriber methods will be cached in a weak map.");
+            return new WeakMapCache();
+        }
+    }
+
+    /**
+     * A cache backed by a {@link ClassValue}, used on java 7+.
+     * */
+    private static class ClassValueCache extends SubscriberCache {
+        private final ClassValue<ListenerMethod[]> cache = new ClassValue<ListenerMethod[]>() {
+            @Override
+            protected ListenerMethod[] computeValue(Class<?> type) {
+                return scan(type);
+            }
+        };
+
+        @Override
+        ListenerMethod[] get(Class<?> listenerClass) {
+            return cache.get(listenerClass);
+        }
+    }
+
+    /**
+     * A cache backed by a weak map. The subscriber methods refer to their
+     * class, hence they are softly referenced to not keep the class alive.
+     * */
+    private static class WeakMapCache extends SubscriberCache {
+        private final Map<Class<?>, SoftReference<ListenerMethod[]>> cache =
+                new WeakHashMap<Class<?>, SoftReference<ListenerMethod[]>>();
+
+        @Override
+        ListenerMethod[] get(Class<?> listenerClass) {
+            synchronized (cache) {
+                SoftReference<ListenerMethod[]> reference = cache.get(listenerClass);
+                ListenerMethod[] listenerMethods = reference != null ? reference.get() : null;
+                if (listenerMethods == null) {
+                    listenerMethods = scan(listenerClass);
+                    cache.put(listenerClass, new SoftReference<ListenerMethod[]>(listenerMethods));
+                }
+                return listenerMethods;
+            }
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * The journal offsets acknowledged by the durable subscribers. The offset
+ * of a subscriber is its low watermark, i.e. it has finished all durable
+ * events before it, so it only advances once all earlier deliveries to the
+ * subscriber have finished, whatever order they finish in.
+ *
+ * <p>The offsets are written in batches every checkpoint interval, to two
+ * files in turn, each with a sequence number and a CRC32. On opening, the
+ * valid file with the higher sequence number is read, so a write torn by a
+ * crash falls back to the previous checkpoint.</p>
+ *
+ * <p>Once written, the journal segments before the lowest offset of all
+ * subscribers, registered or not since the journal was opened, are removed.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see Subscribe#durable()
+ */
+class SubscriberCheckpoints {
+    private static final String FILE_PREFIX = "checkpoints.";
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final RandomAccessFile[] files = new RandomAccessFile[2];
+    private final long interval;
+    private final EventJournal journal;
+    private final ConcurrentMap<String, Checkpoint> checkpoints = new ConcurrentHashMap<String, Checkpoint>();
+    // offsets read on opening, kept until their subscriber registers again
+    private final Map<String, Long> loaded = new HashMap<String, Long>();
+    // lower bounds of the offsets of the durable posts not yet handed to their
+    // subscribers, along with the number of posts sharing them
+    private final TreeMap<Long, Integer> postsInProgress = new TreeMap<Long, Integer>();
+    private final Thread flusher;
+    // guarded by this
+    private long sequence;
+    private volatile boolean dirty;
+    private volatile boolean open = true;
+
+    SubscriberCheckpoints(File directory, long interval, EventJournal journal) {
+        this.interval = interval;
+        this.journal = journal;
+        try {
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new RandomAccessFile(new File(directory, FILE_PREFIX + i), "rw");
+            }
+            load();
+        } catch (IOException e) {
+            closeFiles();
+            logger.error("Could not open checkpoints in " + directory, e);
+            throw new JBusException("Could not open checkpoints in " + directory, e);
+        }
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushPeriodically();
+            }
+        }, "jbus-checkpoint");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Gets the checkpoint of a subscriber, starting a new one at the
+     * offset if the subscriber has never acknowledged any event.
+     * */
+    Checkpoint get(Method method, long offset) {
+        String id = method.getDeclaringClass().getName() + "#" + method.getName()
+                + "(" + method.getParameterTypes()[0].getName() + ")";
+        Checkpoint checkpoint = checkpoints.get(id);
+        if (checkpoint == null) {
+            synchronized (loaded) {
+                Long loadedOffset = loaded.get(id);
+                checkpoint = new Checkpoint(this, loadedOffset != null ? loadedOffset : offset);
+            }
+            Checkpoint existing = checkpoints.putIfAbsent(id, checkpoint);
+            if (existing != null) {
+                checkpoint = existing;
+            } else {
+                dirty = true;
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Marks a durable post as started before it is written to the journal, at a
+     * lower bound of its offset, so that no checkpoint passes it before it has
+     * been handed to its subscribers.
+     * */
+    void postStarted(long lowerBound) {
+        synchronized (postsInProgress) {
+            Integer count = postsInProgress.get(lowerBound);
+            postsInProgress.put(lowerBound, count == null ? 1 : count + 1);
+        }
+    }
+
+    void postFinished(long lowerBound) {
+        synchronized (postsInProgress) {
+            Integer count = postsInProgress.get(lowerBound);
+            if (count == null || count == 1) {
+                postsInProgress.remove(lowerBound);
+            } else {
+                postsInProgress.put(lowerBound, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoints if any of them has changed since the last write.
+     * */
+    synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        Map<String, Long> offsets;
+        synchronized (loaded) {
+            offsets = new HashMap<String, Long>(loaded);
+        }
+        Long firstInProgress;
+        synchronized (postsInProgress) {
+            firstInProgress = postsInProgress.isEmpty() ? null : postsInProgress.firstKey();
+        }
+        for (Map.Entry<String, Checkpoint> entry : checkpoints.entrySet()) {
+            offsets.put(entry.getKey(), entry.getValue().commit(firstInProgress));
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeLong(++sequence);
+            output.writeInt(offsets.size());
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue());
+            }
+            output.close();
+            byte[] data = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            ByteBuffer buffer = ByteBuffer.allocate(8 + data.length);
+            buffer.putInt(data.length).putInt((int) crc.getValue()).put(data).flip();
+            // the other file keeps the previous checkpoint, should this write be torn
+            FileChannel channel = files[(int) (sequence & 1)].getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            dirty = true;
+            logger.error("Could not write checkpoints", e);
+            return;
+        }
+
+        // no subscriber needs the events before the lowest offset any more
+        if (!offsets.isEmpty()) {
+            journal.retain(Collections.min(offsets.values()));
+        }
+    }
+
+    /**
+     * Writes the checkpoints a last time and closes the files.
+     * */
+    void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        flusher.interrupt();
+        flush();
+        closeFiles();
+    }
+
+    private void flushPeriodically() {
+        while (open) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush();
+        }
+        logger.debug("Checkpoint flusher stopped.");
+    }
+
+    private void load() throws IOException {
+        Map<String, Long> latest = null;
+        for (RandomAccessFile file : files) {
+            byte[] data = read(file);
+            if (data == null) {
+                continue;
+            }
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+            long fileSequence = input.readLong();
+            if (latest != null && fileSequence <= sequence) {
+                continue;
+            }
+            Map<String, Long> offsets = new HashMap<String, Long>();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                offsets.put(input.readUTF(), input.readLong());
+            }
+            latest = offsets;
+            sequence = fileSequence;
+        }
+        if (latest != null) {
+            loaded.putAll(latest);
+        }
+    }
+
+    /**
+     * Reads the data of a checkpoint file, or returns {@code null} if it is empty or torn.
+     * */
+    private static byte[] read(RandomAccessFile file) throws IOException {
+        if (file.length() < 8) {
+            return null;
+        }
+        file.seek(0);
+        int length = file.readInt();
+        int checksum = file.readInt();
+        if (length < 0 || length > file.length() - 8) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        file.readFully(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue() == checksum ? data : null;
+    }
+
+    private void closeFiles() {
+        for (RandomAccessFile file : files) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    logger.error("Could not close checkpoint file", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The acknowledgements of a subscriber, shared by all of its registrations.
+     * An event is in flight until each registration it has been handed to has
+     * finished it, so every delivery of an offset is counted.
+     * */
+    static class Checkpoint {
+        private final SubscriberCheckpoints owner;
+        // guarded by this, offsets in flight with the number of their deliveries
+        private final TreeMap<Long, Integer> inFlight = new TreeMap<Long, Integer>();
+        private long acknowledged;
+        private long committed;
+        // the lowest offset discarded to be redelivered, never passed by a commit
+        private long redeliverFrom = Long.MAX_VALUE;
+
+        private Checkpoint(SubscriberCheckpoints owner, long offset) {
+            this.owner = owner;
+            this.acknowledged = offset;
+            this.committed = offset;
+        }
+
+        /**
+         * Marks a durable event as handed to the subscriber.
+         * */
+        synchronized void dispatched(long offset) {
+            Integer deliveries = inFlight.get(offset);
+            inFlight.put(offset, deliveries == null ? 1 : deliveries + 1);
+        }
+
+        /**
+         * Marks a durable event as finished by the subscriber.
+         * */
+        void acknowledge(long offset, long nextOffset) {
+            synchronized (this) {
+                finished(offset);
+                if (nextOffset > acknowledged) {
+                    acknowledged = nextOffset;
+                }
+            }
+            owner.dirty = true;
+        }
+
+        /**
+         * Marks a durable event handed to the subscriber as never delivered. If it
+         * is to be {@code redelivered}, no later commit passes it, otherwise it is
+         * skipped like an acknowledged one.
+         * */
+        void discard(long offset, boolean redelivered) {
+            synchronized (this) {
+                finished(offset);
+                if (redelivered && offset < redeliverFrom) {
+                    redeliverFrom = offset;
+                }
+            }
+            owner.dirty = true;
+        }
+
+        private void finished(long offset) {
+            Integer deliveries = inFlight.get(offset);
+            if (deliveries == null || deliveries == 1) {
+                inFlight.remove(offset);
+            } else {
+                inFlight.put(offset, deliveries - 1);
+            }
+        }
+
+        /**
+         * Gets the offset from which the subscriber has not finished all events.
+         * */
+        synchronized long getCommitted() {
+            return committed;
+        }
+
+        /**
+         * Advances the low watermark, which never passes an event in
+         * flight, or a post not yet handed to the subscriber.
+         * */
+        private synchronized long commit(Long firstInProgress) {
+            long watermark = inFlight.isEmpty() ? acknowledged : inFlight.firstKey();
+            if (firstInProgress != null && firstInProgress < watermark) {
+                watermark = firstInProgress;
+            }
+            watermark = Math.min(watermark, redeliverFrom);
+            if (watermark > committed) {
+                committed = watermark;
+            }
+            return committed;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * An index of the subscriber methods declared in a listener class, generated at
+ * build time by the {@code jbus-processor} annotation processor.
+ *
+ * <p>The index of a listener class {@code com.example.Listener} is the class
+ * {@code com.example.Listener$$JBusIndex}. If it is found during registration,
+ * the runtime uses it instead of scanning the declared methods of the class,
+ * and invokes the subscriber methods via the generated code instead of reflection.
+ * Each class in the hierarchy of a listener has its own index, a class without
+ * one is scanned as usual.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see IndexedSubscriber
+ */
+public interface SubscriberIndex {
+    /**
+     * The suffix of the name of a generated index class.
+     * */
+    String INDEX_SUFFIX = "$$JBusIndex";
+
+    /**
+     * Gets the subscriber methods declared in the indexed class.
+     *
+     * @return the subscriber methods.
+     * */
+    IndexedSubscriber[] getSubscribers();
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+/**
+ * The rules a {@link Subscribe} declaration must follow. They are checked by the
+ * runtime on registration and by the annotation processor at compile time, from
+ * this single place so that both always agree. Not meant to be used by applications.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+public final class SubscriberRules {
+    private SubscriberRules() {
+    }
+
+    /**
+     * Checks the declaration of a subscriber method.
+     *
+     * @param subscribe the annotation of the method.
+     * @param parameterCount the number of parameters of the method.
+     * @param arrayParameter if its parameter is an array or varargs.
+     * @return the reason the declaration is invalid, completing the sentence
+     * "... has @Subscribe annotation, but", or {@code null} if it is valid.
+     * */
+    public static String check(Subscribe subscribe, int parameterCount, boolean arrayParameter) {
+        if (parameterCount != 1) {
+            return "it should have exactly 1 parameter.";
+        }
+        if (arrayParameter) {
+            return "its parameter should not be an array or varargs.";
+        }
+        if (subscribe.queueCapacity() < 0) {
+            return "its queue capacity is negative.";
+        }
+        if (subscribe.serial() && !subscribe.conflate() && subscribe.queueCapacity() > 0
+                && subscribe.overflowPolicy() != OverflowPolicy.BLOCK
+                && subscribe.overflowPolicy() != OverflowPolicy.DROP_NEWEST) {
+            return "a serial subscriber can only block or drop the newest event when its queue is full.";
+        }
+        if (subscribe.conflate() && subscribe.batch()) {
+            return "a batch subscriber can not conflate.";
+        }
+        if (subscribe.batchSize() < 0 || subscribe.maxDelay() < 0
+                || subscribe.debounce() < 0 || subscribe.throttle() < 0) {
+            return "its batch size, max delay, debounce or throttle is negative.";
+        }
+        if (!subscribe.batch() && (subscribe.batchSize() > 0 || subscribe.maxDelay() > 0)) {
+            return "only a batch subscriber can have a batch size or max delay.";
+        }
+        if ((subscribe.debounce() > 0 || subscribe.throttle() > 0)
+                && (subscribe.batch() || (subscribe.debounce() > 0 && subscribe.throttle() > 0))) {
+            return "debounce and throttle can not be combined with each other or with batch.";
+        }
+        if (subscribe.durable() && (!subscribe.async() || subscribe.batch() || subscribe.conflate()
+                || subscribe.debounce() > 0 || subscribe.throttle() > 0)) {
+            return "a durable subscriber must be async, and can not batch, conflate, debounce or throttle.";
+        }
+        if (!subscribe.filter().isEmpty() && subscribe.batch()) {
+            return "a filter can not be combined with batch.";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects the subscribers running longer than the slow subscriber threshold.
+ * Each thread invoking subscribers publishes its in-flight invocations in a
+ * stack of reusable frames, and the timer thread periodically scans them. A
+ * slow invocation is reported once, with a sample of the stack of its thread,
+ * via a {@link SlowSubscriberEvent}. Once a subscriber has been slow for the
+ * configured number of times, the {@link SlowSubscriberPolicy} is applied to it.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class SubscriberWatchdog {
+    private static final long MIN_SCAN_INTERVAL = 10;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final EventDispatcher eventDispatcher;
+    private final TimerWheel timerWheel;
+    private final long thresholdNanos;
+    private final long scanInterval;
+    private final SlowSubscriberPolicy policy;
+    private final int strikes;
+
+    // in-flight invocations of all threads which have ever invoked a subscriber
+    private final Queue<InFlight> threads = new ConcurrentLinkedQueue<InFlight>();
+    private final ThreadLocal<InFlight> inFlight = new ThreadLocal<InFlight>() {
+        @Override
+        protected InFlight initialValue() {
+            InFlight inFlight = new InFlight(Thread.currentThread());
+            threads.offer(inFlight);
+            return inFlight;
+        }
+    };
+    private final Runnable scanTask = new Runnable() {
+        @Override
+        public void run() {
+            scan();
+        }
+    };
+    private volatile boolean running = true;
+
+    SubscriberWatchdog(EventDispatcher eventDispatcher, TimerWheel timerWheel, long thresholdMillis,
+                       SlowSubscriberPolicy policy, int strikes) {
+        this.eventDispatcher = eventDispatcher;
+        this.timerWheel = timerWheel;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.scanInterval = Math.max(thresholdMillis / 4, MIN_SCAN_INTERVAL);
+        this.policy = policy;
+        this.strikes = strikes;
+        timerWheel.schedule(scanTask, scanInterval);
+    }
+
+    /**
+     * Marks the start of an invocation in the current thread.
+     *
+     * @return the in-flight invocations of the current thread, to end the invocation.
+     * */
+    InFlight begin(ListenerMethod listenerMethod, Object event) {
+        InFlight current = inFlight.get();
+        current.push(listenerMethod, event);
+        return current;
+    }
+
+    /**
+     * Stops scanning the in-flight invocations.
+     * */
+    void stop() {
+        running = false;
+    }
+
+    private void scan() {
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<InFlight> iterator = threads.iterator();
+        while (iterator.hasNext()) {
+            InFlight current = iterator.next();
+            if (!current.thread.isAlive()) {
+                iterator.remove();
+                continue;
+            }
+
+            // the deepest slow invocation is the culprit, the ones
+            // below it are only waiting for it to return.
+            Frame[] frames = current.frames;
+            for (int i = Math.min(current.depth, frames.length) - 1; i >= 0; i--) {
+                Frame frame = frames[i];
+                long start = frame.start;
+                if (now - start >= thresholdNanos) {
+                    if (frame.reported != start) {
+                        frame.reported = start;
+                        report(current.thread, frame, now - start);
+                    }
+                    break;
+                }
+            }
+        }
+        timerWheel.schedule(scanTask, scanInterval);
+    }
+
+    private void report(Thread thread, Frame frame, long elapsedNanos) {
+        ListenerMethod listenerMethod = frame.listenerMethod;
+        Object event = frame.event;
+        // the frame has been reused meanwhile, or a diagnostic subscriber is slow itself
+        if (listenerMethod == null || event instanceof SlowSubscriberEvent) {
+            return;
+        }
+
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        // only the timer thread counts the slow invocations
+        int slowInvocations = ++listenerMethod.slowInvocations;
+        SlowSubscriberPolicy appliedPolicy = SlowSubscriberPolicy.REPORT;
+        if (slowInvocations == strikes && apply(listenerMethod)) {
+            appliedPolicy = policy;
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        logger.warn(listenerMethod + " has been running for " + elapsedMillis + "ms in "
+                + thread.getName() + ", slow invocations = " + slowInvocations
+                + ", applied policy = " + appliedPolicy);
+
+        Object listener = listenerMethod.holdWeakReference
+                ? listenerMethod.weakListener.get() : listenerMethod.target;
+        eventDispatcher.dispatchDiagnostic(new SlowSubscriberEvent(listener, event,
+                listenerMethod.method, thread.getName(), elapsedMillis, stackTrace,
+                slowInvocations, appliedPolicy));
+    }
+
+    private boolean apply(ListenerMethod listenerMethod) {
+        switch (policy) {
+            case DEMOTE:
+                // a time based subscriber is never invoked from the dispatch loop
+                if (listenerMethod.async || listenerMethod.windowed) {
+                    return false;
+                }
+                listenerMethod.async = true;
+                logger.warn(listenerMethod + " has been demoted to asynchronous.");
+                return true;
+            case QUARANTINE:
+                listenerMethod.registry.quarantine(listenerMethod);
+                logger.warn(listenerMethod + " has been quarantined.");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The in-flight invocations of a thread, innermost last. Only the owner
+     * thread modifies it, the frames are reused so that an invocation does
+     * not allocate.
+     * */
+    static class InFlight {
+        private final Thread thread;
+        private volatile Frame[] frames = new Frame[4];
+        private volatile int depth;
+
+        private InFlight(Thread thread) {
+            this.thread = thread;
+        }
+
+        private void push(ListenerMethod listenerMethod, Object event) {
+            int index = depth;
+            Frame[] current = frames;
+            if (index == current.length) {
+                current = Arrays.copyOf(current, index * 2);
+                frames = current;
+            }
+            Frame frame = current[index];
+            if (frame == null) {
+                frame = new Frame();
+                current[index] = frame;
+            }
+            frame.listenerMethod = listenerMethod;
+            frame.event = event;
+            frame.start = System.nanoTime();
+            depth = index + 1;
+        }
+
+        /**
+         * Marks the end of the innermost invocation.
+         * */
+        void end() {
+            int index = depth - 1;
+            depth = index;
+            Frame frame = frames[index];
+            // do not hold on to the event
+            frame.listenerMethod = null;
+            frame.event = null;
+        }
+    }
+
+    private static class Frame {
+        private volatile ListenerMethod listenerMethod;
+        private volatile Object event;
+        private volatile long start;
+        // start of the last reported invocation, only used by the timer thread
+        private long reported;
+    }
+}
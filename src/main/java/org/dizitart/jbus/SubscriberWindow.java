@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import java.util.List;
+
+/**
+ * Holds back the events to a time based subscriber until its window closes,
+ * and then delivers them via {@link EventDispatcher#deliverWindowed(Object, ListenerMethod, boolean)}.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see TimerWheel
+ */
+abstract class SubscriberWindow {
+    final EventDispatcher eventDispatcher;
+    final TimerWheel timerWheel;
+    final ListenerMethod listenerMethod;
+
+    SubscriberWindow(EventDispatcher eventDispatcher, TimerWheel timerWheel, ListenerMethod listenerMethod) {
+        this.eventDispatcher = eventDispatcher;
+        this.timerWheel = timerWheel;
+        this.listenerMethod = listenerMethod;
+    }
+
+    /**
+     * Creates the window for the subscriber, according to its {@link Subscribe} declaration.
+     * */
+    static SubscriberWindow create(EventDispatcher eventDispatcher, TimerWheel timerWheel,
+                                   ListenerMethod listenerMethod) {
+        if (listenerMethod.debounce > 0) {
+            return new DebounceWindow(eventDispatcher, timerWheel, listenerMethod);
+        } else if (listenerMethod.throttle > 0) {
+            return new ThrottleWindow(eventDispatcher, timerWheel, listenerMethod);
+        }
+        return new BatchWindow(eventDispatcher, timerWheel, listenerMethod);
+    }
+
+    /**
+     * Adds an event to the window.
+     * */
+    abstract void offer(Object event);
+
+    /**
+     * Delivers the events held back by the window right away, in the executor.
+     * */
+    abstract void release();
+
+    /**
+     * Adds a batch of events to the window.
+     * */
+    void offerAll(List<?> events) {
+        for (Object event : events) {
+            offer(event);
+        }
+    }
+
+    static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+}
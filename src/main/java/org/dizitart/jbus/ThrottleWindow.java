@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+/**
+ * Delivers at most one event per {@link Subscribe#throttle()} milliseconds
+ * to a subscriber. The first event is delivered right away, the latest event
+ * posted during the interval is delivered once the interval is over, any
+ * other event is dropped.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class ThrottleWindow extends SubscriberWindow {
+    // guarded by this
+    private Object pending;
+    private long nextAllowed;
+    private boolean scheduled;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ThrottleWindow(EventDispatcher eventDispatcher, TimerWheel timerWheel, ListenerMethod listenerMethod) {
+        super(eventDispatcher, timerWheel, listenerMethod);
+    }
+
+    @Override
+    void offer(Object event) {
+        synchronized (this) {
+            long now = now();
+            if (scheduled || now < nextAllowed) {
+                // hold the latest one until the interval is over
+                pending = event;
+                if (!scheduled) {
+                    scheduled = true;
+                    timerWheel.schedule(flush, nextAllowed - now);
+                }
+                return;
+            }
+            nextAllowed = now + listenerMethod.throttle;
+        }
+        eventDispatcher.deliverWindowed(event, listenerMethod, false);
+    }
+
+    @Override
+    void release() {
+        Object event;
+        synchronized (this) {
+            // the pending timeout finds nothing to deliver
+            event = pending;
+            pending = null;
+        }
+        if (event != null) {
+            eventDispatcher.deliverWindowed(event, listenerMethod, true);
+        }
+    }
+
+    private void flush() {
+        Object event;
+        synchronized (this) {
+            event = pending;
+            pending = null;
+            scheduled = false;
+            nextAllowed = now() + listenerMethod.throttle;
+        }
+        if (event != null) {
+            eventDispatcher.deliverWindowed(event, listenerMethod, true);
+        }
+    }
+}
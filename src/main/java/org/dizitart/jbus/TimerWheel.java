@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel shared by all time based subscribers of an event bus.
+ * A single daemon thread advances the wheel every tick and runs the expired
+ * tasks, instead of a scheduled task per subscriber. A timeout fires within
+ * one tick after its delay.
+ *
+ * <p>The tasks run on the timer thread, so they must be short, e.g. hand
+ * the actual delivery over to an executor.</p>
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ */
+class TimerWheel {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    // buckets are only touched by the timer thread
+    private final Bucket[] wheel;
+    // timeouts scheduled since the last tick
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    TimerWheel() {
+        wheel = new Bucket[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+        startTime = System.nanoTime();
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "jbus-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules a task to run on the timer thread after the delay.
+     * */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime
+                + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0)));
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. Pending timeouts never fire.
+     * */
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private void work() {
+        long tick = 0;
+        while (running) {
+            long deadline = TICK_NANOS * (tick + 1);
+            long sleep;
+            while (running && (sleep = deadline - (System.nanoTime() - startTime)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (!running) {
+                break;
+            }
+
+            transferScheduled(tick);
+            expire(wheel[(int) (tick & (WHEEL_SIZE - 1))], deadline);
+            tick++;
+        }
+        logger.debug("Timer wheel stopped.");
+    }
+
+    /**
+     * Moves the newly scheduled timeouts into their buckets.
+     * */
+    private void transferScheduled(long currentTick) {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long ticks = timeout.deadline / TICK_NANOS;
+            // a timeout already due runs on the current tick
+            long tick = Math.max(ticks, currentTick);
+            timeout.rounds = (tick - currentTick) / WHEEL_SIZE;
+            wheel[(int) (tick & (WHEEL_SIZE - 1))].timeouts.add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket, long deadline) {
+        Iterator<Timeout> iterator = bucket.timeouts.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Throwable e) {
+                    logger.error("Error occurred while running timer task " + timeout.task, e);
+                }
+            } else {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    /**
+     * The timeouts expiring on the same tick of a turn of the wheel.
+     * */
+    private static class Bucket {
+        final LinkedList<Timeout> timeouts = new LinkedList<Timeout>();
+    }
+
+    /**
+     * A scheduled task, which can be cancelled until it runs.
+     * */
+    static class Timeout {
+        final Runnable task;
+        // nanos since the start of the wheel
+        final long deadline;
+        // full turns of the wheel left, only used by the timer thread
+        long rounds;
+        volatile boolean cancelled;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how the threads of a ring buffer wait, a consumer for new
+ * events and a publisher for a free slot. It trades latency against cpu usage.
+ *
+ * @since 1.3
+ * @author Anindya Chatterjee.
+ * @see JBusConfig#setWaitStrategy(WaitStrategy)
+ */
+public enum WaitStrategy {
+    /**
+     * Spins in a tight loop. It gives the lowest latency, but keeps a
+     * cpu core busy all the time for each consumer.
+     * */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+        }
+    },
+
+    /**
+     * Spins for a while and then yields the cpu to other threads.
+     * */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt > SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins for a while, then yields and finally parks the thread for a
+     * short period. It uses the least cpu, at the cost of latency.
+     * */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt > 2 * SPIN_TRIES) {
+                LockSupport.parkNanos(PARK_NANOS);
+            } else if (attempt > SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 100000L;
+
+    /**
+     * Waits once. {@code attempt} is the number of consecutive
+     * waits so far without any progress.
+     * */
+    abstract void idle(int attempt);
+}
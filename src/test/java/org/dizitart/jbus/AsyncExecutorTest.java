@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class AsyncExecutorTest {
+
+    @Test
+    public void testCustomExecutor() throws InterruptedException {
+        ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "custom-executor");
+            }
+        });
+
+        Listener listener = postAndAwait(executorService, 10);
+        assertEquals(listener.threadName, "custom-executor");
+
+        // a supplied executor is not shut down by the bus
+        assertFalse(executorService.isShutdown());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testBoundedThreadPool() throws InterruptedException {
+        ExecutorService executorService = AsyncExecutors.boundedThreadPool(2, 4);
+        // events beyond the queue capacity run in the caller, none is lost
+        Listener listener = postAndAwait(executorService, 100);
+        assertEquals(listener.latch.getCount(), 0);
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testBoundedThreadPoolRejectsOnceShutdown() {
+        ExecutorService executorService = AsyncExecutors.boundedThreadPool(1, 1);
+        JBusConfig config = new JBusConfig();
+        config.setExecutorService(executorService);
+        JBus jBus = new JBus(config);
+        Listener listener = new Listener(1);
+        jBus.register(listener);
+
+        executorService.shutdown();
+        try {
+            jBus.post(new Event());
+            fail("post to a shut down executor should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // the rejected delivery is not left pending
+        assertTrue(jBus.drain(0, TimeUnit.SECONDS));
+        assertEquals(listener.latch.getCount(), 1);
+    }
+
+    @Test
+    public void testForkJoinPool() throws InterruptedException {
+        ExecutorService executorService = AsyncExecutors.forkJoinPool(4);
+        Listener listener = postAndAwait(executorService, 100);
+        assertTrue(listener.threadName.contains("ForkJoinPool"));
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadPerTask() throws InterruptedException {
+        assumeTrue(AsyncExecutors.isVirtualThreadSupported());
+        ExecutorService executorService = AsyncExecutors.virtualThreadPerTask();
+        postAndAwait(executorService, 100);
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadFallback() throws InterruptedException {
+        assumeTrue(!AsyncExecutors.isVirtualThreadSupported());
+        // falls back to platform threads instead of failing
+        ExecutorService executorService = AsyncExecutors.virtualThreadPerTask();
+        postAndAwait(executorService, 100);
+        executorService.shutdown();
+    }
+
+    private Listener postAndAwait(ExecutorService executorService, int events) throws InterruptedException {
+        JBusConfig config = new JBusConfig();
+        config.setExecutorService(executorService);
+        JBus jBus = new JBus(config);
+
+        Listener listener = new Listener(events);
+        jBus.register(listener);
+        for (int i = 0; i < events; i++) {
+            jBus.post(new Event());
+        }
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        return listener;
+    }
+
+    private class Event {}
+
+    private class Listener {
+        final CountDownLatch latch;
+        volatile String threadName;
+
+        Listener(int events) {
+            latch = new CountDownLatch(events);
+        }
+
+        @Subscribe(async = true)
+        public void listen(Event event) {
+            threadName = Thread.currentThread().getName();
+            latch.countDown();
+        }
+    }
+}
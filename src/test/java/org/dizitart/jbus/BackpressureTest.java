@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class BackpressureTest {
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        JBus jBus = createBus(2, OverflowPolicy.DROP_NEWEST);
+        GatedListener listener = new GatedListener();
+        jBus.register(listener);
+
+        postWhileBlocked(jBus, listener, 5);
+        assertEquals(listener.received(3), Arrays.asList(1, 2, 3));
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.DROP_NEWEST), 2);
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        JBus jBus = createBus(2, OverflowPolicy.DROP_OLDEST);
+        GatedListener listener = new GatedListener();
+        jBus.register(listener);
+
+        postWhileBlocked(jBus, listener, 5);
+        assertEquals(listener.received(3), Arrays.asList(1, 4, 5));
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.DROP_OLDEST), 2);
+    }
+
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        JBus jBus = createBus(0, OverflowPolicy.BLOCK);
+        CoalescingListener listener = new CoalescingListener();
+        jBus.register(listener);
+
+        postWhileBlocked(jBus, listener, 5);
+        assertEquals(listener.received(2), Arrays.asList(1, 5));
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.COALESCE), 3);
+    }
+
+    @Test
+    public void testCallerRuns() throws InterruptedException {
+        JBus jBus = createBus(1, OverflowPolicy.CALLER_RUNS);
+        GatedListener listener = new GatedListener();
+        jBus.register(listener);
+
+        postWhileBlocked(jBus, listener, 3);
+        assertEquals(listener.callerThreadEvents, Collections.singletonList(3));
+        assertEquals(listener.received(3).size(), 3);
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.CALLER_RUNS), 1);
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        final JBus jBus = createBus(1, OverflowPolicy.BLOCK);
+        GatedListener listener = new GatedListener();
+        jBus.register(listener);
+
+        jBus.post(new Event(1));
+        assertTrue(listener.entered.await(5, TimeUnit.SECONDS));
+        jBus.post(new Event(2));
+
+        final CountDownLatch posted = new CountDownLatch(1);
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                jBus.post(new Event(3));
+                posted.countDown();
+            }
+        });
+        publisher.start();
+
+        // the publisher is blocked as long as the subscriber is
+        assertFalse(posted.await(200, TimeUnit.MILLISECONDS));
+        listener.gate.countDown();
+        assertTrue(posted.await(5, TimeUnit.SECONDS));
+        assertEquals(listener.received(3), Arrays.asList(1, 2, 3));
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.BLOCK), 1);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testNegativeCapacity() {
+        createBus(0, OverflowPolicy.BLOCK).register(new InvalidListener());
+    }
+
+    private JBus createBus(int capacity, OverflowPolicy overflowPolicy) {
+        JBusConfig config = new JBusConfig();
+        config.setExecutorService(executorService);
+        config.setAsyncQueueCapacity(capacity);
+        config.setOverflowPolicy(overflowPolicy);
+        config.setAsyncConcurrency(1);
+        return new JBus(config);
+    }
+
+    /**
+     * Posts events while the subscriber is blocked on the first one.
+     * */
+    private void postWhileBlocked(JBus jBus, Gate listener, int events) throws InterruptedException {
+        jBus.post(new Event(1));
+        assertTrue(listener.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= events; i++) {
+            jBus.post(new Event(i));
+        }
+        listener.gate.countDown();
+    }
+
+    private class Event {
+        final int id;
+
+        Event(int id) {
+            this.id = id;
+        }
+    }
+
+    private abstract class Gate {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> callerThreadEvents = new ArrayList<Integer>();
+        final Thread caller = Thread.currentThread();
+
+        void handle(Event event) throws InterruptedException {
+            if (Thread.currentThread() == caller) {
+                callerThreadEvents.add(event.id);
+            } else if (event.id == 1) {
+                entered.countDown();
+                gate.await();
+            }
+            events.add(event.id);
+        }
+
+        List<Integer> received(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // give a dropped event the chance to show up, if any
+            Thread.sleep(100);
+            synchronized (events) {
+                List<Integer> sorted = new ArrayList<Integer>(events);
+                Collections.sort(sorted);
+                return sorted;
+            }
+        }
+    }
+
+    private class GatedListener extends Gate {
+        @Subscribe(async = true)
+        public void listen(Event event) throws InterruptedException {
+            handle(event);
+        }
+    }
+
+    private class CoalescingListener extends Gate {
+        @Subscribe(async = true, queueCapacity = 1, overflowPolicy = OverflowPolicy.COALESCE)
+        public void coalesce(Event event) throws InterruptedException {
+            handle(event);
+        }
+    }
+
+    private class InvalidListener {
+        @Subscribe(async = true, queueCapacity = -1)
+        public void listen(Event event) {
+        }
+    }
+}
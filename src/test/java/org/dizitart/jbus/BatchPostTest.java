@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class BatchPostTest {
+    private JBus jBus;
+
+    @Before
+    public void setUp() {
+        jBus = new JBus();
+    }
+
+    @Test
+    public void testPostAll() {
+        Listener listener = new Listener();
+        jBus.register(listener);
+
+        jBus.postAll(new Event(1), new OtherEvent(2), new Event(3));
+        assertEquals(listener.events, Arrays.asList(1, 2, 3));
+
+        jBus.postAll(Arrays.asList(new Event(4), new Event(5)));
+        assertEquals(listener.events, Arrays.asList(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    public void testBatchSubscriber() {
+        BatchListener listener = new BatchListener();
+        jBus.register(listener);
+
+        jBus.postAll(new Event(1), new OtherEvent(2), new Event(3), new Event(4));
+        assertEquals(listener.batches.size(), 1);
+        assertEquals(ids(listener.batches.get(0)), Arrays.asList(1, 3, 4));
+
+        // single post is delivered as a batch of one
+        jBus.post(new Event(5));
+        assertEquals(listener.batches.size(), 2);
+        assertEquals(ids(listener.batches.get(1)), Arrays.asList(5));
+
+        // batch subscriber does not get any event of other classes
+        jBus.postAll(new OtherEvent(6));
+        assertEquals(listener.batches.size(), 2);
+    }
+
+    @Test
+    public void testMixedSubscribers() {
+        Listener listener = new Listener();
+        BatchListener batchListener = new BatchListener();
+        jBus.register(listener);
+        jBus.register(batchListener);
+
+        jBus.postAll(new Event(1), new Event(2));
+        assertEquals(listener.events, Arrays.asList(1, 2));
+        assertEquals(batchListener.batches.size(), 1);
+        assertEquals(ids(batchListener.batches.get(0)), Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void testAsyncBatchSubscriber() throws InterruptedException {
+        AsyncBatchListener listener = new AsyncBatchListener();
+        jBus.register(listener);
+
+        jBus.postAll(new Event(1), new Event(2), new Event(3));
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(ids(listener.batch), Arrays.asList(1, 2, 3));
+    }
+
+    @Test(expected = JBusException.class)
+    public void testInvalidBatchSubscriber() {
+        jBus.register(new Object() {
+            @Subscribe(batch = true)
+            public void listen(Event event) {
+            }
+        });
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullEventInBatch() {
+        Listener listener = new Listener();
+        jBus.register(listener);
+        try {
+            jBus.postAll(new Event(1), null);
+        } finally {
+            // nothing is posted from an invalid batch
+            assertTrue(listener.events.isEmpty());
+        }
+    }
+
+    private List<Integer> ids(List<? extends Event> events) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Event event : events) {
+            ids.add(event.id);
+        }
+        return ids;
+    }
+
+    private class Event {
+        final int id;
+
+        Event(int id) {
+            this.id = id;
+        }
+    }
+
+    private class OtherEvent extends Event {
+        OtherEvent(int id) {
+            super(id);
+        }
+    }
+
+    private class Listener {
+        final List<Integer> events = new ArrayList<Integer>();
+
+        @Subscribe
+        public void listen(Event event) {
+            events.add(event.id);
+        }
+
+        @Subscribe
+        public void listen(OtherEvent event) {
+            events.add(event.id);
+        }
+    }
+
+    private class BatchListener {
+        final List<List<Event>> batches = new ArrayList<List<Event>>();
+
+        @Subscribe(batch = true)
+        public void listen(List<Event> events) {
+            batches.add(events);
+        }
+    }
+
+    private class AsyncBatchListener {
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile List<Event> batch;
+
+        @Subscribe(async = true, batch = true)
+        public void listen(List<Event> events) {
+            batch = events;
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class ChannelTest {
+
+    @Test
+    public void testChannelsIsolated() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.register(new NamedListener("bus", received));
+        jBus.channel("orders.eu").register(new NamedListener("eu", received));
+        jBus.channel("orders.us").register(new NamedListener("us", received));
+
+        jBus.post("1");
+        jBus.channel("orders.eu").post("2");
+        jBus.channel("orders.us").post("3");
+        jBus.channel("payments").post("4");
+        assertEquals(received, Arrays.asList("bus:1", "eu:2", "us:3"));
+    }
+
+    @Test
+    public void testSameChannelReturned() {
+        JBus jBus = new JBus();
+        assertSame(jBus.channel("orders"), jBus.channel("orders"));
+        assertEquals(jBus.channel("orders").getName(), "orders");
+        assertFalse(jBus.channel("orders").isPattern());
+        assertTrue(jBus.channel("orders.*").isPattern());
+    }
+
+    @Test
+    public void testWildcardSubscriptions() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.channel("orders.*").register(new NamedListener("orders.*", received));
+        jBus.channel("#").register(new NamedListener("#", received));
+        jBus.channel("orders.#.retail").register(new NamedListener("orders.#.retail", received));
+
+        jBus.channel("orders.eu").post("1");
+        assertEquals(received, Arrays.asList("orders.*:1", "#:1"));
+
+        received.clear();
+        jBus.channel("orders.eu.retail").post("2");
+        jBus.channel("orders.retail").post("3");
+        jBus.channel("payments").post("4");
+        assertEquals(received, Arrays.asList("#:2", "orders.#.retail:2", "orders.*:3", "#:3",
+                "orders.#.retail:3", "#:4"));
+    }
+
+    @Test
+    public void testRoutingUpdatedForNewPattern() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.channel("orders.eu").register(new NamedListener("eu", received));
+        jBus.channel("orders.eu").post("1");
+
+        jBus.channel("orders.*").register(new NamedListener("orders.*", received));
+        jBus.channel("orders.eu").post("2");
+        assertEquals(received, Arrays.asList("eu:1", "eu:2", "orders.*:2"));
+    }
+
+    @Test
+    public void testPriorityAcrossPartitions() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.channel("orders.eu").register(new NamedListener("eu", received));
+        jBus.channel("orders.*").register(new UrgentListener(received));
+
+        jBus.channel("orders.eu").post("1");
+        assertEquals(received, Arrays.asList("urgent:1", "eu:1"));
+    }
+
+    @Test
+    public void testDeregister() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        NamedListener listener = new NamedListener("eu", received);
+        jBus.channel("orders.eu").register(listener);
+        jBus.channel("orders.eu").deregister(listener);
+
+        jBus.channel("orders.eu").post("1");
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testAsyncDeliveriesShareBusResources() {
+        JBus jBus = new JBus();
+        List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        jBus.channel("orders.eu").register(new AsyncListener(received));
+        for (int i = 0; i < 10; i++) {
+            jBus.channel("orders.eu").post(String.valueOf(i));
+        }
+        assertEquals(jBus.shutdown(5, TimeUnit.SECONDS), 0);
+        assertEquals(received.size(), 10);
+    }
+
+    @Test
+    public void testMergedSubscribersCached() {
+        List<String> received = new ArrayList<String>();
+        ListenersRegistry channel = new ListenersRegistry(false);
+        ListenersRegistry pattern = new ListenersRegistry(false);
+        channel.register(new NamedListener("eu", received), false);
+        pattern.register(new NamedListener("orders.*", received), false);
+        ChannelRoute route = new ChannelRoute(new ListenersRegistry[] { channel, pattern });
+
+        ListenerMethod[] merged = route.getSubscribers("1");
+        assertEquals(merged.length, 2);
+        assertSame(route.getSubscribers("2"), merged);
+
+        pattern.register(new UrgentListener(received), false);
+        ListenerMethod[] updated = route.getSubscribers("3");
+        assertNotSame(updated, merged);
+        assertEquals(updated.length, 3);
+        assertEquals(updated[0].priority, 10);
+    }
+
+    @Test
+    public void testClose() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        Channel channel = jBus.channel("orders.eu");
+        channel.register(new NamedListener("eu", received));
+        channel.post("1");
+        channel.close();
+        assertTrue(channel.isClosed());
+
+        try {
+            channel.post("2");
+            fail("post to a closed channel should be rejected");
+        } catch (JBusException e) {
+            // expected
+        }
+        try {
+            channel.register(new NamedListener("eu", received));
+            fail("register to a closed channel should be rejected");
+        } catch (JBusException e) {
+            // expected
+        }
+
+        Channel reopened = jBus.channel("orders.eu");
+        assertNotSame(reopened, channel);
+        reopened.post("3");
+        assertEquals(received, Collections.singletonList("eu:1"));
+    }
+
+    @Test
+    public void testClosePattern() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.channel("orders.eu").register(new NamedListener("eu", received));
+        jBus.channel("orders.*").register(new NamedListener("orders.*", received));
+        jBus.channel("orders.eu").post("1");
+
+        jBus.channel("orders.*").close();
+        jBus.channel("orders.eu").post("2");
+        assertEquals(received, Arrays.asList("eu:1", "orders.*:1", "eu:2"));
+    }
+
+    @Test
+    public void testClosedChannelReleased() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        Channel channel = jBus.channel("orders.eu");
+        channel.register(new NamedListener("eu", received));
+        channel.post("1");
+
+        channel.close();
+        assertNull(channel.listenersRegistry.getSubscribers(String.class));
+        channel.close();
+        assertNotSame(jBus.channel("orders.eu"), channel);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testPostToPatternRejected() {
+        JBus jBus = new JBus();
+        jBus.channel("orders.*").post("1");
+    }
+
+    @Test
+    public void testInvalidNames() {
+        JBus jBus = new JBus();
+        for (String name : Arrays.asList("", "orders.", "orders..eu", "orders.e*", "#orders")) {
+            try {
+                jBus.channel(name);
+                fail(name + " should be rejected");
+            } catch (JBusException e) {
+                // expected
+            }
+        }
+    }
+
+    private static class NamedListener {
+        private final String name;
+        private final List<String> received;
+
+        NamedListener(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @Subscribe
+        private void onEvent(String event) {
+            received.add(name + ":" + event);
+        }
+    }
+
+    private static class UrgentListener {
+        private final List<String> received;
+
+        UrgentListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(priority = 10)
+        private void onEvent(String event) {
+            received.add("urgent:" + event);
+        }
+    }
+
+    private static class AsyncListener {
+        private final List<String> received;
+
+        AsyncListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(async = true)
+        private void onEvent(String event) {
+            received.add(event);
+        }
+    }
+}
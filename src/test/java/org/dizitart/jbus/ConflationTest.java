@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class ConflationTest {
+
+    @Test
+    public void testLatestValuePerKeyDelivered() throws InterruptedException {
+        JBus jBus = new JBus();
+        PriceListener listener = new PriceListener();
+        jBus.register(listener);
+
+        // the first update blocks the subscriber, the rest conflate meanwhile
+        jBus.post(new PriceUpdate("ACME", 0));
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 100; i++) {
+            jBus.post(new PriceUpdate("ACME", i));
+            jBus.post(new PriceUpdate("INIT", -i));
+        }
+        listener.release.countDown();
+
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(listener.prices, Arrays.asList("ACME=0", "ACME=100", "INIT=-100"));
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.COALESCE), 198);
+    }
+
+    @Test
+    public void testKeyExtractor() throws InterruptedException {
+        JBusConfig config = new JBusConfig();
+        config.setConflationKeyExtractor(new ConflationKeyExtractor() {
+            @Override
+            public Object getConflationKey(Object event) {
+                return ((String) event).substring(0, 1);
+            }
+        });
+        JBus jBus = new JBus(config);
+        GaugeListener listener = new GaugeListener();
+        jBus.register(listener);
+
+        jBus.post("first");
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        jBus.post("a1");
+        jBus.post("b1");
+        jBus.post("a2");
+        jBus.post("b2");
+        listener.release.countDown();
+
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(listener.gauges, Arrays.asList("first", "a2", "b2"));
+    }
+
+    @Test(expected = JBusException.class)
+    public void testBatchConflationRejected() {
+        new JBus().register(new Object() {
+            @Subscribe(async = true, batch = true, conflate = true)
+            public void listen(List<String> events) {
+            }
+        });
+    }
+
+    private static class PriceUpdate implements Conflatable {
+        final String symbol;
+        final int price;
+
+        PriceUpdate(String symbol, int price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
+
+        @Override
+        public Object getConflationKey() {
+            return symbol;
+        }
+    }
+
+    private static class PriceListener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<String> prices = new ArrayList<String>();
+
+        @Subscribe(async = true, conflate = true)
+        public void listen(PriceUpdate update) throws InterruptedException {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            synchronized (prices) {
+                prices.add(update.symbol + "=" + update.price);
+            }
+            done.countDown();
+        }
+    }
+
+    private static class GaugeListener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<String> gauges = new ArrayList<String>();
+
+        @Subscribe(async = true, conflate = true)
+        public void listen(String gauge) throws InterruptedException {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            synchronized (gauges) {
+                gauges.add(gauge);
+            }
+            done.countDown();
+        }
+    }
+}
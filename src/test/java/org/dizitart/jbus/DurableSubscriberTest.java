@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class DurableSubscriberTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnacknowledgedRedelivered() throws Exception {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory);
+        PaymentListener listener = new PaymentListener(3, 3);
+        jBus.register(listener);
+        for (int i = 0; i < 5; i++) {
+            jBus.postDurable(new Payment(i));
+        }
+        assertTrue(listener.processed.await(5, TimeUnit.SECONDS));
+
+        // the fourth payment is still running and only the fifth one, waiting behind it, is discarded
+        assertEquals(jBus.shutdown(100, TimeUnit.MILLISECONDS), 1);
+
+        JBus restarted = newBus(directory);
+        PaymentListener restartedListener = new PaymentListener(-1, 2);
+        AuditListener auditListener = new AuditListener();
+        restarted.register(restartedListener);
+        restarted.register(auditListener);
+        assertEquals(restarted.redeliver(), 2);
+        assertTrue(restartedListener.processed.await(5, TimeUnit.SECONDS));
+        assertEquals(restartedListener.ids, Arrays.asList(3, 4));
+        assertTrue(auditListener.ids.isEmpty());
+        assertEquals(restarted.shutdown(5, TimeUnit.SECONDS), 0);
+
+        JBus again = newBus(directory);
+        again.register(new PaymentListener(-1, 0));
+        assertEquals(again.redeliver(), 0);
+        again.close();
+    }
+
+    @Test
+    public void testEveryRegistrationFinishesBeforeCommit() throws Exception {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory);
+        PaymentListener fastListener = new PaymentListener(-1, 1);
+        PaymentListener blockedListener = new PaymentListener(0, 1);
+        jBus.register(fastListener);
+        jBus.register(blockedListener);
+        jBus.postDurable(new Payment(0));
+        assertTrue(fastListener.processed.await(5, TimeUnit.SECONDS));
+
+        // a few checkpoint intervals, the blocked delivery keeps the offset in flight
+        Thread.sleep(200);
+        assertEquals(jBus.shutdown(100, TimeUnit.MILLISECONDS), 0);
+
+        JBus restarted = newBus(directory);
+        PaymentListener restartedListener = new PaymentListener(-1, 1);
+        restarted.register(restartedListener);
+        assertEquals(restarted.redeliver(), 1);
+        assertTrue(restartedListener.processed.await(5, TimeUnit.SECONDS));
+        restarted.close();
+    }
+
+    @Test
+    public void testDroppedEventDoesNotStallCheckpoint() throws Exception {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory);
+        GatedListener listener = new GatedListener();
+        jBus.register(listener);
+
+        // the first payment runs, the second one waits and the third one is dropped
+        jBus.postDurable(new Payment(0));
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        jBus.postDurable(new Payment(1));
+        jBus.postDurable(new Payment(2));
+        listener.gate.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.ids.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        jBus.postDurable(new Payment(3));
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.ids, Arrays.asList(0, 1, 3));
+        jBus.close();
+
+        JBus restarted = newBus(directory);
+        restarted.register(new GatedListener());
+        assertEquals(restarted.redeliver(), 0);
+        restarted.close();
+    }
+
+    @Test
+    public void testNewSubscriberStartsAtEnd() throws IOException {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory);
+        jBus.postDurable(new Payment(0));
+        jBus.close();
+
+        JBus restarted = newBus(directory);
+        PaymentListener listener = new PaymentListener(-1, 1);
+        restarted.register(listener);
+        assertEquals(restarted.redeliver(), 0);
+        restarted.close();
+    }
+
+    @Test
+    public void testRegularPostNotAcknowledged() throws Exception {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory);
+        PaymentListener listener = new PaymentListener(-1, 2);
+        jBus.register(listener);
+        jBus.post(new Payment(0));
+        jBus.postDurable(new Payment(1));
+        assertTrue(listener.processed.await(5, TimeUnit.SECONDS));
+        jBus.close();
+
+        JBus restarted = newBus(directory);
+        restarted.register(new PaymentListener(-1, 0));
+        assertEquals(restarted.redeliver(), 0);
+        restarted.close();
+    }
+
+    @Test
+    public void testBoundBeforePublished() {
+        final ListenersRegistry registry = new ListenersRegistry(false);
+        final List<ListenerMethod> bound = new CopyOnWriteArrayList<ListenerMethod>();
+        ListenerMethod[] listenerMethods = registry.register(new AuditListener(), false,
+                new ListenersRegistry.SubscriberBinder() {
+                    @Override
+                    public void bind(ListenerMethod listenerMethod) {
+                        // no post can see the subscriber while it is bound
+                        assertNull(registry.getSubscribers(Payment.class));
+                        bound.add(listenerMethod);
+                    }
+                });
+        assertEquals(bound, Arrays.asList(listenerMethods));
+        assertSame(registry.getSubscribers(Payment.class)[0], listenerMethods[0]);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testDurableRequiresAsync() {
+        new JBus().register(new Object() {
+            @Subscribe(durable = true)
+            public void listen(Payment payment) {
+            }
+        });
+    }
+
+    private static JBus newBus(File directory) {
+        JBusConfig config = new JBusConfig();
+        config.setJournalDirectory(directory);
+        config.setJournalSegmentSize(64 * 1024);
+        config.setCheckpointInterval(50);
+        return new JBus(config);
+    }
+
+    private static class Payment implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int id;
+
+        Payment(int id) {
+            this.id = id;
+        }
+    }
+
+    private static class PaymentListener {
+        final List<Integer> ids = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch processed;
+        final int blockAt;
+
+        PaymentListener(int blockAt, int expected) {
+            this.blockAt = blockAt;
+            this.processed = new CountDownLatch(expected);
+        }
+
+        @Subscribe(async = true, serial = true, durable = true)
+        public void listen(Payment payment) throws InterruptedException {
+            if (payment.id == blockAt) {
+                new CountDownLatch(1).await();
+            }
+            ids.add(payment.id);
+            processed.countDown();
+        }
+    }
+
+    private static class AuditListener {
+        final List<Integer> ids = new CopyOnWriteArrayList<Integer>();
+
+        @Subscribe(async = true)
+        public void listen(Payment payment) {
+            ids.add(payment.id);
+        }
+    }
+
+    private static class GatedListener {
+        final List<Integer> ids = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Subscribe(async = true, durable = true, queueCapacity = 1, overflowPolicy = OverflowPolicy.DROP_NEWEST)
+        public void listen(Payment payment) throws InterruptedException {
+            started.countDown();
+            gate.await();
+            ids.add(payment.id);
+        }
+    }
+}
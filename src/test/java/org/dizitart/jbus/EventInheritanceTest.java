@@ -66,10 +66,63 @@ public class EventInheritanceTest {
         assertEquals(listener.listenUserEventCalled, 1);
     }
 
+    @Test
+    public void testPolymorphicDispatch() {
+        JBusConfig config = new JBusConfig();
+        config.setEventInheritance(true);
+        jBus = new JBus(config);
+
+        Listener listener = new Listener();
+        jBus.register(listener);
+
+        jBus.post(new BaseEvent());
+        assertEquals(listener.listenBaseEventCalled, 1);
+        assertEquals(listener.listenEventCalled, 0);
+
+        jBus.post(new Event());
+        assertEquals(listener.listenBaseEventCalled, 2);
+        assertEquals(listener.listenEventCalled, 1);
+
+        jBus.post(new UserEvent());
+        assertEquals(listener.listenAbstractEventCalled, 1);
+        assertEquals(listener.listenUserEventCalled, 1);
+
+        MarkerListener markerListener = new MarkerListener();
+        jBus.post(new MarkedEvent());
+        assertEquals(markerListener.markerCalled, 0);
+        assertEquals(listener.listenEventCalled, 2);
+
+        // registration after the dispatch table is resolved
+        jBus.register(markerListener);
+        jBus.post(new MarkedEvent());
+        assertEquals(markerListener.markerCalled, 1);
+        assertEquals(listener.listenBaseEventCalled, 4);
+        assertEquals(listener.listenEventCalled, 3);
+
+        jBus.deregister(listener);
+        jBus.post(new MarkedEvent());
+        jBus.post(new UserEvent());
+        assertEquals(markerListener.markerCalled, 2);
+        assertEquals(listener.listenBaseEventCalled, 4);
+        assertEquals(listener.listenEventCalled, 3);
+        assertEquals(listener.listenUserEventCalled, 1);
+    }
+
     private class BaseEvent {}
     private class Event extends BaseEvent {}
     private abstract class AbstractEvent {}
     private class UserEvent extends AbstractEvent {}
+    private interface Marker {}
+    private class MarkedEvent extends Event implements Marker {}
+
+    private class MarkerListener {
+        int markerCalled;
+
+        @Subscribe
+        void listen(Marker event) {
+            markerCalled++;
+        }
+    }
 
     private class Listener {
         int listenEventCalled;
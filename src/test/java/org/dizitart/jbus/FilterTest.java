@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class FilterTest {
+
+    @Test
+    public void testOnlyMatchingSubscribersInvoked() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.register(new AcmeListener(received));
+        jBus.register(new InitechListener(received));
+        jBus.register(new AllTenantsListener(received));
+
+        jBus.post(new TenantEvent("acme"));
+        assertEquals(received, Arrays.asList("acme:acme", "all:acme"));
+
+        received.clear();
+        jBus.post(new TenantEvent("initech"));
+        assertEquals(received, Arrays.asList("initech:initech", "all:initech"));
+
+        received.clear();
+        jBus.post(new TenantEvent("umbrella"));
+        jBus.post(new TenantEvent(null));
+        assertEquals(received, Arrays.asList("all:umbrella", "all:null"));
+    }
+
+    @Test
+    public void testFilterIndexed() {
+        ListenersRegistry registry = new ListenersRegistry(false);
+        registry.register(new AcmeListener(new ArrayList<String>()), false);
+        registry.register(new InitechListener(new ArrayList<String>()), false);
+        registry.register(new AllTenantsListener(new ArrayList<String>()), false);
+
+        assertEquals(registry.getSubscribers(TenantEvent.class).length, 3);
+        assertEquals(registry.getSubscribers(new TenantEvent("acme")).length, 2);
+        assertEquals(registry.getSubscribers(new TenantEvent("umbrella")).length, 1);
+        // the same snapshot is returned until the subscribers change
+        assertSame(registry.getSubscribers(new TenantEvent("acme")),
+                registry.getSubscribers(new TenantEvent("acme")));
+    }
+
+    @Test
+    public void testPriorityOrderKept() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.register(new AllTenantsListener(received));
+        jBus.register(new UrgentAcmeListener(received));
+
+        jBus.post(new TenantEvent("acme"));
+        assertEquals(received, Arrays.asList("urgent:acme", "all:acme"));
+    }
+
+    @Test
+    public void testIndexRebuiltOnChange() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        AcmeListener acmeListener = new AcmeListener(received);
+        jBus.register(acmeListener);
+        jBus.register(new AllTenantsListener(received));
+        jBus.post(new TenantEvent("acme"));
+
+        jBus.deregister(acmeListener);
+        jBus.register(new InitechListener(received));
+        received.clear();
+        jBus.post(new TenantEvent("acme"));
+        jBus.post(new TenantEvent("initech"));
+        assertEquals(received, Arrays.asList("all:acme", "all:initech", "initech:initech"));
+    }
+
+    @Test
+    public void testIndexReleasedOnDeregister() throws InterruptedException {
+        ListenersRegistry registry = new ListenersRegistry(false);
+        AcmeListener acmeListener = new AcmeListener(new ArrayList<String>());
+        registry.register(acmeListener, false);
+        registry.register(new AllTenantsListener(new ArrayList<String>()), false);
+        assertEquals(registry.getSubscribers(new TenantEvent("acme")).length, 2);
+
+        // no post is needed to drop the index of the removed subscriber
+        WeakReference<AcmeListener> reference = new WeakReference<AcmeListener>(acmeListener);
+        registry.deregister(acmeListener);
+        acmeListener = null;
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        assertSame(registry.getSubscribers(new TenantEvent("acme")),
+                registry.getSubscribers(TenantEvent.class));
+    }
+
+    @Test
+    public void testInheritedSubscribersIndexed() {
+        ListenersRegistry registry = new ListenersRegistry(true);
+        registry.register(new AcmeListener(new ArrayList<String>()), false);
+        registry.register(new AllTenantsListener(new ArrayList<String>()), false);
+        registry.register(new ObjectListener(), false);
+
+        assertEquals(registry.getSubscribers(new TenantEvent("acme")).length, 3);
+        assertEquals(registry.getSubscribers(new TenantEvent("initech")).length, 2);
+        assertSame(registry.getSubscribers(new TenantEvent("acme")),
+                registry.getSubscribers(new TenantEvent("acme")));
+    }
+
+    @Test
+    public void testKeyExtractor() {
+        JBusConfig config = new JBusConfig();
+        config.setFilterKeyExtractor(new FilterKeyExtractor() {
+            @Override
+            public Object getFilterKey(Object event) {
+                return ((String) event).substring(0, ((String) event).indexOf('/'));
+            }
+        });
+        JBus jBus = new JBus(config);
+        List<String> received = new ArrayList<String>();
+        jBus.register(new PathListener(received));
+
+        jBus.post("orders/1");
+        jBus.post("invoices/1");
+        jBus.post("orders/2");
+        assertEquals(received, Arrays.asList("orders/1", "orders/2"));
+    }
+
+    @Test
+    public void testPostAllRouted() {
+        JBus jBus = new JBus();
+        List<String> received = new ArrayList<String>();
+        jBus.register(new AcmeListener(received));
+        jBus.register(new InitechListener(received));
+
+        jBus.postAll(new TenantEvent("acme"), new TenantEvent("initech"), new TenantEvent("acme"));
+        assertEquals(received, Arrays.asList("acme:acme", "initech:initech", "acme:acme"));
+    }
+
+    @Test
+    public void testStickyEventsFiltered() {
+        JBusConfig config = new JBusConfig();
+        config.setStickyEventCapacity(2);
+        JBus jBus = new JBus(config);
+        jBus.postSticky(new TenantEvent("initech"));
+        jBus.postSticky(new TenantEvent("acme"));
+
+        List<String> received = new ArrayList<String>();
+        jBus.register(new StickyAcmeListener(received));
+        assertEquals(received, Arrays.asList("sticky:acme"));
+    }
+
+    @Test(expected = JBusException.class)
+    public void testFilterWithBatchRejected() {
+        JBus jBus = new JBus();
+        jBus.register(new InvalidListener());
+    }
+
+    private static class TenantEvent implements Filterable {
+        private final String tenant;
+
+        TenantEvent(String tenant) {
+            this.tenant = tenant;
+        }
+
+        @Override
+        public Object getFilterKey() {
+            return tenant;
+        }
+    }
+
+    private static class AcmeListener {
+        private final List<String> received;
+
+        AcmeListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(filter = "acme")
+        private void onEvent(TenantEvent event) {
+            received.add("acme:" + event.tenant);
+        }
+    }
+
+    private static class InitechListener {
+        private final List<String> received;
+
+        InitechListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(filter = "initech")
+        private void onEvent(TenantEvent event) {
+            received.add("initech:" + event.tenant);
+        }
+    }
+
+    private static class UrgentAcmeListener {
+        private final List<String> received;
+
+        UrgentAcmeListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(filter = "acme", priority = 10)
+        private void onEvent(TenantEvent event) {
+            received.add("urgent:" + event.tenant);
+        }
+    }
+
+    private static class StickyAcmeListener {
+        private final List<String> received;
+
+        StickyAcmeListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(filter = "acme", sticky = true)
+        private void onEvent(TenantEvent event) {
+            received.add("sticky:" + event.tenant);
+        }
+    }
+
+    private static class AllTenantsListener {
+        private final List<String> received;
+
+        AllTenantsListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe
+        private void onEvent(TenantEvent event) {
+            received.add("all:" + event.tenant);
+        }
+    }
+
+    private static class ObjectListener {
+        @Subscribe
+        private void onEvent(Object event) {
+        }
+    }
+
+    private static class PathListener {
+        private final List<String> received;
+
+        PathListener(List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe(filter = "orders")
+        private void onEvent(String event) {
+            received.add(event);
+        }
+    }
+
+    private static class InvalidListener {
+        @Subscribe(filter = "acme", batch = true)
+        private void onEvents(List<TenantEvent> events) {
+        }
+    }
+}
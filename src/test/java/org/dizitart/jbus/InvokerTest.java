@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class InvokerTest {
+
+    @Test
+    public void testGeneratedInvoker() throws Throwable {
+        Listener listener = new Listener();
+        Event event = new Event();
+
+        Invoker invoker = invokerOf(Listener.class, "privateListen");
+        assertTrue(invoker instanceof LambdaInvoker);
+        invoker.invoke(listener, event);
+        assertEquals(listener.privateCalled, 1);
+
+        invoker = invokerOf(Listener.class, "publicListen");
+        assertTrue(invoker instanceof LambdaInvoker);
+        invoker.invoke(listener, event);
+        assertEquals(listener.publicCalled, 1);
+    }
+
+    @Test
+    public void testInheritedSubscriber() throws Throwable {
+        ChildListener listener = new ChildListener();
+        Invoker invoker = invokerOf(Listener.class, "publicListen");
+        invoker.invoke(listener, new Event());
+        assertEquals(listener.childCalled, 1);
+        assertEquals(listener.publicCalled, 0);
+    }
+
+    @Test
+    public void testExceptionIsNotWrapped() throws Throwable {
+        Method method = Listener.class.getDeclaredMethod("failingListen", Event.class);
+        method.setAccessible(true);
+
+        Invoker[] invokers = new Invoker[] {
+                InvokerFactory.createInvoker(method),
+                new ReflectionInvoker(method)
+        };
+        for (Invoker invoker : invokers) {
+            try {
+                invoker.invoke(new Listener(), new Event());
+                fail("exception expected from " + invoker);
+            } catch (IOException e) {
+                assertEquals(e.getMessage(), "generated error");
+            }
+        }
+    }
+
+    @Test
+    public void testBusUsesGeneratedInvoker() {
+        JBus jBus = new JBus();
+        Listener listener = new Listener();
+        jBus.register(listener);
+        for (int i = 0; i < 100; i++) {
+            jBus.post(new Event());
+        }
+        assertEquals(listener.privateCalled, 100);
+        assertEquals(listener.publicCalled, 100);
+    }
+
+    private Invoker invokerOf(Class<?> listenerClass, String name) throws Exception {
+        Method method = listenerClass.getDeclaredMethod(name, Event.class);
+        method.setAccessible(true);
+        return InvokerFactory.createInvoker(method);
+    }
+
+    private class Event {}
+
+    private class Listener {
+        int privateCalled;
+        int publicCalled;
+
+        @Subscribe
+        private void privateListen(Event event) {
+            privateCalled++;
+        }
+
+        @Subscribe
+        public void publicListen(Event event) {
+            publicCalled++;
+        }
+
+        void failingListen(Event event) throws IOException {
+            throw new IOException("generated error");
+        }
+    }
+
+    private class ChildListener extends Listener {
+        int childCalled;
+
+        @Override
+        public void publicListen(Event event) {
+            childCalled++;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory, 1024 * 1024, 100);
+        List<Long> offsets = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            offsets.add(jBus.postDurable(new Order(i)));
+        }
+        long end = jBus.getJournalOffset();
+        jBus.close();
+
+        JBus restarted = newBus(directory, 1024 * 1024, 100);
+        OrderListener listener = new OrderListener();
+        restarted.register(listener);
+        assertEquals(restarted.getJournalOffset(), end);
+
+        assertEquals(restarted.replay(0), end);
+        assertEquals(listener.ids, Arrays.asList(0, 1, 2, 3, 4));
+
+        listener.ids.clear();
+        assertEquals(restarted.replay(offsets.get(3)), end);
+        assertEquals(listener.ids, Arrays.asList(3, 4));
+        restarted.close();
+    }
+
+    @Test
+    public void testSegmentsRolled() throws IOException {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory, 1024, 100);
+        for (int i = 0; i < 100; i++) {
+            jBus.postDurable(new Order(i));
+        }
+        jBus.close();
+        assertTrue(directory.list().length > 1);
+
+        JBus restarted = newBus(directory, 1024, 100);
+        OrderListener listener = new OrderListener();
+        restarted.register(listener);
+        restarted.replay(0);
+        assertEquals(listener.ids.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(listener.ids.get(i).intValue(), i);
+        }
+        restarted.close();
+    }
+
+    @Test
+    public void testRetentionSize() throws IOException {
+        File directory = folder.newFolder();
+        JBusConfig config = new JBusConfig();
+        config.setJournalDirectory(directory);
+        config.setJournalSegmentSize(1024);
+        config.setJournalRetentionSize(4096);
+        JBus jBus = new JBus(config);
+        OrderListener listener = new OrderListener();
+        jBus.register(listener);
+        for (int i = 0; i < 200; i++) {
+            jBus.postDurable(new Order(i));
+        }
+        // the segments, the active one included, and the two checkpoint files
+        assertTrue(directory.list().length <= 4096 / 1024 + 2 + 2);
+
+        listener.ids.clear();
+        jBus.replay(0);
+        assertTrue(listener.ids.size() < 200);
+        assertEquals(listener.ids.get(listener.ids.size() - 1).intValue(), 199);
+        jBus.close();
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsRemoved() throws Exception {
+        File directory = folder.newFolder();
+        JBusConfig config = new JBusConfig();
+        config.setJournalDirectory(directory);
+        config.setJournalSegmentSize(1024);
+        config.setCheckpointInterval(20);
+        JBus jBus = new JBus(config);
+        DurableOrderListener listener = new DurableOrderListener();
+        jBus.register(listener);
+        for (int i = 0; i < 100; i++) {
+            jBus.postDurable(new Order(i));
+        }
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.ids.size(), 100);
+        // drain closes the bus, the last checkpoint is written on close
+        jBus.close();
+        assertEquals(directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".journal");
+            }
+        }).length, 1);
+    }
+
+    @Test
+    public void testTornRecordDiscarded() throws IOException {
+        File directory = folder.newFolder();
+        JBus jBus = newBus(directory, 1024 * 1024, 100);
+        jBus.postDurable(new Order(0));
+        long last = jBus.postDurable(new Order(1));
+        jBus.close();
+
+        // corrupt the data of the last record, as if the process died while writing it
+        RandomAccessFile file = new RandomAccessFile(directory.listFiles()[0], "rw");
+        file.seek(last + 20);
+        file.write(0x7f);
+        file.close();
+
+        JBus restarted = newBus(directory, 1024 * 1024, 100);
+        assertEquals(restarted.getJournalOffset(), last);
+        OrderListener listener = new OrderListener();
+        restarted.register(listener);
+        restarted.postDurable(new Order(2));
+        listener.ids.clear();
+        restarted.replay(0);
+        assertEquals(listener.ids, Arrays.asList(0, 2));
+        restarted.close();
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        File directory = folder.newFolder();
+        final JBus jBus = newBus(directory, 1024 * 1024, 0);
+        OrderListener listener = new OrderListener();
+        jBus.register(listener);
+
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 25; i++) {
+                        jBus.postDurable(new Order(thread * 25 + i));
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(listener.ids.size(), 100);
+
+        listener.ids.clear();
+        jBus.replay(0);
+        assertEquals(listener.ids.size(), 100);
+        jBus.close();
+    }
+
+    @Test(expected = JBusException.class)
+    public void testNoJournal() {
+        new JBus().postDurable(new Order(0));
+    }
+
+    @Test(expected = JBusException.class)
+    public void testNotSerializable() throws IOException {
+        JBus jBus = newBus(folder.newFolder(), 1024 * 1024, 100);
+        try {
+            jBus.postDurable(new Object());
+        } finally {
+            jBus.close();
+        }
+    }
+
+    private static JBus newBus(File directory, int segmentSize, long syncInterval) {
+        JBusConfig config = new JBusConfig();
+        config.setJournalDirectory(directory);
+        config.setJournalSegmentSize(segmentSize);
+        config.setJournalSyncInterval(syncInterval);
+        return new JBus(config);
+    }
+
+    private static class Order implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int id;
+
+        Order(int id) {
+            this.id = id;
+        }
+    }
+
+    private static class OrderListener {
+        final List<Integer> ids = new CopyOnWriteArrayList<Integer>();
+
+        @Subscribe
+        public void listen(Order order) {
+            ids.add(order.id);
+        }
+    }
+
+    private static class DurableOrderListener {
+        final List<Integer> ids = new CopyOnWriteArrayList<Integer>();
+
+        @Subscribe(async = true, durable = true)
+        public void listen(Order order) {
+            ids.add(order.id);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class MetricsTest {
+
+    @Test
+    public void testPostAndInvocationCounts() throws NoSuchMethodException {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        jBus.register(new CountingListener());
+
+        for (int i = 0; i < 10; i++) {
+            jBus.post("event " + i);
+        }
+        jBus.postAll(1, 2, 3);
+
+        Method listen = CountingListener.class.getMethod("listen", String.class);
+        assertEquals(metrics.getPostCount(String.class), 10);
+        assertEquals(metrics.getPostCount(Integer.class), 3);
+        assertEquals(metrics.getInvocationCount(listen), 10);
+        assertTrue(metrics.getMeanLatency(listen) > 0);
+        assertTrue(metrics.getLatencyPercentile(listen, 99.9)
+                >= metrics.getLatencyPercentile(listen, 50));
+    }
+
+    @Test
+    public void testErrorCounts() throws NoSuchMethodException {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        jBus.register(new FailingListener());
+
+        jBus.post("first");
+        jBus.post("second");
+
+        Method listen = FailingListener.class.getMethod("listen", String.class);
+        assertEquals(metrics.getErrorCount(listen), 2);
+        assertEquals(metrics.getErrorCount(), 2);
+        assertEquals(metrics.getInvocationCount(listen), 2);
+    }
+
+    @Test
+    public void testMetricsReleasedOnDeregister() throws NoSuchMethodException {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        CountingListener first = new CountingListener();
+        CountingListener second = new CountingListener();
+        jBus.register(first);
+        jBus.register(second);
+        jBus.post("event");
+
+        Method listen = CountingListener.class.getMethod("listen", String.class);
+        assertEquals(metrics.getInvocationCount(listen), 2);
+
+        // the metrics are kept while any listener of the method is registered
+        jBus.deregister(first);
+        assertEquals(metrics.getInvocationCount(listen), 2);
+        jBus.deregister(second);
+        assertEquals(metrics.getInvocationCount(listen), 0);
+        assertFalse(metrics.getSubscribers().iterator().hasNext());
+    }
+
+    @Test
+    public void testRejectionCounts() throws InterruptedException {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        BlockingListener listener = new BlockingListener();
+        jBus.register(listener);
+
+        // the first event blocks the subscriber, the rest coalesce meanwhile
+        jBus.post("first");
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        jBus.post("second");
+        jBus.post("third");
+        assertEquals(jBus.getAsyncQueueDepth(), 1);
+        listener.release.countDown();
+
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(metrics.getRejectionCount(OverflowPolicy.COALESCE), 1);
+        assertEquals(metrics.getRejectionCount(null), 0);
+    }
+
+    @Test
+    public void testWeakListenerReclaimed() throws InterruptedException {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        jBus.registerWeak(new CountingListener());
+
+        for (int i = 0; i < 100 && metrics.getWeakListenersReclaimed() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            jBus.post("event");
+        }
+        assertEquals(metrics.getWeakListenersReclaimed(), 1);
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        JBusMetrics metrics = new JBusMetrics();
+        JBus jBus = newBus(metrics);
+        jBus.register(new CountingListener());
+        jBus.post("event");
+
+        ObjectName name = JBusMetricsJmx.register(metrics, jBus, "metrics-test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(name));
+            assertEquals(server.getAttribute(name, "PostCount"), 1L);
+            assertEquals(server.getAttribute(name, "AsyncQueueDepth"), 0);
+        } finally {
+            JBusMetricsJmx.unregister("metrics-test");
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(histogram.getCount(), 1000);
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 500000 && median <= 500000 + 500000 / 16 + 1);
+        long max = histogram.getPercentile(100);
+        assertTrue(max >= 1000000 && max <= 1000000 + 1000000 / 16 + 1);
+    }
+
+    @Test
+    public void testHistogramMergesThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final long value = (i + 1) * 1000;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(histogram.getCount(), 8000);
+        long max = histogram.getPercentile(100);
+        assertTrue(max >= 8000 && max <= 8000 + 8000 / 16 + 1);
+        long min = histogram.getPercentile(10);
+        assertTrue(min >= 1000 && min <= 1000 + 1000 / 16 + 1);
+    }
+
+    private static JBus newBus(MetricsCollector metrics) {
+        JBusConfig config = new JBusConfig();
+        config.setMetricsCollector(metrics);
+        return new JBus(config);
+    }
+
+    private static class CountingListener {
+        @Subscribe
+        public void listen(String event) {
+        }
+    }
+
+    private static class FailingListener {
+        @Subscribe
+        public void listen(String event) {
+            throw new IllegalStateException(event);
+        }
+    }
+
+    private static class BlockingListener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        @Subscribe(async = true, conflate = true)
+        public void listen(String event) throws InterruptedException {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class OffHeapQueueTest {
+
+    @Test
+    public void testBacklogStagedOffHeap() throws InterruptedException {
+        JBus jBus = new JBus(offHeapConfig(1024 * 1024));
+        PointListener listener = new PointListener();
+        jBus.register(listener);
+
+        Point first = new Point(-1, "first");
+        jBus.post(first);
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10000; i++) {
+            jBus.post(new Point(i, "point " + i));
+        }
+        assertEquals(jBus.getAsyncQueueDepth(), 10000);
+
+        listener.gate.countDown();
+        assertTrue(jBus.drain(10, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 10001);
+        // the subscriber receives a decoded copy, in order
+        assertNotSame(listener.received.get(0), first);
+        for (int i = 0; i < 10000; i++) {
+            Point point = listener.received.get(i + 1);
+            assertEquals(point.x, i);
+            assertEquals(point.label, "point " + i);
+        }
+        assertEquals(jBus.getAsyncQueueDepth(), 0);
+        jBus.close();
+    }
+
+    @Test
+    public void testOverflowDeliveredThroughHeap() throws InterruptedException {
+        // room for a few records only
+        JBus jBus = new JBus(offHeapConfig(256));
+        PointListener listener = new PointListener();
+        jBus.register(listener);
+
+        jBus.post(new Point(-1, "first"));
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            jBus.post(new Point(i, "point " + i));
+        }
+        listener.gate.countDown();
+        assertTrue(jBus.drain(10, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 101);
+        jBus.close();
+    }
+
+    @Test
+    public void testSlabsReused() throws InterruptedException {
+        JBus jBus = new JBus(offHeapConfig(1024));
+        PointListener listener = new PointListener();
+        listener.gate.countDown();
+        jBus.register(listener);
+
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 20; i++) {
+                jBus.post(new Point(i, "round " + round));
+            }
+            // drain would close the bus, wait for the round instead
+            long deadline = System.currentTimeMillis() + 5000;
+            while (listener.received.size() < (round + 1) * 20
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(listener.received.size(), 2000);
+        assertEquals(listener.received.get(1999).label, "round 99");
+        jBus.close();
+    }
+
+    @Test
+    public void testEventWithoutCodecNotStaged() {
+        JBus jBus = new JBus(offHeapConfig(1024 * 1024));
+        StringListener listener = new StringListener();
+        jBus.register(listener);
+
+        String event = new String("event");
+        jBus.post(event);
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 1);
+        assertSame(listener.received.get(0), event);
+        jBus.close();
+    }
+
+    @Test
+    public void testBrokenCodec() {
+        JBusConfig config = new JBusConfig();
+        config.setOffHeapBufferCapacity(1024);
+        config.registerEventCodec(Point.class, new PointCodec() {
+            @Override
+            public int size(Point event) {
+                return super.size(event) + 1;
+            }
+        });
+        JBus jBus = new JBus(config);
+        PointListener listener = new PointListener();
+        listener.gate.countDown();
+        jBus.register(listener);
+        ErrorListener errorListener = new ErrorListener();
+        jBus.register(errorListener);
+
+        // the error is reported, and the event is delivered through the heap
+        Point point = new Point(1, "broken");
+        jBus.post(point);
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 1);
+        assertSame(listener.received.get(0), point);
+        assertEquals(errorListener.errors.size(), 1);
+        assertTrue(errorListener.errors.get(0).getException() instanceof JBusException);
+        jBus.close();
+    }
+
+    @Test
+    public void testUndecodableRecordSkipped() throws InterruptedException {
+        JBusConfig config = offHeapConfig(1024 * 1024);
+        config.registerEventCodec(Point.class, new PointCodec() {
+            @Override
+            public Point decode(ByteBuffer buffer) {
+                Point point = super.decode(buffer);
+                if (point.x == 5) {
+                    throw new IllegalStateException("corrupt");
+                }
+                return point;
+            }
+        });
+        JBus jBus = new JBus(config);
+        PointListener listener = new PointListener();
+        jBus.register(listener);
+        ErrorListener errorListener = new ErrorListener();
+        jBus.register(errorListener);
+
+        jBus.post(new Point(-1, "first"));
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            jBus.post(new Point(i, "point " + i));
+        }
+        listener.gate.countDown();
+
+        // the failed record neither stalls the drainer nor the pending count
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 10);
+        assertEquals(errorListener.errors.size(), 1);
+        assertTrue(errorListener.errors.get(0).getException() instanceof IllegalStateException);
+        jBus.close();
+    }
+
+    @Test
+    public void testBusQueueCapacityApplies() throws InterruptedException {
+        JBusConfig config = offHeapConfig(1024 * 1024);
+        config.setAsyncQueueCapacity(2);
+        config.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        JBus jBus = new JBus(config);
+        PointListener listener = new PointListener();
+        jBus.register(listener);
+
+        jBus.post(new Point(-1, "first"));
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            jBus.post(new Point(i, "point " + i));
+        }
+        assertEquals(jBus.getAsyncQueueDepth(), 2);
+        assertEquals(jBus.getOverflowCount(OverflowPolicy.DROP_NEWEST), 8);
+
+        listener.gate.countDown();
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 3);
+        jBus.close();
+    }
+
+    private JBusConfig offHeapConfig(long capacity) {
+        JBusConfig config = new JBusConfig();
+        config.setOffHeapBufferCapacity(capacity);
+        config.setAsyncConcurrency(1);
+        config.registerEventCodec(Point.class, new PointCodec());
+        return config;
+    }
+
+    private static class Point {
+        private final int x;
+        private final String label;
+
+        Point(int x, String label) {
+            this.x = x;
+            this.label = label;
+        }
+    }
+
+    private static class PointCodec implements EventCodec<Point> {
+        @Override
+        public int size(Point event) {
+            return 8 + event.label.length() * 2;
+        }
+
+        @Override
+        public void encode(Point event, ByteBuffer buffer) {
+            buffer.putInt(event.x);
+            buffer.putInt(event.label.length());
+            for (int i = 0; i < event.label.length(); i++) {
+                buffer.putChar(event.label.charAt(i));
+            }
+        }
+
+        @Override
+        public Point decode(ByteBuffer buffer) {
+            int x = buffer.getInt();
+            char[] label = new char[buffer.getInt()];
+            for (int i = 0; i < label.length; i++) {
+                label[i] = buffer.getChar();
+            }
+            return new Point(x, new String(label));
+        }
+    }
+
+    private static class PointListener {
+        private final List<Point> received = new CopyOnWriteArrayList<Point>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Subscribe(async = true)
+        private void onPoint(Point point) throws InterruptedException {
+            started.countDown();
+            gate.await();
+            received.add(point);
+        }
+    }
+
+    private static class ErrorListener {
+        private final List<ExceptionEvent> errors = new CopyOnWriteArrayList<ExceptionEvent>();
+
+        @Subscribe
+        private void onError(ExceptionEvent event) {
+            errors.add(event);
+        }
+    }
+
+    private static class StringListener {
+        private final List<String> received = new CopyOnWriteArrayList<String>();
+
+        @Subscribe(async = true)
+        private void onString(String event) {
+            received.add(event);
+        }
+    }
+}
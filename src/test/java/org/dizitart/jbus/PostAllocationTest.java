@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class PostAllocationTest {
+    private static final int POSTS = 100000;
+    // far below a single small object per post, leaves room for the measurement itself
+    private static final long MAX_ALLOCATED_BYTES = 16 * 1024;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported()
+                && threadMXBean.isThreadAllocatedMemoryEnabled());
+    }
+
+    @Test
+    public void testSynchronousPostDoesNotAllocate() {
+        JBus jBus = new JBus();
+        Listener listener = new Listener();
+        Listener weakListener = new Listener();
+        jBus.register(listener);
+        jBus.registerWeak(weakListener);
+
+        assertAllocationFree(allocatedBytes(jBus, new Event()));
+        assertEquals(2 * POSTS, listener.invocationCount);
+        assertEquals(2 * POSTS, weakListener.invocationCount);
+    }
+
+    @Test
+    public void testPolymorphicPostDoesNotAllocate() {
+        JBusConfig config = new JBusConfig();
+        config.setEventInheritance(true);
+        JBus jBus = new JBus(config);
+        Listener listener = new Listener();
+        jBus.register(listener);
+
+        assertAllocationFree(allocatedBytes(jBus, new SubEvent()));
+        assertEquals(2 * POSTS, listener.invocationCount);
+    }
+
+    private static void assertAllocationFree(long allocatedBytes) {
+        assertTrue(allocatedBytes + " bytes allocated by " + POSTS + " posts",
+                allocatedBytes <= MAX_ALLOCATED_BYTES);
+    }
+
+    private long allocatedBytes(JBus jBus, Object event) {
+        // warm up, so that the dispatch table and the invokers are in place
+        for (int i = 0; i < POSTS; i++) {
+            jBus.post(event);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < POSTS; i++) {
+            jBus.post(event);
+        }
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+        return after - before;
+    }
+
+    private class Event {}
+    private class SubEvent extends Event {}
+
+    private class Listener {
+        int invocationCount;
+
+        @Subscribe
+        private void listen(Event event) {
+            invocationCount++;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class PriorityTest {
+
+    @Test
+    public void testPriorityOrder() {
+        JBus jBus = new JBus();
+        List<String> invocations = new ArrayList<String>();
+        jBus.register(new LowHandler("low-1", invocations));
+        jBus.register(new Handler("default-1", invocations));
+        jBus.register(new HighHandler("high", invocations));
+        jBus.register(new Handler("default-2", invocations));
+        jBus.register(new LowHandler("low-2", invocations));
+
+        jBus.post(new ValidatedEvent(true));
+        assertEquals(invocations, Arrays.asList("high", "default-1", "default-2", "low-1", "low-2"));
+    }
+
+    @Test
+    public void testGuardInterruptsChain() {
+        JBus jBus = new JBus();
+        List<String> invocations = new ArrayList<String>();
+        jBus.register(new Handler("expensive", invocations));
+        jBus.register(new Guard());
+
+        jBus.post(new ValidatedEvent(false));
+        assertTrue(invocations.isEmpty());
+
+        jBus.post(new ValidatedEvent(true));
+        assertEquals(invocations, Arrays.asList("expensive"));
+    }
+
+    @Test
+    public void testPriorityAcrossEventHierarchy() {
+        JBusConfig config = new JBusConfig();
+        config.setEventInheritance(true);
+        JBus jBus = new JBus(config);
+        final List<String> invocations = new ArrayList<String>();
+
+        jBus.register(new Object() {
+            @Subscribe
+            public void listen(ValidatedEvent event) {
+                invocations.add("specific");
+            }
+        });
+        jBus.register(new Object() {
+            @Subscribe(priority = 1)
+            public void listen(Object event) {
+                invocations.add("generic");
+            }
+        });
+        jBus.register(new Object() {
+            @Subscribe
+            public void listen(Object event) {
+                invocations.add("generic-default");
+            }
+        });
+
+        jBus.post(new ValidatedEvent(true));
+        assertEquals(invocations, Arrays.asList("generic", "specific", "generic-default"));
+    }
+
+    private static class ValidatedEvent implements HandlerChainAware {
+        private final boolean valid;
+        private HandlerChain handlerChain;
+
+        ValidatedEvent(boolean valid) {
+            this.valid = valid;
+        }
+
+        @Override
+        public void setHandlerChain(HandlerChain handlerChain) {
+            this.handlerChain = handlerChain;
+        }
+
+        @Override
+        public HandlerChain getHandlerChain() {
+            return handlerChain;
+        }
+    }
+
+    private static class Guard {
+        @Subscribe(priority = Integer.MAX_VALUE)
+        public void validate(ValidatedEvent event) {
+            if (!event.valid) {
+                event.getHandlerChain().interrupt();
+            }
+        }
+    }
+
+    private static class Recorder {
+        final String name;
+        final List<String> invocations;
+
+        Recorder(String name, List<String> invocations) {
+            this.name = name;
+            this.invocations = invocations;
+        }
+    }
+
+    private static class Handler extends Recorder {
+        Handler(String name, List<String> invocations) {
+            super(name, invocations);
+        }
+
+        @Subscribe
+        public void listen(ValidatedEvent event) {
+            invocations.add(name);
+        }
+    }
+
+    private static class HighHandler extends Recorder {
+        HighHandler(String name, List<String> invocations) {
+            super(name, invocations);
+        }
+
+        @Subscribe(priority = 10)
+        public void listen(ValidatedEvent event) {
+            invocations.add(name);
+        }
+    }
+
+    private static class LowHandler extends Recorder {
+        LowHandler(String name, List<String> invocations) {
+            super(name, invocations);
+        }
+
+        @Subscribe(priority = -1)
+        public void listen(ValidatedEvent event) {
+            invocations.add(name);
+        }
+    }
+}
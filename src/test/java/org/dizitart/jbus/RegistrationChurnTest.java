@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class RegistrationChurnTest {
+    private static final int THREADS = 8;
+    private static final int LISTENERS = 2000;
+
+    private JBus jBus;
+
+    @Before
+    public void setUp() {
+        jBus = new JBus();
+    }
+
+    @Test
+    public void testEqualListenersRegisteredByIdentity() {
+        Listener first = new Listener();
+        Listener second = new Listener();
+        assertEquals(first, second);
+
+        jBus.register(first);
+        jBus.register(second);
+        jBus.post(new Event());
+        assertEquals(first.count.get(), 1);
+        assertEquals(second.count.get(), 1);
+
+        jBus.deregister(first);
+        jBus.post(new Event());
+        assertEquals(first.count.get(), 1);
+        assertEquals(second.count.get(), 2);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testDuplicateRegistration() {
+        Listener listener = new Listener();
+        jBus.register(listener);
+        jBus.register(listener);
+    }
+
+    @Test
+    public void testStrongAndWeakRegistration() {
+        Listener listener = new Listener();
+        jBus.register(listener);
+        jBus.registerWeak(listener);
+        jBus.post(new Event());
+        assertEquals(listener.count.get(), 2);
+
+        jBus.deregister(listener);
+        jBus.post(new Event());
+        assertEquals(listener.count.get(), 2);
+    }
+
+    @Test
+    public void testConcurrentChurn() throws Exception {
+        final Listener survivor = new Listener();
+        jBus.register(survivor);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int received = 0;
+                        for (int i = 0; i < LISTENERS; i++) {
+                            Listener listener = new Listener();
+                            jBus.register(listener);
+                            jBus.post(new Event());
+                            jBus.deregister(listener);
+                            // its own post always reaches a registered listener
+                            received += listener.count.get() > 0 ? 1 : 0;
+                        }
+                        return received;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(future.get().intValue(), LISTENERS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // only the survivor is left after the churn
+        int before = survivor.count.get();
+        jBus.post(new Event());
+        assertEquals(survivor.count.get(), before + 1);
+    }
+
+    private static class Event {
+    }
+
+    private static class Listener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Subscribe
+        private void listen(Event event) {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Listener;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class RingBufferTest {
+    private static final int EVENTS = 100000;
+
+    @Test
+    public void testWaitStrategies() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            JBus jBus = createBus(1024, waitStrategy, 1);
+            assertAllDelivered(jBus, 1);
+        }
+    }
+
+    @Test
+    public void testMultipleConsumersAndPublishers() throws InterruptedException {
+        final JBus jBus = createBus(256, WaitStrategy.YIELD, 3);
+        final CountingListener listener = new CountingListener(4 * EVENTS);
+        jBus.register(listener);
+
+        Thread[] publishers = new Thread[4];
+        for (int i = 0; i < publishers.length; i++) {
+            publishers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 1; j <= EVENTS; j++) {
+                        jBus.post(new Event(j));
+                    }
+                }
+            });
+            publishers[i].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        // every event is delivered exactly once
+        assertEquals(listener.sum.get(), 4L * EVENTS * (EVENTS + 1) / 2);
+    }
+
+    @Test
+    public void testFullRingFromConsumer() throws InterruptedException {
+        // each delivery posts another event from the consumer thread,
+        // which must not wait on itself when the ring is full
+        final JBus jBus = createBus(2, WaitStrategy.PARK, 1);
+        final CountDownLatch latch = new CountDownLatch(100);
+        jBus.register(new Object() {
+            @Subscribe(async = true)
+            public void listen(Event event) {
+                latch.countDown();
+                if (event.id < 100) {
+                    jBus.post(new Event(event.id + 1));
+                    jBus.post(new Event(1000));
+                }
+            }
+        });
+
+        jBus.post(new Event(1));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlockedPublisherReleasedOnShutdown() throws InterruptedException {
+        final JBus jBus = createBus(2, WaitStrategy.PARK, 1);
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        jBus.register(new Object() {
+            @Subscribe(async = true)
+            public void listen(Event event) throws InterruptedException {
+                received.countDown();
+                release.await();
+            }
+        });
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 1; i <= 10; i++) {
+                        jBus.post(new Event(i));
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        publisher.start();
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        // the consumer is stuck, so the ring fills up and the publisher parks
+        while (publisher.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        jBus.shutdown(100, TimeUnit.MILLISECONDS);
+        publisher.join(5000);
+        release.countDown();
+        assertFalse(publisher.isAlive());
+        assertTrue(String.valueOf(error.get()), error.get() instanceof RejectedExecutionException);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testInvalidSize() {
+        createBus(1000, WaitStrategy.PARK, 1);
+    }
+
+    private JBus createBus(int size, WaitStrategy waitStrategy, int consumers) {
+        JBusConfig config = new JBusConfig();
+        config.setRingBufferSize(size);
+        config.setWaitStrategy(waitStrategy);
+        config.setRingBufferConsumers(consumers);
+        return new JBus(config);
+    }
+
+    private void assertAllDelivered(JBus jBus, int publishers) throws InterruptedException {
+        CountingListener listener = new CountingListener(publishers * EVENTS);
+        jBus.register(listener);
+        for (int i = 1; i <= EVENTS; i++) {
+            jBus.post(new Event(i));
+        }
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(listener.sum.get(), (long) EVENTS * (EVENTS + 1) / 2);
+    }
+
+    private class Event {
+        final int id;
+
+        Event(int id) {
+            this.id = id;
+        }
+    }
+
+    private class CountingListener {
+        final CountDownLatch latch;
+        final AtomicLong sum = new AtomicLong();
+
+        CountingListener(int events) {
+            latch = new CountDownLatch(events);
+        }
+
+        @Subscribe(async = true)
+        public void listen(Event event) {
+            sum.addAndGet(event.id);
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dizitart.jbus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class SerialAsyncTest {
+    private static final int EVENTS = 1000;
+
+    private JBus jBus;
+
+    @Before
+    public void setUp() {
+        JBusConfig config = new JBusConfig();
+        config.setExecutorService(AsyncExecutors.boundedThreadPool(4, 10000));
+        jBus = new JBus(config);
+    }
+
+    @Test
+    public void testSerialDeliveryOrder() throws InterruptedException {
+        SerialListener listener = new SerialListener(EVENTS);
+        jBus.register(listener);
+
+        for (int i = 0; i < EVENTS; i++) {
+            jBus.post(new Event(i));
+        }
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals(listener.maxConcurrency, 1);
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(listener.events.get(i).intValue(), i);
+        }
+    }
+
+    @Test
+    public void testLanesRunInParallel() throws InterruptedException {
+        // the first lane waits for the second one to run, which
+        // would never happen if the lanes were not independent
+        final CountDownLatch secondLaneRan = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        jBus.register(new Object() {
+            @Subscribe(async = true, serial = true)
+            public void listen(Event event) throws InterruptedException {
+                if (secondLaneRan.await(5, TimeUnit.SECONDS)) {
+                    done.countDown();
+                }
+            }
+        });
+        jBus.register(new Object() {
+            @Subscribe(async = true, serial = true)
+            public void listen(Event event) {
+                secondLaneRan.countDown();
+                done.countDown();
+            }
+        });
+
+        jBus.post(new Event(0));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReorderingOverflowPolicyRejected() {
+        for (Object listener : new Object[] {
+                new CallerRunsListener(), new DropOldestListener(), new CoalescingListener()}) {
+            try {
+                jBus.register(listener);
+                fail(listener.getClass().getSimpleName() + " should be rejected");
+            } catch (JBusException e) {
+                assertTrue(e.getMessage().contains("serial"));
+            }
+        }
+    }
+
+    private class Event {
+        final int id;
+
+        Event(int id) {
+            this.id = id;
+        }
+    }
+
+    private class SerialListener {
+        final CountDownLatch latch;
+        final List<Integer> events = new ArrayList<Integer>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile int maxConcurrency;
+
+        SerialListener(int events) {
+            latch = new CountDownLatch(events);
+        }
+
+        @Subscribe(async = true, serial = true)
+        public void listen(Event event) {
+            int running = inFlight.incrementAndGet();
+            if (running > maxConcurrency) {
+                maxConcurrency = running;
+            }
+            // no synchronization, the lane guarantees a single writer
+            events.add(event.id);
+            inFlight.decrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    private class CallerRunsListener {
+        @Subscribe(async = true, serial = true, queueCapacity = 1, overflowPolicy = OverflowPolicy.CALLER_RUNS)
+        public void listen(Event event) {
+        }
+    }
+
+    private class DropOldestListener {
+        @Subscribe(async = true, serial = true, queueCapacity = 1, overflowPolicy = OverflowPolicy.DROP_OLDEST)
+        public void listen(Event event) {
+        }
+    }
+
+    private class CoalescingListener {
+        @Subscribe(async = true, serial = true, queueCapacity = 1, overflowPolicy = OverflowPolicy.COALESCE)
+        public void listen(Event event) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class ShutdownTest {
+
+    @Test
+    public void testShutdownDeliversPendingEvents() {
+        JBus jBus = new JBus();
+        SlowAsyncListener listener = new SlowAsyncListener();
+        jBus.register(listener);
+
+        for (int i = 0; i < 20; i++) {
+            jBus.post(i);
+        }
+        assertEquals(jBus.shutdown(5, TimeUnit.SECONDS), 0);
+        assertEquals(listener.received.get(), 20);
+        assertTrue(jBus.isShutdown());
+    }
+
+    @Test
+    public void testQueuedEventsDrained() {
+        JBusConfig config = new JBusConfig();
+        config.setAsyncQueueCapacity(100);
+        config.setAsyncConcurrency(1);
+        JBus jBus = new JBus(config);
+        SlowAsyncListener listener = new SlowAsyncListener();
+        jBus.register(listener);
+
+        for (int i = 0; i < 20; i++) {
+            jBus.post(i);
+        }
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.get(), 20);
+        assertEquals(jBus.getAsyncQueueDepth(), 0);
+        jBus.close();
+    }
+
+    @Test
+    public void testUndeliveredReported() throws InterruptedException {
+        JBus jBus = new JBus();
+        BlockedListener listener = new BlockedListener();
+        jBus.register(listener);
+
+        for (int i = 0; i < 5; i++) {
+            jBus.post("event " + i);
+        }
+        assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+
+        // the in-flight delivery is interrupted, only the four queued ones are discarded
+        assertEquals(jBus.shutdown(100, TimeUnit.MILLISECONDS), 4);
+        assertTrue(listener.interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(listener.received.size(), 0);
+    }
+
+    @Test
+    public void testWindowReleasedOnDrain() {
+        JBus jBus = new JBus();
+        WindowListener listener = new WindowListener();
+        jBus.register(listener);
+
+        jBus.post("first");
+        jBus.post("second");
+        assertTrue(jBus.drain(5, TimeUnit.SECONDS));
+        assertEquals(listener.batches.size(), 1);
+        assertEquals(listener.batches.get(0).size(), 2);
+        jBus.close();
+    }
+
+    @Test(expected = JBusException.class)
+    public void testPostAfterClose() {
+        JBus jBus = new JBus();
+        jBus.register(new SlowAsyncListener());
+        jBus.close();
+        jBus.post(1);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testPostAllAfterDrain() {
+        JBus jBus = new JBus();
+        jBus.drain(1, TimeUnit.SECONDS);
+        jBus.postAll(1, 2);
+    }
+
+    private static class SlowAsyncListener {
+        final AtomicInteger received = new AtomicInteger();
+
+        @Subscribe(async = true)
+        public void listen(Integer event) throws InterruptedException {
+            Thread.sleep(10);
+            received.incrementAndGet();
+        }
+    }
+
+    private static class BlockedListener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final List<String> received = new CopyOnWriteArrayList<String>();
+
+        @Subscribe(async = true, serial = true)
+        public void listen(String event) {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+                received.add(event);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }
+    }
+
+    private static class WindowListener {
+        final List<List<String>> batches = new CopyOnWriteArrayList<List<String>>();
+
+        @Subscribe(async = true, batch = true, maxDelay = 60000)
+        public void listen(List<String> events) {
+            batches.add(events);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class SlowSubscriberTest {
+
+    @Test
+    public void testSlowSubscriberReported() throws InterruptedException {
+        JBus jBus = newBus(SlowSubscriberPolicy.REPORT, 1);
+        SlowListener listener = new SlowListener();
+        Diagnostics diagnostics = new Diagnostics(1);
+        jBus.register(listener);
+        jBus.register(diagnostics);
+
+        jBus.post("slow");
+
+        assertTrue(diagnostics.latch.await(5, TimeUnit.SECONDS));
+        SlowSubscriberEvent event = diagnostics.events.get(0);
+        assertEquals(event.getListener(), listener);
+        assertEquals(event.getEvent(), "slow");
+        assertEquals(event.getSubscribedMethod().getName(), "listen");
+        assertEquals(event.getThreadName(), Thread.currentThread().getName());
+        assertEquals(event.getAppliedPolicy(), SlowSubscriberPolicy.REPORT);
+        assertTrue(event.getElapsedMillis() >= 50);
+        assertTrue(sampled(event.getStackTrace(), SlowListener.class.getName()));
+
+        // a fast invocation is not reported
+        listener.sleep = 0;
+        jBus.post("fast");
+        Thread.sleep(200);
+        assertEquals(diagnostics.events.size(), 1);
+    }
+
+    @Test
+    public void testSlowSubscriberDemoted() throws InterruptedException {
+        JBus jBus = newBus(SlowSubscriberPolicy.DEMOTE, 2);
+        SlowListener listener = new SlowListener();
+        Diagnostics diagnostics = new Diagnostics(2);
+        jBus.register(listener);
+        jBus.register(diagnostics);
+
+        jBus.post("first");
+        jBus.post("second");
+        assertTrue(diagnostics.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(diagnostics.events.get(0).getAppliedPolicy(), SlowSubscriberPolicy.REPORT);
+        assertEquals(diagnostics.events.get(1).getAppliedPolicy(), SlowSubscriberPolicy.DEMOTE);
+        assertEquals(listener.threads.get(1), Thread.currentThread());
+
+        // the demoted subscriber no longer runs in the posting thread
+        jBus.post("third");
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertNotSame(listener.threads.get(2), Thread.currentThread());
+    }
+
+    @Test
+    public void testSlowSubscriberQuarantined() throws InterruptedException {
+        JBus jBus = newBus(SlowSubscriberPolicy.QUARANTINE, 1);
+        SlowListener listener = new SlowListener();
+        Diagnostics diagnostics = new Diagnostics(1);
+        jBus.register(listener);
+        jBus.register(diagnostics);
+
+        jBus.post("first");
+        assertTrue(diagnostics.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(diagnostics.events.get(0).getAppliedPolicy(), SlowSubscriberPolicy.QUARANTINE);
+
+        // only the slow subscriber is removed, not its listener
+        jBus.post("second");
+        jBus.post(1);
+        assertEquals(listener.threads.size(), 1);
+        assertEquals(listener.numbers, 1);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testInvalidStrikes() {
+        newBus(SlowSubscriberPolicy.REPORT, 0);
+    }
+
+    private static JBus newBus(SlowSubscriberPolicy policy, int strikes) {
+        JBusConfig config = new JBusConfig();
+        config.setSlowSubscriberThreshold(50);
+        config.setSlowSubscriberPolicy(policy);
+        config.setSlowSubscriberStrikes(strikes);
+        return new JBus(config);
+    }
+
+    private static boolean sampled(StackTraceElement[] stackTrace, String className) {
+        for (StackTraceElement element : stackTrace) {
+            if (element.getClassName().equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class SlowListener {
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final CountDownLatch done = new CountDownLatch(3);
+        volatile long sleep = 200;
+        volatile int numbers;
+
+        @Subscribe
+        public void listen(String event) throws InterruptedException {
+            Thread.sleep(sleep);
+            threads.add(Thread.currentThread());
+            done.countDown();
+        }
+
+        @Subscribe
+        public void listen(Integer event) {
+            numbers++;
+        }
+    }
+
+    private static class Diagnostics {
+        final List<SlowSubscriberEvent> events = new CopyOnWriteArrayList<SlowSubscriberEvent>();
+        final CountDownLatch latch;
+
+        Diagnostics(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Subscribe
+        public void listen(SlowSubscriberEvent event) {
+            events.add(event);
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class StickyEventTest {
+
+    @Test
+    public void testLatestEventReplayed() {
+        JBus jBus = new JBus();
+        jBus.postSticky(new ConfigEvent(1));
+        jBus.postSticky(new ConfigEvent(2));
+
+        StickyListener listener = new StickyListener();
+        jBus.register(listener);
+        assertEquals(listener.versions, Arrays.asList(2));
+        assertEquals(jBus.getStickyEvent(ConfigEvent.class).version, 2);
+
+        // live events are still delivered as usual
+        jBus.post(new ConfigEvent(3));
+        assertEquals(listener.versions, Arrays.asList(2, 3));
+        assertEquals(jBus.getStickyEvent(ConfigEvent.class).version, 2);
+    }
+
+    @Test
+    public void testLastEventsReplayedInOrder() {
+        JBusConfig config = new JBusConfig();
+        config.setStickyEventCapacity(3);
+        JBus jBus = new JBus(config);
+        for (int i = 1; i <= 5; i++) {
+            jBus.postSticky(new ConfigEvent(i));
+        }
+
+        StickyListener listener = new StickyListener();
+        jBus.registerWeak(listener);
+        assertEquals(listener.versions, Arrays.asList(3, 4, 5));
+        assertEquals(listener.batches, Arrays.asList(3));
+    }
+
+    @Test
+    public void testNonStickySubscriberNotReplayed() {
+        JBus jBus = new JBus();
+        jBus.postSticky(new ConfigEvent(1));
+
+        final List<ConfigEvent> received = new ArrayList<ConfigEvent>();
+        jBus.register(new Object() {
+            @Subscribe
+            public void listen(ConfigEvent event) {
+                received.add(event);
+            }
+        });
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testExpiredEventNotReplayed() throws InterruptedException {
+        JBusConfig config = new JBusConfig();
+        config.setStickyEventExpiry(50);
+        JBus jBus = new JBus(config);
+        jBus.postSticky(new ConfigEvent(1));
+        Thread.sleep(100);
+
+        StickyListener listener = new StickyListener();
+        jBus.register(listener);
+        assertTrue(listener.versions.isEmpty());
+        assertNull(jBus.getStickyEvent(ConfigEvent.class));
+    }
+
+    @Test
+    public void testRemoveStickyEvents() {
+        JBus jBus = new JBus();
+        jBus.postSticky(new ConfigEvent(1));
+        assertTrue(jBus.removeStickyEvents(ConfigEvent.class));
+        assertFalse(jBus.removeStickyEvents(ConfigEvent.class));
+
+        jBus.postSticky(new ConfigEvent(2));
+        jBus.clearStickyEvents();
+
+        StickyListener listener = new StickyListener();
+        jBus.register(listener);
+        assertTrue(listener.versions.isEmpty());
+    }
+
+    @Test
+    public void testSubClassEventsReplayedWithInheritance() {
+        JBusConfig config = new JBusConfig();
+        config.setEventInheritance(true);
+        config.setStickyEventCapacity(2);
+        JBus jBus = new JBus(config);
+        jBus.postSticky(new ConfigEvent(1));
+        jBus.postSticky("topology");
+        jBus.postSticky(new ConfigEvent(2));
+
+        final List<Object> received = new ArrayList<Object>();
+        jBus.register(new Object() {
+            @Subscribe(sticky = true)
+            public void listen(Object event) {
+                received.add(event);
+            }
+        });
+        assertEquals(received.size(), 3);
+        assertEquals(((ConfigEvent) received.get(0)).version, 1);
+        assertEquals(received.get(1), "topology");
+        assertEquals(((ConfigEvent) received.get(2)).version, 2);
+    }
+
+    private static class ConfigEvent {
+        final int version;
+
+        ConfigEvent(int version) {
+            this.version = version;
+        }
+    }
+
+    private static class StickyListener {
+        final List<Integer> versions = new ArrayList<Integer>();
+        final List<Integer> batches = new ArrayList<Integer>();
+
+        @Subscribe(sticky = true)
+        public void listen(ConfigEvent event) {
+            versions.add(event.version);
+        }
+
+        @Subscribe(sticky = true, batch = true)
+        public void listenAll(List<ConfigEvent> events) {
+            batches.add(events.size());
+        }
+    }
+}
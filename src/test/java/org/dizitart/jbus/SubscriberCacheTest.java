@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class SubscriberCacheTest {
+
+    @Test
+    public void testClassScannedOnce() {
+        ListenerMethod[] first = SubscriberCache.getSubscriberMethods(ChildListener.class);
+        ListenerMethod[] second = SubscriberCache.getSubscriberMethods(ChildListener.class);
+        assertSame(first, second);
+        // the overridden method of the parent is skipped
+        assertEquals(first.length, 2);
+    }
+
+    @Test
+    public void testInstancesBoundToOwnTarget() {
+        JBus jBus = new JBus();
+        ChildListener first = new ChildListener();
+        ChildListener second = new ChildListener();
+        jBus.register(first);
+        jBus.register(second);
+
+        jBus.post("event");
+        jBus.post(1);
+        assertEquals(first.strings, 1);
+        assertEquals(first.integers, 1);
+        assertEquals(second.strings, 1);
+        assertEquals(second.integers, 1);
+    }
+
+    @Test(expected = JBusException.class)
+    public void testInvalidClassNotCached() {
+        try {
+            SubscriberCache.getSubscriberMethods(InvalidListener.class);
+            fail();
+        } catch (JBusException e) {
+            // fails again on the next registration
+        }
+        new JBus().register(new InvalidListener());
+    }
+
+    private static class ParentListener {
+        int strings;
+
+        @Subscribe
+        public void listen(String event) {
+            strings = -1;
+        }
+    }
+
+    private static class ChildListener extends ParentListener {
+        int integers;
+
+        @Subscribe
+        public void listen(String event) {
+            strings++;
+        }
+
+        @Subscribe
+        private void listen(Integer event) {
+            integers++;
+        }
+    }
+
+    private static class InvalidListener {
+        @Subscribe
+        private void listen(String first, String second) {
+        }
+    }
+}
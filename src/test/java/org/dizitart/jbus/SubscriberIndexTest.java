@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class SubscriberIndexTest {
+
+    @Test
+    public void testIndexReplacesReflection() {
+        ListenerMethod[] listenerMethods = SubscriberCache.getSubscriberMethods(IndexedListener.class);
+        assertEquals(listenerMethods.length, 2);
+        for (ListenerMethod listenerMethod : listenerMethods) {
+            assertTrue(listenerMethod.invoker instanceof IndexedSubscriber);
+        }
+
+        JBus jBus = new JBus();
+        IndexedListener listener = new IndexedListener();
+        jBus.register(listener);
+        jBus.postAll("first", "second");
+        assertEquals(listener.strings, 2);
+        assertEquals(listener.batches, 1);
+        assertEquals(IndexedListener$$JBusIndex.invocations, 3);
+    }
+
+    @Test
+    public void testSuperClassWithoutIndexScanned() {
+        JBus jBus = new JBus();
+        IndexedChildListener listener = new IndexedChildListener();
+        jBus.register(listener);
+        jBus.post(1);
+        assertEquals(listener.integers, 1);
+    }
+}
+
+class IndexedListener {
+    int strings;
+    int batches;
+
+    @Subscribe
+    void listen(String event) {
+        strings++;
+    }
+
+    @Subscribe(batch = true)
+    void listenAll(List<String> events) {
+        batches++;
+    }
+}
+
+class IndexedChildListener extends IndexedListener {
+    int integers;
+
+    @Subscribe
+    private void listen(Integer event) {
+        integers++;
+    }
+}
+
+/**
+ * Same as the index generated by the jbus-processor.
+ */
+class IndexedListener$$JBusIndex implements SubscriberIndex {
+    static int invocations;
+
+    @Override
+    public IndexedSubscriber[] getSubscribers() {
+        return new IndexedSubscriber[] {
+                new IndexedSubscriber("listen", String.class, String.class) {
+                    @Override
+                    public void invoke(Object target, Object event) {
+                        invocations++;
+                        ((IndexedListener) target).listen((String) event);
+                    }
+                },
+                new IndexedSubscriber("listenAll", List.class, String.class) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void invoke(Object target, Object event) {
+                        invocations++;
+                        ((IndexedListener) target).listenAll((List<String>) event);
+                    }
+                },
+        };
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class WeakListenerReclamationTest {
+
+    @Test
+    public void testCollectedListenerReclaimedOnPost() throws InterruptedException {
+        ListenersRegistry registry = new ListenersRegistry(false);
+        WeakReference<Object> reference = registerCollectable(registry);
+        assertEquals(registry.getSubscribers(UserEvent.class).length, 1);
+
+        awaitCollection(reference);
+        // a post of any other event expunges the collected listener
+        registry.getSubscribers(OtherEvent.class);
+        assertNull(registry.getSubscribers(UserEvent.class));
+    }
+
+    @Test
+    public void testCollectedListenerReclaimedOnRegister() throws InterruptedException {
+        ListenersRegistry registry = new ListenersRegistry(false);
+        WeakReference<Object> reference = registerCollectable(registry);
+
+        awaitCollection(reference);
+        registry.register(new OtherListener(), false);
+        assertNull(registry.getSubscribers(UserEvent.class));
+        assertEquals(registry.getSubscribers(OtherEvent.class).length, 1);
+    }
+
+    @Test
+    public void testCollectedListenerNotInvoked() throws InterruptedException {
+        JBus jBus = new JBus();
+        Listener listener = new Listener();
+        WeakReference<Object> reference = new WeakReference<Object>(listener);
+        jBus.registerWeak(listener);
+
+        UserEvent userEvent = new UserEvent();
+        jBus.post(userEvent);
+        assertEquals(userEvent.count, 1);
+
+        listener = null;
+        awaitCollection(reference);
+        userEvent = new UserEvent();
+        jBus.post(userEvent);
+        assertEquals(userEvent.count, 0);
+    }
+
+    private static WeakReference<Object> registerCollectable(ListenersRegistry registry) {
+        Listener listener = new Listener();
+        registry.register(listener, true);
+        return new WeakReference<Object>(listener);
+    }
+
+    private static void awaitCollection(WeakReference<Object> reference) throws InterruptedException {
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        // the reference queue is filled by the reference handler thread
+        Thread.sleep(100);
+    }
+
+    private static class UserEvent {
+        int count;
+    }
+
+    private static class OtherEvent {
+    }
+
+    private static class Listener {
+        @Subscribe
+        private void listen(UserEvent event) {
+            event.count++;
+        }
+    }
+
+    private static class OtherListener {
+        @Subscribe
+        private void listen(OtherEvent event) {
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016 JBus author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.dizitart.jbus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Anindya Chatterjee.
+ */
+public class WindowedSubscriberTest {
+
+    @Test
+    public void testBatchSizeWindow() {
+        JBus jBus = new JBus();
+        SizeListener listener = new SizeListener();
+        jBus.register(listener);
+
+        for (int i = 0; i < 7; i++) {
+            jBus.post(i);
+        }
+        jBus.postAll(7, 8, 9, 10, 11);
+        // full windows are delivered synchronously, the rest is held back
+        assertEquals(listener.batches, Arrays.asList(
+                Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5), Arrays.asList(6, 7, 8), Arrays.asList(9, 10, 11)));
+    }
+
+    @Test
+    public void testMaxDelayWindow() throws InterruptedException {
+        JBus jBus = new JBus();
+        DelayListener listener = new DelayListener();
+        jBus.register(listener);
+
+        jBus.post("first");
+        jBus.post("second");
+        assertTrue(listener.batches.isEmpty());
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(listener.batches, Arrays.asList(Arrays.asList("first", "second")));
+    }
+
+    @Test
+    public void testDebounce() throws InterruptedException {
+        JBus jBus = new JBus();
+        DebounceListener listener = new DebounceListener();
+        jBus.register(listener);
+
+        for (long i = 0; i < 10; i++) {
+            jBus.post(i);
+        }
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(listener.events, Arrays.asList(9L));
+    }
+
+    @Test
+    public void testThrottle() throws InterruptedException {
+        JBus jBus = new JBus();
+        ThrottleListener listener = new ThrottleListener();
+        jBus.register(listener);
+
+        for (int i = 0; i < 10; i++) {
+            jBus.post(Integer.toString(i));
+        }
+        // the first one right away, the latest one after the interval
+        assertEquals(listener.events, Arrays.asList("0"));
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(listener.events, Arrays.asList("0", "9"));
+    }
+
+    @Test(expected = JBusException.class)
+    public void testWindowOnlyForBatch() {
+        new JBus().register(new Object() {
+            @Subscribe(batchSize = 10)
+            public void listen(String event) {
+            }
+        });
+    }
+
+    @Test(expected = JBusException.class)
+    public void testDebounceWithThrottle() {
+        new JBus().register(new Object() {
+            @Subscribe(debounce = 10, throttle = 10)
+            public void listen(String event) {
+            }
+        });
+    }
+
+    private static class SizeListener {
+        final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+
+        @Subscribe(batch = true, batchSize = 3)
+        public void listen(List<Integer> events) {
+            batches.add(new ArrayList<Integer>(events));
+        }
+    }
+
+    private static class DelayListener {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final List<List<String>> batches = new ArrayList<List<String>>();
+
+        @Subscribe(batch = true, batchSize = 100, maxDelay = 50)
+        public void listen(List<String> events) {
+            synchronized (batches) {
+                batches.add(new ArrayList<String>(events));
+            }
+            delivered.countDown();
+        }
+    }
+
+    private static class DebounceListener {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final List<Long> events = new ArrayList<Long>();
+
+        @Subscribe(debounce = 50)
+        public void listen(Long event) {
+            synchronized (events) {
+                events.add(event);
+            }
+            delivered.countDown();
+        }
+    }
+
+    private static class ThrottleListener {
+        final CountDownLatch delivered = new CountDownLatch(2);
+        final List<String> events = new ArrayList<String>();
+
+        @Subscribe(throttle = 100)
+        public void listen(String event) {
+            synchronized (events) {
+                events.add(event);
+            }
+            delivered.countDown();
+        }
+    }
+}